@@ -0,0 +1,54 @@
+package com.stride.stride.analysis;
+
+import com.stride.stride.bench.SyntheticCorpus;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end analyzeRepo over a generated tree on disk (page cache warm after the first
+ * iteration), sequential and on all cores, without the content cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+    @Param({"500", "5000"})
+    public int files;
+
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private Path root;
+    private Analyzer analyzer;
+
+    @Setup
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("stride-bench");
+        new SyntheticCorpus(1, 0.2).writeTree(root, files, 6, 10);
+        analyzer = new Analyzer(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        analyzer.close();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> analyzeRepo() {
+        return analyzer.analyzeRepo(root.toString());
+    }
+}
@@ -0,0 +1,56 @@
+package com.stride.stride.analysis;
+
+import com.stride.stride.bench.SyntheticCorpus;
+import com.stride.stride.model.DuplicateBlock;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repo-wide duplicate detection over precomputed fingerprints, at several repo sizes.
+ * Fingerprinting is done in setup, so only the table build, matching and range merge are timed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DuplicateDetectorBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int files;
+
+    @Param({"0.2"})
+    public double duplicationRate;
+
+    private List<FileMetrics> metrics;
+
+    @Setup
+    public void setup() {
+        SyntheticCorpus corpus = new SyntheticCorpus(99, duplicationRate);
+        SourceLexer lexer = new SourceLexer();
+        metrics = new ArrayList<>(files);
+        for (int f = 0; f < files; f++) {
+            WinnowingFingerprinter fingerprinter = new WinnowingFingerprinter(50, 8, 12);
+            int[] lineNo = new int[1];
+            SourceLexer.TokenSink sink = (buf, start, end) ->
+                    fingerprinter.add(WinnowingFingerprinter.hashToken(buf, start, end), lineNo[0]);
+            for (String line : corpus.javaFile("Gen" + f, 8).split("\n")) {
+                lineNo[0]++;
+                char[] chars = line.toCharArray();
+                lexer.scanLine(chars, 0, chars.length, sink);
+            }
+            FileMetrics fm = new FileMetrics("src/Gen" + f + ".java", "java", 2);
+            fm.setFingerprints(fingerprinter.finish());
+            metrics.add(fm);
+        }
+    }
+
+    @Benchmark
+    public List<DuplicateBlock> detect() {
+        return new DuplicateDetector().detect(metrics);
+    }
+}
@@ -0,0 +1,70 @@
+package com.stride.stride.analysis;
+
+import com.stride.stride.bench.SyntheticCorpus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token hashing and winnowing (what replaced hashTokens), measured per token on a pre-split
+ * token stream so the lexer cost is excluded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FingerprintBenchmark {
+
+    private static final int TOKENS = 100_000;
+
+    private char[][] tokens;
+    private int[] tokenLines;
+    private long[] hashes;
+
+    @Param({"8", "32"})
+    public int winnowWindow;
+
+    @Setup
+    public void setup() {
+        List<char[]> words = new ArrayList<>();
+        List<Integer> lines = new ArrayList<>();
+        SourceLexer lexer = new SourceLexer();
+        List<String> source = new SyntheticCorpus(7, 0.2).lines(400, 10);
+        for (int i = 0; i < source.size() && words.size() < TOKENS; i++) {
+            char[] line = source.get(i).toCharArray();
+            int lineNo = i + 1;
+            lexer.scanLine(line, 0, line.length, (buf, start, end) -> {
+                words.add(java.util.Arrays.copyOfRange(buf, start, end));
+                lines.add(lineNo);
+            });
+        }
+        int n = Math.min(TOKENS, words.size());
+        tokens = words.subList(0, n).toArray(new char[0][]);
+        tokenLines = new int[n];
+        hashes = new long[n];
+        for (int i = 0; i < n; i++) {
+            tokenLines[i] = lines.get(i);
+            hashes[i] = WinnowingFingerprinter.hashToken(tokens[i], 0, tokens[i].length);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public long hashTokens() {
+        long acc = 0;
+        for (char[] token : tokens) acc += WinnowingFingerprinter.hashToken(token, 0, token.length);
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public Fingerprints winnow() {
+        WinnowingFingerprinter fingerprinter = new WinnowingFingerprinter(50, winnowWindow, 12);
+        for (int i = 0; i < hashes.length; i++) fingerprinter.add(hashes[i], tokenLines[i]);
+        return fingerprinter.finish();
+    }
+}
@@ -0,0 +1,58 @@
+package com.stride.stride.analysis;
+
+import com.stride.stride.bench.SyntheticCorpus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-line throughput of the metrics loop: the lexer alone, and the lexer feeding token hashes
+ * into the winnowing fingerprinter as the analyzer does for every line. Scores are per line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexerBenchmark {
+
+    private static final int LINES = 20_000;
+
+    private char[][] lines;
+    private final SourceLexer lexer = new SourceLexer();
+
+    @Setup
+    public void setup() {
+        List<String> source = new SyntheticCorpus(42, 0.2).lines(200, 10);
+        lines = new char[LINES][];
+        for (int i = 0; i < LINES; i++) lines[i] = source.get(i % source.size()).toCharArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void lexLines(Blackhole bh) {
+        SourceLexer.TokenSink sink = (buf, start, end) -> bh.consume(end - start);
+        for (char[] line : lines) {
+            lexer.scanLine(line, 0, line.length, sink);
+            bh.consume(lexer.branch);
+            bh.consume(lexer.words);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public Fingerprints lexAndFingerprintLines() {
+        WinnowingFingerprinter fingerprinter = new WinnowingFingerprinter(50, 8, 12);
+        int[] lineNo = new int[1];
+        SourceLexer.TokenSink sink = (buf, start, end) ->
+                fingerprinter.add(WinnowingFingerprinter.hashToken(buf, start, end), lineNo[0]);
+        for (char[] line : lines) {
+            lineNo[0]++;
+            lexer.scanLine(line, 0, line.length, sink);
+        }
+        return fingerprinter.finish();
+    }
+}
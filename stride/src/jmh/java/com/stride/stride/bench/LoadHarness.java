@@ -0,0 +1,242 @@
+package com.stride.stride.bench;
+
+import com.stride.stride.StrideApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test of the /repo endpoints against generated local repositories.
+ *
+ * Generates the repositories, clones each once through /repo/clone (file:// URLs), then keeps
+ * {@code concurrency} clients busy with a round-robin mix of clone, analyze and
+ * analyze-optimize requests until {@code requests} have completed. Reports p50/p99/max latency
+ * and error count per operation, overall throughput, and heap usage.
+ *
+ * A list of concurrency levels (concurrency=1,2,4,8) runs the same requests at each level against
+ * the same server and ends with throughput against concurrency: speedup over the first level and
+ * efficiency per client. reuse=false starts the server with the stored runs, the content cache
+ * and incremental snapshots off, so every analysis walks its repository in full and the table
+ * shows how analyses scale rather than how lookups do.
+ *
+ * Without --url the application is started in this JVM on a random port, so heap figures
+ * are the server's own (sampled every 100ms), as is the peak count of platform threads. With
+ * --url an external server is driven and neither is reported.
+ *
+ * threads=virtual starts the application with spring.threads.virtual.enabled; it needs Java 21
+ * or later, and on an older JDK the run warns and stays on platform threads. Running the same
+ * options with threads=platform and then threads=virtual compares the two execution models on
+ * throughput, latency, heap and platform threads. Client threads are counted too, so compare
+ * runs of equal concurrency.
+ *
+ * Options (all --name=value): url, repos, files, commits, concurrency, requests, ops, seed, dir, threads, reuse.
+ * Run through the benchmarks profile: {@code mvn -Pbenchmarks test-compile exec:exec@load -Dload.args="--files=5000"}
+ */
+public class LoadHarness {
+
+    private final Map<String, String> options;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final Map<String, List<Long>> latencies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> errors = new ConcurrentHashMap<>();
+    private final AtomicLong heapMax = new AtomicLong();
+    private final AtomicInteger threadsMax = new AtomicInteger();
+    private final AtomicInteger cloneSeq = new AtomicInteger();
+    private String baseUrl;
+    private File workDir;
+
+    LoadHarness(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) throw new IllegalArgumentException("Expected --name=value: " + arg);
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadHarness(options).run();
+    }
+
+    void run() throws Exception {
+        workDir = new File(option("dir", Files.createTempDirectory("stride-load").toString()));
+        int repoCount = intOption("repos", 4);
+        int[] levels = Arrays.stream(option("concurrency", "8").split(",")).mapToInt(Integer::parseInt).toArray();
+        int requests = intOption("requests", 64);
+        List<String> ops = Arrays.asList(option("ops", "clone,analyze,analyze-optimize").split(","));
+
+        SyntheticRepoGenerator.Spec spec = new SyntheticRepoGenerator.Spec();
+        spec.setFiles(intOption("files", 1000));
+        spec.setCommits(intOption("commits", 20));
+        long seed = Long.parseLong(option("seed", "1"));
+
+        long t0 = System.nanoTime();
+        List<File> sources = new ArrayList<>();
+        for (int r = 0; r < repoCount; r++) {
+            spec.setSeed(seed + r);
+            sources.add(new SyntheticRepoGenerator().generate(new File(workDir, "source-" + r), spec));
+        }
+        System.out.printf("Generated %d repos x %d files, %d commits in %d ms under %s%n",
+                repoCount, spec.getFiles(), spec.getCommits(), (System.nanoTime() - t0) / 1_000_000, workDir);
+
+        ConfigurableApplicationContext context = null;
+        baseUrl = options.get("url");
+        if (baseUrl == null) {
+            boolean virtual = option("threads", "platform").equals("virtual");
+            if (virtual && Runtime.version().feature() < 21) {
+                System.err.printf("Warning: threads=virtual needs Java 21 or later, running %s; using platform threads%n",
+                        Runtime.version());
+                virtual = false;
+            }
+            System.out.printf("Server on %s threads%n", virtual ? "virtual" : "platform");
+            // devtools is on the test classpath; its restart would run this main method again
+            System.setProperty("spring.devtools.restart.enabled", "false");
+            List<String> serverArgs = new ArrayList<>(List.of("--server.port=0", "--spring.threads.virtual.enabled=" + virtual));
+            if (!Boolean.parseBoolean(option("reuse", "true"))) {
+                serverArgs.addAll(List.of("--stride.store.enabled=false", "--stride.cache.enabled=false",
+                        "--stride.incremental.max-repos=0"));
+            }
+            context = SpringApplication.run(StrideApplication.class, serverArgs.toArray(new String[0]));
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "heap-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (context != null) {
+            // virtual threads are not in the thread count, only the carriers they run on
+            sampler.scheduleAtFixedRate(() -> {
+                heapMax.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                threadsMax.accumulateAndGet(threads.getThreadCount(), Math::max);
+            }, 0, 100, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            List<String> clones = new ArrayList<>();
+            for (File source : sources) clones.add(cloneOnce(source, "warmup"));
+
+            double[] throughput = new double[levels.length];
+            for (int l = 0; l < levels.length; l++) {
+                if (levels.length > 1) System.out.printf("%nConcurrency %d%n", levels[l]);
+                latencies.clear();
+                errors.clear();
+                long elapsed = runLevel(levels[l], requests, ops, sources, clones);
+                report(requests, elapsed, context != null ? memory : null);
+                throughput[l] = requests / (elapsed / 1e9);
+            }
+            if (levels.length > 1) reportScaling(levels, throughput);
+        } finally {
+            sampler.shutdownNow();
+            if (context != null) context.close();
+        }
+    }
+
+    // Keeps that many clients busy until the requests are done; returns the elapsed nanos
+    private long runLevel(int concurrency, int requests, List<String> ops, List<File> sources, List<String> clones)
+            throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        AtomicInteger next = new AtomicInteger();
+        long start = System.nanoTime();
+        List<Future<?>> running = new ArrayList<>();
+        for (int c = 0; c < concurrency; c++) {
+            running.add(clients.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    String op = ops.get(i % ops.size());
+                    int repo = i % sources.size();
+                    if (op.equals("clone")) cloneOnce(sources.get(repo), op);
+                    else call(op, "/repo/" + op, Map.of("path", clones.get(repo)));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : running) f.get();
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        return elapsed;
+    }
+
+    private static void reportScaling(int[] levels, double[] throughput) {
+        System.out.printf("%nScaling on %d cores%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-12s %10s %9s %11s%n", "concurrency", "req/s", "speedup", "efficiency");
+        for (int l = 0; l < levels.length; l++) {
+            double speedup = throughput[l] / throughput[0];
+            System.out.printf("%-12d %10.2f %8.2fx %10.0f%%%n", levels[l], throughput[l], speedup,
+                    100 * speedup * levels[0] / levels[l]);
+        }
+    }
+
+    private String cloneOnce(File source, String op) throws Exception {
+        String target = new File(workDir, "clone-" + cloneSeq.incrementAndGet()).getAbsolutePath();
+        call(op, "/repo/clone", Map.of("url", source.toURI().toString(), "path", target));
+        return target;
+    }
+
+    private void call(String op, String endpoint, Map<String, String> params) throws Exception {
+        StringJoiner query = new StringJoiner("&");
+        params.forEach((k, v) -> query.add(k + "=" + URLEncoder.encode(v, StandardCharsets.UTF_8)));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint + "?" + query))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofMinutes(10))
+                .build();
+        long start = System.nanoTime();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        long micros = (System.nanoTime() - start) / 1000;
+        latencies.computeIfAbsent(op, k -> Collections.synchronizedList(new ArrayList<>())).add(micros);
+        // the service reports failures in the body with status 200
+        if (response.statusCode() != 200 || response.body().contains("\"error\"")) {
+            errors.computeIfAbsent(op, k -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    private void report(int requests, long elapsedNanos, MemoryMXBean memory) {
+        System.out.printf("%-18s %7s %7s %10s %10s %10s%n", "operation", "count", "errors", "p50 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, List<Long>> e : new TreeMap<>(latencies).entrySet()) {
+            long[] sorted = e.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            AtomicInteger failed = errors.get(e.getKey());
+            System.out.printf("%-18s %7d %7d %10.1f %10.1f %10.1f%n", e.getKey(), sorted.length,
+                    failed == null ? 0 : failed.get(), percentile(sorted, 50) / 1000.0,
+                    percentile(sorted, 99) / 1000.0, sorted[sorted.length - 1] / 1000.0);
+        }
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("Throughput: %d requests in %.2f s = %.2f req/s%n", requests, seconds, requests / seconds);
+        if (memory != null) {
+            memory.gc();
+            System.out.printf("Heap: peak used %d MB, after GC %d MB, max %d MB%n", heapMax.get() >> 20,
+                    memory.getHeapMemoryUsage().getUsed() >> 20, memory.getHeapMemoryUsage().getMax() >> 20);
+            System.out.printf("Platform threads: peak %d%n", threadsMax.get());
+        }
+    }
+
+    // nearest-rank percentile of an ascending array
+    static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    private String option(String name, String def) {
+        return options.getOrDefault(name, def);
+    }
+
+    private int intOption(String name, int def) {
+        return Integer.parseInt(option(name, String.valueOf(def)));
+    }
+}
@@ -0,0 +1,149 @@
+package com.stride.stride.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic source text for benchmarks. The same seed always gives the same corpus, so
+ * numbers from different runs and branches are comparable.
+ *
+ * Files are Java-like: imports, a class, methods with branches, loops, boolean operators,
+ * nested blocks and comments. A share of the methods is copied from a fixed pool of blocks
+ * so duplicate detection has real matches to find.
+ */
+public final class SyntheticCorpus {
+
+    private static final String[] NAMES = {"value", "count", "index", "total", "buffer", "result", "offset", "limit"};
+    private static final String[] TYPES = {"int", "long", "String", "List<String>", "Map<String, Integer>"};
+
+    private final Random random;
+    private final double duplicationRate;
+    private final List<String> sharedBlocks = new ArrayList<>();
+
+    /**
+     * @param duplicationRate share of methods (0..1) taken from the shared pool instead of generated
+     */
+    public SyntheticCorpus(long seed, double duplicationRate) {
+        this.random = new Random(seed);
+        this.duplicationRate = duplicationRate;
+        for (int i = 0; i < 32; i++) sharedBlocks.add(method("shared" + i));
+    }
+
+    /** One source file of roughly {@code methods * 12} lines. */
+    public String javaFile(String className, int methods) {
+        StringBuilder sb = new StringBuilder(methods * 400);
+        sb.append("package com.example.generated;\n\n");
+        for (int i = 0; i < 3 + random.nextInt(5); i++) {
+            sb.append("import java.util.").append(TYPES[random.nextInt(TYPES.length)].replaceAll("<.*", "")).append(";\n");
+        }
+        sb.append("\n/**\n * Generated ").append(className).append(".\n */\n");
+        sb.append("public class ").append(className).append(" {\n");
+        for (int m = 0; m < methods; m++) {
+            sb.append(random.nextDouble() < duplicationRate
+                    ? sharedBlocks.get(random.nextInt(sharedBlocks.size()))
+                    : method("method" + m));
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * One source file in the syntax of the given extension: "py" and "js" get their own
+     * shapes, anything else is Java-like.
+     */
+    public String sourceFile(String extension, String name, int methods) {
+        switch (extension) {
+            case "py":
+                return pythonFile(methods);
+            case "js":
+                return javascriptFile(name, methods);
+            default:
+                return javaFile(name, methods);
+        }
+    }
+
+    /** The lines of {@code files} generated files, concatenated. */
+    public List<String> lines(int files, int methodsPerFile) {
+        List<String> lines = new ArrayList<>();
+        for (int f = 0; f < files; f++) {
+            for (String line : javaFile("Gen" + f, methodsPerFile).split("\n", -1)) lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * Write {@code files} generated files under root, spread over directories nested up to
+     * {@code depth} levels.
+     */
+    public void writeTree(Path root, int files, int depth, int methodsPerFile) throws IOException {
+        for (int f = 0; f < files; f++) {
+            Path dir = root;
+            int levels = 1 + random.nextInt(Math.max(depth, 1));
+            for (int d = 0; d < levels; d++) dir = dir.resolve("pkg" + random.nextInt(4));
+            Files.createDirectories(dir);
+            Files.writeString(dir.resolve("Gen" + f + ".java"), javaFile("Gen" + f, methodsPerFile));
+        }
+    }
+
+    private String pythonFile(int methods) {
+        StringBuilder sb = new StringBuilder(methods * 300);
+        sb.append("import os\nfrom collections import defaultdict\n\n");
+        for (int m = 0; m < methods; m++) {
+            String a = NAMES[random.nextInt(NAMES.length)];
+            sb.append("# generated helper ").append(m).append('\n');
+            sb.append("def method").append(m).append('(').append(a).append(", other):\n");
+            sb.append("    if ").append(a).append(" > other and other >= ").append(random.nextInt(100)).append(":\n");
+            sb.append("        for i in range(").append(a).append("):\n");
+            sb.append("            other += i * ").append(random.nextInt(10)).append('\n');
+            sb.append("    elif ").append(a).append(" == 0 or other < 0:\n");
+            sb.append("        return other  # TODO check bounds\n");
+            sb.append("    return ").append(a).append(" + other\n\n");
+        }
+        return sb.toString();
+    }
+
+    private String javascriptFile(String name, int methods) {
+        StringBuilder sb = new StringBuilder(methods * 350);
+        sb.append("const fs = require('fs');\n\n");
+        sb.append("class ").append(name).append(" {\n");
+        for (int m = 0; m < methods; m++) {
+            String body = random.nextDouble() < duplicationRate
+                    ? sharedBlocks.get(random.nextInt(sharedBlocks.size()))
+                    : method("method" + m);
+            // same control flow as the Java shape, with untyped declarations
+            for (String type : new String[]{"int ", "long "}) {
+                body = body.replace("public " + type, "").replace("(" + type, "(").replace(", " + type, ", ")
+                        .replace(type, "let ");
+            }
+            sb.append(body);
+        }
+        sb.append("}\n\nmodule.exports = ").append(name).append(";\n");
+        return sb.toString();
+    }
+
+    private String method(String name) {
+        String type = TYPES[random.nextInt(2)];
+        String a = NAMES[random.nextInt(NAMES.length)];
+        String b = NAMES[random.nextInt(NAMES.length)] + "2";
+        StringBuilder sb = new StringBuilder();
+        sb.append("    // ").append(name).append(": generated helper\n");
+        sb.append("    public ").append(type).append(' ').append(name).append('(').append(type).append(' ').append(a)
+                .append(", ").append(type).append(' ').append(b).append(") {\n");
+        sb.append("        if (").append(a).append(" > ").append(b).append(" && ").append(b).append(" >= ")
+                .append(random.nextInt(100)).append(") {\n");
+        sb.append("            for (int i = 0; i < ").append(a).append("; i++) {\n");
+        sb.append("                ").append(b).append(" += i * ").append(random.nextInt(10)).append(";\n");
+        sb.append("            }\n");
+        sb.append("        } else if (").append(a).append(" == 0 || ").append(b).append(" < 0) {\n");
+        sb.append("            return ").append(b).append("; // TODO check bounds\n");
+        sb.append("        }\n");
+        sb.append("        while (").append(a).append("-- > 0) ").append(b).append(" ^= ").append(a).append(";\n");
+        sb.append("        return ").append(a).append(" + ").append(b).append(";\n");
+        sb.append("    }\n\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.stride.stride.bench;
+
+import lombok.Data;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Writes reproducible local git repositories for load tests and benchmarks.
+ *
+ * The first commit adds every file; each later commit rewrites a handful of them, so the
+ * history has real churn. Author and commit times are derived from the seed, so the same
+ * spec always produces the same commit ids.
+ */
+public class SyntheticRepoGenerator {
+
+    @Data
+    public static class Spec {
+        private int files = 1000;
+        private int methodsPerFile = 10;
+        private int depth = 6;
+        private double duplicationRate = 0.2;
+        private int commits = 20;
+        private int filesPerCommit = 10;
+        private long seed = 1;
+        /** Extension to relative weight; extensions other than py and js get the Java-like shape. */
+        private Map<String, Integer> languageMix = new LinkedHashMap<>();
+
+        public Spec() {
+            languageMix.put("java", 6);
+            languageMix.put("py", 2);
+            languageMix.put("js", 2);
+        }
+    }
+
+    private static final long EPOCH_MILLIS = 1_600_000_000_000L;
+
+    /**
+     * Create the repository in dir, which must not exist or be empty.
+     *
+     * @return the repository directory
+     */
+    public File generate(File dir, Spec spec) throws Exception {
+        Random random = new Random(spec.getSeed());
+        SyntheticCorpus corpus = new SyntheticCorpus(spec.getSeed(), spec.getDuplicationRate());
+        List<String> extensions = weighted(spec.getLanguageMix());
+
+        List<Path> paths = new ArrayList<>(spec.getFiles());
+        Path root = dir.toPath();
+        for (int f = 0; f < spec.getFiles(); f++) {
+            Path parent = root;
+            int levels = 1 + random.nextInt(Math.max(spec.getDepth(), 1));
+            for (int d = 0; d < levels; d++) parent = parent.resolve("pkg" + random.nextInt(4));
+            String ext = extensions.get(random.nextInt(extensions.size()));
+            paths.add(parent.resolve("Gen" + f + "." + ext));
+        }
+
+        try (Git git = Git.init().setDirectory(dir).setInitialBranch("main").call()) {
+            for (int f = 0; f < paths.size(); f++) write(corpus, paths.get(f), f, spec);
+            commit(git, "Initial import", 0);
+            for (int c = 1; c < spec.getCommits(); c++) {
+                for (int i = 0; i < spec.getFilesPerCommit() && !paths.isEmpty(); i++) {
+                    int f = random.nextInt(paths.size());
+                    write(corpus, paths.get(f), f, spec);
+                }
+                commit(git, "Change " + c, c);
+            }
+        }
+        return dir;
+    }
+
+    private static void write(SyntheticCorpus corpus, Path path, int index, Spec spec) throws IOException {
+        Files.createDirectories(path.getParent());
+        String name = path.getFileName().toString();
+        String ext = name.substring(name.lastIndexOf('.') + 1);
+        Files.writeString(path, corpus.sourceFile(ext, "Gen" + index, spec.getMethodsPerFile()));
+    }
+
+    private static void commit(Git git, String message, int n) throws Exception {
+        PersonIdent ident = new PersonIdent("Load Test", "load@example.com",
+                new Date(EPOCH_MILLIS + n * 3_600_000L), TimeZone.getTimeZone("UTC"));
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage(message).setAuthor(ident).setCommitter(ident).setSign(false).call();
+    }
+
+    private static List<String> weighted(Map<String, Integer> mix) {
+        List<String> out = new ArrayList<>();
+        mix.forEach((ext, weight) -> {
+            for (int i = 0; i < weight; i++) out.add(ext);
+        });
+        if (out.isEmpty()) out.add("java");
+        return out;
+    }
+}
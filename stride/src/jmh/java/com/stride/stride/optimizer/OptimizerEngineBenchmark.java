@@ -0,0 +1,78 @@
+package com.stride.stride.optimizer;
+
+import com.stride.stride.analysis.FileMetrics;
+import com.stride.stride.analysis.RepoMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * generateSuggestions on synthetic analyzer results for large repos, with the built-in rules
+ * alone and with extra file rules overlaid (thresholds spread over the metric ranges).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OptimizerEngineBenchmark {
+
+    private static final String[] EXTENSIONS = {"java", "py", "js", "ts", "go", "md", "xml", "json"};
+
+    @Param({"10000", "100000"})
+    public int files;
+
+    @Param({"0", "200"})
+    public int extraRules;
+
+    private static final String[] RULE_METRICS = {"lines", "complexity", "nesting", "halstead-volume", "comment-density"};
+
+    private RepoMetrics metrics;
+    private OptimizerEngine optimizer;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(3);
+        RepoMetrics.Builder builder = RepoMetrics.builder(files).maxDepth(8);
+        for (int f = 0; f < files; f++) {
+            String ext = EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+            FileMetrics fm = new FileMetrics("/repo/module" + (f % 50) + "/src/File" + f + "." + ext, ext, 3);
+            fm.setLines(10 + random.nextInt(2000));
+            fm.setCommentLines(fm.getLines() / (2 + random.nextInt(8)));
+            fm.setComplexity(1 + random.nextInt(24));
+            fm.setMaxNesting(random.nextInt(9));
+            fm.setOperands(random.nextInt(600));
+            fm.setOperators(random.nextInt(200));
+            fm.setFunctions(random.nextInt(40));
+            fm.setClasses(random.nextInt(3));
+            builder.add(fm);
+        }
+        metrics = builder.build();
+
+        Map<String, String> overlay = new HashMap<>();
+        for (int r = 0; r < extraRules; r++) {
+            String p = OptimizerRules.PREFIX + "extra-" + r + ".";
+            String metric = RULE_METRICS[r % RULE_METRICS.length];
+            overlay.put(p + "metric", metric);
+            overlay.put(p + "above", Integer.toString(switch (metric) {
+                case "lines" -> 1000 + random.nextInt(1000);
+                case "complexity" -> 16 + random.nextInt(8);
+                case "nesting" -> 6 + random.nextInt(3);
+                case "halstead-volume" -> 4000 + random.nextInt(4000);
+                default -> 40 + random.nextInt(10);
+            }));
+            overlay.put(p + "message", "[EXTRA] {file} ({value})");
+        }
+        optimizer = new OptimizerEngine(OptimizerRules.defaults().overlay(overlay));
+    }
+
+    @Benchmark
+    public List<String> generateSuggestions() {
+        return optimizer.generateSuggestions(metrics);
+    }
+}
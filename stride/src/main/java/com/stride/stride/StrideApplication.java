@@ -1,9 +1,12 @@
 package com.stride.stride;
 
+import com.stride.stride.service.StrideProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
+@EnableConfigurationProperties(StrideProperties.class)
 public class StrideApplication {
 
 	public static void main(String[] args) {
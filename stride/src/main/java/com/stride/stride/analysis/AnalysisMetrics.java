@@ -0,0 +1,113 @@
+package com.stride.stride.analysis;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Meters for the analysis pipeline stages. Everything is registered up front except the
+ * per-extension file timers, which are created on first use and capped so an odd repo full of
+ * unusual extensions cannot blow up the series count.
+ */
+public class AnalysisMetrics {
+
+    /** Records nothing: an empty composite registry hands out no-op meters. */
+    public static final AnalysisMetrics NOOP = new AnalysisMetrics(new CompositeMeterRegistry());
+
+    private static final int MAX_EXTENSION_TAGS = 64;
+    private static final String OTHER_EXTENSION = "other";
+
+    private final MeterRegistry registry;
+    private final Timer diskWalk;
+    private final Timer treeWalk;
+    private final Timer duplicates;
+    private final Timer churn;
+    private final Counter bytesRead;
+    private final Counter filesReused;
+    private final Counter skippedBinary;
+    private final Counter skippedGenerated;
+    private final Counter pathsExcluded;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, Timer> fileTimers = new ConcurrentHashMap<>();
+
+    public AnalysisMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.diskWalk = Timer.builder("stride.analysis.walk").tag("source", "disk")
+                .description("Directory walk and per-file analysis of a work tree").register(registry);
+        this.treeWalk = Timer.builder("stride.analysis.walk").tag("source", "tree")
+                .description("Tree walk and per-file analysis of a commit").register(registry);
+        this.duplicates = Timer.builder("stride.analysis.duplicates")
+                .description("Repo-wide duplicate block detection").register(registry);
+        this.churn = Timer.builder("stride.analysis.churn")
+                .description("Git history walk for churn").register(registry);
+        this.bytesRead = Counter.builder("stride.analysis.bytes.read").baseUnit("bytes")
+                .description("File and blob content read for analysis").register(registry);
+        this.filesReused = Counter.builder("stride.analysis.files.reused")
+                .description("Files taken from a previous incremental run without reading them").register(registry);
+        this.skippedBinary = skippedCounter(FileMetrics.SKIPPED_BINARY);
+        this.skippedGenerated = skippedCounter(FileMetrics.SKIPPED_GENERATED);
+        this.pathsExcluded = skippedCounter("excluded");
+        Gauge.builder("stride.analysis.in.flight", inFlight, AtomicInteger::get)
+                .description("Analyses currently running").register(registry);
+    }
+
+    void started() {
+        inFlight.incrementAndGet();
+    }
+
+    void finished() {
+        inFlight.decrementAndGet();
+    }
+
+    void walk(boolean tree, long nanos) {
+        (tree ? treeWalk : diskWalk).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void file(String extension, long nanos) {
+        fileTimer(extension).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void bytesRead(long bytes) {
+        bytesRead.increment(bytes);
+    }
+
+    void fileReused() {
+        filesReused.increment();
+    }
+
+    void fileSkipped(String reason) {
+        (FileMetrics.SKIPPED_BINARY.equals(reason) ? skippedBinary : skippedGenerated).increment();
+    }
+
+    void pathsExcluded(int paths) {
+        if (paths > 0) pathsExcluded.increment(paths);
+    }
+
+    void duplicates(long nanos) {
+        duplicates.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void churn(long nanos) {
+        churn.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Counter skippedCounter(String reason) {
+        return Counter.builder("stride.analysis.files.skipped").tag("reason", reason)
+                .description("Files only counted, and excluded paths never read").register(registry);
+    }
+
+    private Timer fileTimer(String extension) {
+        Timer timer = fileTimers.get(extension);
+        if (timer != null) return timer;
+        String tag = fileTimers.size() < MAX_EXTENSION_TAGS ? extension : OTHER_EXTENSION;
+        return fileTimers.computeIfAbsent(tag, ext -> Timer.builder("stride.analysis.file").tag("extension", ext)
+                .description("Reading and analyzing one file, cache hits included").register(registry));
+    }
+}
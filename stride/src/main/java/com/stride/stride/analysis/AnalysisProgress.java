@@ -0,0 +1,67 @@
+package com.stride.stride.analysis;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Live counters for one analysis, updated by the walk workers and safe to read from any thread.
+ * The total grows while directories are being listed, so it is final only once the walk is done.
+ */
+public class AnalysisProgress {
+
+    private final AtomicInteger filesDiscovered = new AtomicInteger();
+    private final AtomicInteger filesScanned = new AtomicInteger();
+    private final Consumer<FileMetrics> onFile;
+    private volatile boolean cancelled;
+
+    public AnalysisProgress() {
+        this(null);
+    }
+
+    /**
+     * @param onFile called with every file result as soon as it is ready, in completion order and
+     *               possibly from several worker threads at once; if it throws, the run is cancelled
+     */
+    public AnalysisProgress(Consumer<FileMetrics> onFile) {
+        this.onFile = onFile;
+    }
+
+    public int getFilesDiscovered() {
+        return filesDiscovered.get();
+    }
+
+    public int getFilesScanned() {
+        return filesScanned.get();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Ask the walk to stop; it throws CancellationException at the next file. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    void discovered(int files) {
+        filesDiscovered.addAndGet(files);
+    }
+
+    void scanned(FileMetrics metrics) {
+        filesScanned.incrementAndGet();
+        if (onFile == null) return;
+        try {
+            onFile.accept(metrics);
+        } catch (RuntimeException e) {
+            cancelled = true;
+            throw e;
+        }
+    }
+
+    void checkCancelled() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Analysis cancelled");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.stride.stride.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * One repository's stride-analyzer.properties, parsed: an immutable value made once per distinct
+ * file content and passed down through a single analysis, so concurrent analyses of different
+ * repositories never see each other's settings. A repository without the file gets
+ * {@link #DEFAULTS}.
+ *
+ * Unparseable numbers fall back to their defaults, as they always have.
+ */
+public final class AnalyzerSettings {
+
+    public static final String FILE_NAME = "stride-analyzer.properties";
+
+    static final int DUP_WINDOW_TOKENS_DEFAULT = 50;
+    static final int DUP_WINNOW_WINDOW_DEFAULT = 8;
+    static final int LARGE_FILE_THRESHOLD_DEFAULT = 500;
+
+    public static final AnalyzerSettings DEFAULTS = new AnalyzerSettings(new Properties());
+
+    private final int dupWindowTokens;
+    private final int winnowWindow;
+    private final int largeFileThreshold;
+    // churn window; 0 = unlimited
+    private final int churnSinceDays;
+    private final int churnMaxCommits;
+    // every key, including the optimizer.* ones the analyzer itself does not read
+    private final Map<String, String> properties;
+
+    private AnalyzerSettings(Properties config) {
+        Map<String, String> copy = new TreeMap<>();
+        for (String key : config.stringPropertyNames()) copy.put(key, config.getProperty(key));
+        this.properties = Collections.unmodifiableMap(copy);
+        this.dupWindowTokens = intValue("dup.window.tokens", DUP_WINDOW_TOKENS_DEFAULT);
+        this.winnowWindow = intValue("dup.winnow.window", DUP_WINNOW_WINDOW_DEFAULT);
+        this.largeFileThreshold = intValue("large.file.threshold", LARGE_FILE_THRESHOLD_DEFAULT);
+        this.churnSinceDays = intValue("churn.since.days", 0);
+        this.churnMaxCommits = intValue("churn.max.commits", 0);
+    }
+
+    /**
+     * @param content the file as read by {@link Properties#load(java.io.InputStream)}, one char
+     *                per ISO 8859-1 byte
+     */
+    public static AnalyzerSettings parse(String content) {
+        Properties config = new Properties();
+        try {
+            config.load(new StringReader(content));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by a StringReader
+        } catch (IllegalArgumentException e) {
+            // a malformed \\uXXXX escape; keep what was read before it
+        }
+        return new AnalyzerSettings(config);
+    }
+
+    private int intValue(String key, int def) {
+        String v = properties.get(key);
+        if (v == null) return def;
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    public int getDupWindowTokens() {
+        return dupWindowTokens;
+    }
+
+    public int getWinnowWindow() {
+        return winnowWindow;
+    }
+
+    public int getLargeFileThreshold() {
+        return largeFileThreshold;
+    }
+
+    public int getChurnSinceDays() {
+        return churnSinceDays;
+    }
+
+    public int getChurnMaxCommits() {
+        return churnMaxCommits;
+    }
+
+    /** All keys and values of the file, sorted by key. */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+}
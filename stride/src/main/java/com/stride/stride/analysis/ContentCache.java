@@ -0,0 +1,224 @@
+package com.stride.stride.analysis;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed cache of per-file results, shared across paths, repos and runs.
+ *
+ * Keys are the git blob id of the file content plus the settings the result depends on, so
+ * identical content (vendored code, generated files, forks) is tokenized once. Values hold only
+ * content-derived metrics, a binary or generated verdict of the content test included; the path
+ * is attached again on every hit. Entries are evicted in LRU
+ * order once either the entry or the estimated byte budget is exceeded. The cache can be saved
+ * to and loaded from a single file so results survive restarts; the file records the analyzer
+ * version it was written by and is ignored as a whole by any other version.
+ */
+public class ContentCache {
+
+    private static final int FILE_MAGIC = 0x53434334; // "SCC4"
+    // keys and secret texts are short; anything longer is a corrupt length field
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int analyzerVersion;
+    private final LinkedHashMap<String, FileMetrics> entries = new LinkedHashMap<>(1024, 0.75f, true);
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ContentCache(int maxEntries, long maxBytes) {
+        this(maxEntries, maxBytes, Analyzer.VERSION);
+    }
+
+    ContentCache(int maxEntries, long maxBytes, int analyzerVersion) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.analyzerVersion = analyzerVersion;
+    }
+
+    static String key(String blobId, int dupWindowTokens, int winnowWindow, String secretRules) {
+        return blobId + '/' + dupWindowTokens + '/' + winnowWindow + '/' + secretRules;
+    }
+
+    /**
+     * @return the cached content metrics (no location), or null on a miss
+     */
+    FileMetrics get(String key) {
+        FileMetrics fm;
+        synchronized (this) {
+            fm = entries.get(key);
+        }
+        if (fm != null) hits.incrementAndGet();
+        else misses.incrementAndGet();
+        return fm;
+    }
+
+    void put(String key, FileMetrics metrics) {
+        FileMetrics value = metrics.relocate(null, null, 0);
+        synchronized (this) {
+            FileMetrics old = entries.put(key, value);
+            if (old != null) bytes -= weight(key, old);
+            bytes += weight(key, value);
+            Iterator<Map.Entry<String, FileMetrics>> it = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+                Map.Entry<String, FileMetrics> eldest = it.next();
+                bytes -= weight(eldest.getKey(), eldest.getValue());
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("estimatedBytes", bytes);
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("evictions", evictions.get());
+        stats.put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+        return stats;
+    }
+
+    // Rough heap footprint: object headers and fields, key chars, fingerprint arrays, secret text
+    private static long weight(String key, FileMetrics fm) {
+        long w = 160 + 2L * key.length() + 16L * fm.getFingerprints().size();
+        for (FileMetrics.SecretHit hit : fm.getSecrets()) w += 48 + 2L * hit.getText().length();
+        return w;
+    }
+
+    /**
+     * Write all entries, least recently used first, replacing the file atomically.
+     */
+    public void save(Path file) throws IOException {
+        List<Map.Entry<String, FileMetrics>> copy;
+        synchronized (this) {
+            copy = new ArrayList<>(entries.entrySet());
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, "content-cache", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(analyzerVersion);
+            out.writeInt(copy.size());
+            for (Map.Entry<String, FileMetrics> e : copy) {
+                writeString(out, e.getKey());
+                writeMetrics(out, e.getValue());
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load entries written by {@link #save}. The file is read completely before any entry is
+     * added, so a missing, truncated, corrupt or other-version file leaves the cache unchanged.
+     */
+    public void load(Path file) {
+        if (!Files.isRegularFile(file)) return;
+        List<String> keys = new ArrayList<>();
+        List<FileMetrics> values = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != analyzerVersion) return;
+            int n = checkCount(in.readInt());
+            for (int i = 0; i < n; i++) {
+                keys.add(readString(in));
+                values.add(readMetrics(in));
+            }
+        } catch (IOException ignored) {
+            // a truncated or stale cache file only costs re-analysis
+            return;
+        }
+        for (int i = 0; i < keys.size(); i++) put(keys.get(i), values.get(i));
+    }
+
+    private static void writeMetrics(DataOutputStream out, FileMetrics fm) throws IOException {
+        out.writeInt(fm.getLines());
+        out.writeInt(fm.getCommentLines());
+        out.writeInt(fm.getComplexity());
+        out.writeInt(fm.getFunctions());
+        out.writeInt(fm.getClasses());
+        out.writeInt(fm.getMaxNesting());
+        out.writeInt(fm.getOperators());
+        out.writeInt(fm.getOperands());
+        out.writeInt(fm.getCognitiveComplexity());
+        out.writeInt(fm.getTodoCount());
+        out.writeInt(fm.getImportCount());
+        Fingerprints fp = fm.getFingerprints();
+        out.writeInt(fp.size());
+        for (int i = 0; i < fp.size(); i++) {
+            out.writeLong(fp.hash(i));
+            out.writeInt(fp.startLine(i));
+            out.writeInt(fp.endLine(i));
+        }
+        out.writeInt(fm.getSecrets().size());
+        for (FileMetrics.SecretHit hit : fm.getSecrets()) {
+            out.writeInt(hit.getLine());
+            writeString(out, hit.getText());
+            writeString(out, hit.getRule());
+        }
+        writeString(out, fm.getSkipped() != null ? fm.getSkipped() : "");
+    }
+
+    private static FileMetrics readMetrics(DataInputStream in) throws IOException {
+        FileMetrics fm = new FileMetrics();
+        fm.setLines(in.readInt());
+        fm.setCommentLines(in.readInt());
+        fm.setComplexity(in.readInt());
+        fm.setFunctions(in.readInt());
+        fm.setClasses(in.readInt());
+        fm.setMaxNesting(in.readInt());
+        fm.setOperators(in.readInt());
+        fm.setOperands(in.readInt());
+        fm.setCognitiveComplexity(in.readInt());
+        fm.setTodoCount(in.readInt());
+        fm.setImportCount(in.readInt());
+        int n = checkCount(in.readInt());
+        Fingerprints.Builder fp = new Fingerprints.Builder();
+        for (int i = 0; i < n; i++) fp.add(in.readLong(), in.readInt(), in.readInt());
+        fm.setFingerprints(fp.build());
+        int secrets = checkCount(in.readInt());
+        for (int i = 0; i < secrets; i++) {
+            int line = in.readInt();
+            String text = readString(in);
+            fm.getSecrets().add(new FileMetrics.SecretHit(line, text, readString(in)));
+        }
+        String skipped = readString(in);
+        fm.setSkipped(skipped.isEmpty() ? null : skipped);
+        return fm;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = checkCount(in.readInt());
+        if (length > MAX_STRING_BYTES) throw new StreamCorruptedException("string of " + length + " bytes");
+        byte[] b = new byte[length];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static int checkCount(int n) throws IOException {
+        if (n < 0) throw new StreamCorruptedException("negative count " + n);
+        return n;
+    }
+}
@@ -0,0 +1,118 @@
+package com.stride.stride.analysis;
+
+import com.stride.stride.model.DuplicateBlock;
+
+import java.util.*;
+
+/**
+ * Repo-wide duplicate detection over winnowed fingerprints.
+ *
+ * An open-addressing table maps each fingerprint to its first occurrence (file id and index),
+ * using only primitive arrays. Every later occurrence is matched against that first one, so a
+ * block copied into n files yields n - 1 pairs rather than n^2. Matches between the same two
+ * files are then merged into contiguous line ranges.
+ */
+final class DuplicateDetector {
+
+    List<DuplicateBlock> detect(List<FileMetrics> files) {
+        int total = 0;
+        for (FileMetrics fm : files) total += fm.getFingerprints().size();
+        if (total == 0) return new ArrayList<>();
+
+        int cap = Integer.highestOneBit(Math.max(total, 8) * 2 - 1) << 1;
+        int mask = cap - 1;
+        long[] keys = new long[cap];
+        int[] firstFile = new int[cap]; // file id + 1; 0 marks an empty slot
+        int[] firstIndex = new int[cap];
+
+        // (first file << 32 | second file) -> matched line ranges
+        Map<Long, MatchList> pairs = new TreeMap<>();
+
+        for (int f = 0; f < files.size(); f++) {
+            Fingerprints fp = files.get(f).getFingerprints();
+            for (int j = 0; j < fp.size(); j++) {
+                long h = fp.hash(j);
+                int slot = (int) mix(h) & mask;
+                while (firstFile[slot] != 0 && keys[slot] != h) slot = (slot + 1) & mask;
+                if (firstFile[slot] == 0) {
+                    keys[slot] = h;
+                    firstFile[slot] = f + 1;
+                    firstIndex[slot] = j;
+                    continue;
+                }
+                int g = firstFile[slot] - 1;
+                Fingerprints first = files.get(g).getFingerprints();
+                int i = firstIndex[slot];
+                if (g == f && fp.startLine(j) <= first.endLine(i)) continue; // overlapping repeat inside one file
+                pairs.computeIfAbsent(((long) g << 32) | f, k -> new MatchList())
+                        .add(first.startLine(i), first.endLine(i), fp.startLine(j), fp.endLine(j));
+            }
+        }
+
+        List<DuplicateBlock> blocks = new ArrayList<>();
+        for (Map.Entry<Long, MatchList> e : pairs.entrySet()) {
+            String fileA = files.get((int) (e.getKey() >>> 32)).getPath();
+            String fileB = files.get((int) (long) e.getKey()).getPath();
+            e.getValue().merge((sA, eA, sB, eB, count) ->
+                    blocks.add(new DuplicateBlock(fileA, sA, eA, fileB, sB, eB, count)));
+        }
+        return blocks;
+    }
+
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** Receives one merged run of matches: line ranges in both files and the fingerprints in it. */
+    interface BlockSink {
+        void block(int startA, int endA, int startB, int endB, int fingerprints);
+    }
+
+    /** Packed (startA, endA, startB, endB) quadruples for one file pair. */
+    static final class MatchList {
+        private int[] data = new int[16];
+        private int size;
+
+        void add(int startA, int endA, int startB, int endB) {
+            if (size + 4 > data.length) data = Arrays.copyOf(data, data.length * 2);
+            data[size++] = startA;
+            data[size++] = endA;
+            data[size++] = startB;
+            data[size++] = endB;
+        }
+
+        void merge(BlockSink out) {
+            int n = size / 4;
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            Arrays.sort(order, (x, y) -> data[x * 4 + 2] != data[y * 4 + 2]
+                    ? Integer.compare(data[x * 4 + 2], data[y * 4 + 2])
+                    : Integer.compare(data[x * 4], data[y * 4]));
+
+            int sA = 0, eA = 0, sB = 0, eB = 0, count = 0;
+            for (int idx : order) {
+                int o = idx * 4;
+                boolean contiguous = count > 0
+                        && data[o + 2] <= eB + 1
+                        && data[o] <= eA + 1 && data[o + 1] >= sA - 1;
+                if (contiguous) {
+                    sA = Math.min(sA, data[o]);
+                    eA = Math.max(eA, data[o + 1]);
+                    eB = Math.max(eB, data[o + 3]);
+                    count++;
+                    continue;
+                }
+                if (count > 0) out.block(sA, eA, sB, eB, count);
+                sA = data[o];
+                eA = data[o + 1];
+                sB = data[o + 2];
+                eB = data[o + 3];
+                count = 1;
+            }
+            if (count > 0) out.block(sA, eA, sB, eB, count);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.stride.stride.analysis;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.ignore.FastIgnoreRule;
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
+import org.eclipse.jgit.util.FS;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Decides which files the walk reads, before any of them is tokenized.
+ *
+ * Three stages, cheapest first:
+ * <ul>
+ *   <li>paths: version control directories always, then the configured exclude list and, for
+ *       work trees, the repository's core.excludesFile, info/exclude and .gitignore files (all in
+ *       gitignore syntax). As in git, the last three leave files in the index alone, so a work
+ *       tree and its checked out commit hold the same files. An excluded directory is not even
+ *       listed.</li>
+ *   <li>names: known binary extensions, lock files and generated or minified file names are
+ *       skipped without opening them.</li>
+ *   <li>content: the first {@value #SNIFF_BYTES} bytes, read anyway for analysis, mark a file
+ *       binary when they hold a NUL byte (git's test; UTF-16 with a byte order mark is text), or
+ *       generated when they carry a generated code marker or look minified (very long lines).</li>
+ * </ul>
+ * Skipped files are still counted, per reason, in the result. The content test depends on the
+ * content alone, so its verdict is cached by blob id like any other result.
+ */
+public final class FileClassifier {
+
+    /** Build output, dependency and tool directories left out of every analysis by default. */
+    public static final String DEFAULT_EXCLUDES = "node_modules/,bower_components/,target/,build/,dist/,"
+            + ".gradle/,.idea/,.vscode/,__pycache__/,.venv/,venv/";
+
+    /** Bytes inspected by the content test. */
+    static final int SNIFF_BYTES = 8000;
+
+    private static final Set<String> VCS_DIRS = Set.of(".git", ".hg", ".svn");
+
+    private static final Set<String> BINARY_EXTENSIONS = Set.of(
+            "png", "jpg", "jpeg", "gif", "bmp", "ico", "icns", "webp", "tif", "tiff", "psd",
+            "jar", "war", "ear", "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst",
+            "class", "o", "obj", "so", "dll", "dylib", "exe", "a", "lib", "pyc", "pyo", "wasm",
+            "pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "odt",
+            "woff", "woff2", "ttf", "otf", "eot",
+            "mp3", "mp4", "wav", "ogg", "flac", "avi", "mov", "mkv", "webm",
+            "bin", "dat", "db", "sqlite", "iso", "dmg", "keystore", "jks", "p12");
+
+    private static final Set<String> GENERATED_NAMES = Set.of(
+            "package-lock.json", "yarn.lock", "pnpm-lock.yaml", "npm-shrinkwrap.json", "composer.lock",
+            "gemfile.lock", "cargo.lock", "poetry.lock", "pipfile.lock", "go.sum", "gradle.lockfile");
+
+    private static final String[] GENERATED_SUFFIXES = {
+            ".min.js", ".min.css", ".min.mjs", ".bundle.js", ".map", ".pb.go", "_pb2.py", "_pb2_grpc.py",
+            ".pb.h", ".pb.cc", ".g.dart", ".freezed.dart", ".designer.cs", ".generated.cs", ".generated.ts"};
+
+    // Matched ignoring ASCII case against the head of the file
+    private static final String[] GENERATED_MARKERS = {
+            "@generated", "do not edit", "auto-generated", "autogenerated", "generated by protoc"};
+
+    private static final int MARKER_BYTES = 1024;
+    // Average line length of the sniffed head above which a file counts as minified
+    private static final int MINIFIED_LINE_LENGTH = 500;
+
+    private final List<String> excludes;
+    private final IgnoreNode excludeRules;
+    private final boolean respectGitignore;
+    private final String signature;
+
+    /**
+     * @param excludes         gitignore-style patterns, matched against paths relative to the repository root
+     * @param respectGitignore whether work tree walks also skip what the repository's .gitignore files ignore
+     */
+    public FileClassifier(List<String> excludes, boolean respectGitignore) {
+        List<FastIgnoreRule> rules = new ArrayList<>();
+        List<String> patterns = new ArrayList<>();
+        for (String exclude : excludes) {
+            String pattern = exclude.trim();
+            if (pattern.isEmpty()) continue;
+            patterns.add(pattern);
+            rules.add(new FastIgnoreRule(pattern));
+        }
+        this.excludes = List.copyOf(patterns);
+        this.excludeRules = new IgnoreNode(rules);
+        this.respectGitignore = respectGitignore;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((this.excludes + "/" + respectGitignore).getBytes(StandardCharsets.UTF_8));
+            this.signature = HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** The default exclude list, honouring .gitignore. */
+    public static FileClassifier defaults() {
+        return new FileClassifier(Arrays.asList(DEFAULT_EXCLUDES.split(",")), true);
+    }
+
+    /** SHA-256 of the exclude settings, in hex; results are only comparable under the same one. */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * Version control directories and the configured excludes.
+     *
+     * @param path relative to the repository root, '/'-separated
+     */
+    boolean isExcluded(String path, boolean directory) {
+        int slash = path.lastIndexOf('/');
+        if (VCS_DIRS.contains(path.substring(slash + 1))) return true;
+        return Boolean.TRUE.equals(excludeRules.checkIgnored(path, directory));
+    }
+
+    /**
+     * @return the skip reason the file name alone gives, or null when the content decides
+     */
+    static String classifyName(String name, String extension) {
+        if (BINARY_EXTENSIONS.contains(extension)) return FileMetrics.SKIPPED_BINARY;
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (GENERATED_NAMES.contains(lower)) return FileMetrics.SKIPPED_GENERATED;
+        for (String suffix : GENERATED_SUFFIXES) {
+            if (lower.endsWith(suffix)) return FileMetrics.SKIPPED_GENERATED;
+        }
+        return null;
+    }
+
+    /**
+     * @param content the file content from its position on; only the first {@link #SNIFF_BYTES} are read
+     * @return the skip reason the content gives, or null to analyze the file
+     */
+    static String classifyContent(ByteBuffer content) {
+        int from = content.position();
+        int to = from + Math.min(content.remaining(), SNIFF_BYTES);
+        // NUL bytes are expected in UTF-16 text, which announces itself with a byte order mark
+        boolean utf16 = to - from >= 2 && ((content.get(from) == (byte) 0xFF && content.get(from + 1) == (byte) 0xFE)
+                || (content.get(from) == (byte) 0xFE && content.get(from + 1) == (byte) 0xFF));
+        int newlines = 0;
+        for (int i = from; i < to; i++) {
+            byte b = content.get(i);
+            if (b == 0 && !utf16) return FileMetrics.SKIPPED_BINARY;
+            if (b == '\n') newlines++;
+        }
+        if ((to - from) / (newlines + 1) > MINIFIED_LINE_LENGTH) return FileMetrics.SKIPPED_GENERATED;
+
+        // Markers sit in a header comment
+        int markerEnd = Math.min(to, from + MARKER_BYTES);
+        for (String marker : GENERATED_MARKERS) {
+            if (containsIgnoreCase(content, from, markerEnd, marker)) return FileMetrics.SKIPPED_GENERATED;
+        }
+        return null;
+    }
+
+    // ASCII case-insensitive search; markers are lowercase
+    private static boolean containsIgnoreCase(ByteBuffer content, int from, int to, String marker) {
+        int last = to - marker.length();
+        for (int i = from; i <= last; i++) {
+            int k = 0;
+            while (k < marker.length()) {
+                int c = content.get(i + k);
+                if (c >= 'A' && c <= 'Z') c += 32;
+                if (c != marker.charAt(k)) break;
+                k++;
+            }
+            if (k == marker.length()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Exclusion state at the root of a work tree: the core.excludesFile of .git/config, then
+     * .git/info/exclude, then the root .gitignore, each taking precedence over the one before.
+     * Like git, these rules only apply to paths that are not in the index.
+     */
+    Scope root(File repoDir) {
+        Set<String> tracked = respectGitignore ? tracked(repoDir) : Set.of();
+        Scope global = new Scope(null, "", respectGitignore ? parse(excludesFile(repoDir)) : null, tracked, false);
+        Scope info = new Scope(global, "", respectGitignore ? parse(new File(repoDir, ".git/info/exclude")) : null, tracked, false);
+        return new Scope(info, "", respectGitignore ? parse(new File(repoDir, ".gitignore")) : null, tracked, false);
+    }
+
+    // Files in the index and, with a trailing '/', every directory holding one
+    private static Set<String> tracked(File repoDir) {
+        File index = new File(repoDir, ".git/index");
+        if (!index.isFile()) return Set.of();
+        DirCache cache;
+        try {
+            cache = DirCache.read(index, FS.DETECTED);
+        } catch (IOException e) {
+            return Set.of(); // unreadable index - treat every file as untracked
+        }
+        Set<String> tracked = new HashSet<>(cache.getEntryCount() * 2);
+        for (int i = 0; i < cache.getEntryCount(); i++) {
+            String path = cache.getEntry(i).getPathString();
+            if (!tracked.add(path)) continue; // stages of a conflicted path
+            for (int slash = path.lastIndexOf('/'); slash > 0; slash = path.lastIndexOf('/', slash - 1)) {
+                if (!tracked.add(path.substring(0, slash + 1))) break;
+            }
+        }
+        return tracked;
+    }
+
+    // core.excludesFile as git resolves it: "~/" is the home directory, a relative path the work tree
+    private static File excludesFile(File repoDir) {
+        File config = new File(repoDir, ".git/config");
+        if (!config.isFile()) return null;
+        FileBasedConfig repoConfig = new FileBasedConfig(config, FS.DETECTED);
+        try {
+            repoConfig.load();
+        } catch (IOException | ConfigInvalidException e) {
+            return null; // unreadable config - analyze as if it set nothing
+        }
+        String path = repoConfig.getString(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_KEY_EXCLUDESFILE);
+        if (path == null || path.isBlank()) return null;
+        if (path.startsWith("~/")) return new File(FS.DETECTED.userHome(), path.substring(2));
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(repoDir, path);
+    }
+
+    private static IgnoreNode parse(File file) {
+        if (file == null || !file.isFile()) return null;
+        IgnoreNode node = new IgnoreNode();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            node.parse(file.getPath(), in);
+        } catch (IOException e) {
+            return null; // unreadable ignore file - analyze as if it were absent
+        }
+        return node.getRules().isEmpty() ? null : node;
+    }
+
+    /**
+     * One directory of a walk: its path from the root and the ignore rules in force there.
+     * Rules of deeper .gitignore files take precedence, as in git. An ignored directory is still
+     * entered when it holds tracked files, but nothing untracked inside it is read.
+     */
+    final class Scope {
+        private final Scope parent;
+        private final String base;
+        private final IgnoreNode rules;
+        private final Set<String> tracked;
+        private final boolean ignored;
+
+        private Scope(Scope parent, String base, IgnoreNode rules, Set<String> tracked, boolean ignored) {
+            this.parent = parent;
+            this.base = base;
+            this.rules = rules;
+            this.tracked = tracked;
+            this.ignored = ignored;
+        }
+
+        /** State inside a sub-directory, with its .gitignore if it has one. */
+        Scope enter(String name, File dir) {
+            return new Scope(this, base + name + '/', respectGitignore ? parse(new File(dir, ".gitignore")) : null,
+                    tracked, ignored || isIgnored(base + name, true));
+        }
+
+        boolean isExcluded(String name, boolean directory) {
+            String path = base + name;
+            if (FileClassifier.this.isExcluded(path, directory)) return true;
+            if (tracked.contains(directory ? path + '/' : path)) return false;
+            return ignored || isIgnored(path, directory);
+        }
+
+        private boolean isIgnored(String path, boolean directory) {
+            for (Scope s = this; s != null; s = s.parent) {
+                if (s.rules == null) continue;
+                Boolean ignored = s.rules.checkIgnored(path.substring(s.base.length()), directory);
+                if (ignored != null) return ignored;
+            }
+            return false;
+        }
+    }
+}
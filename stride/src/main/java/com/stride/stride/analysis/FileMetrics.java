@@ -0,0 +1,99 @@
+package com.stride.stride.analysis;
+
+import lombok.Data;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-file analysis result. Produced independently for every file so the walk can run
+ * in parallel; the Analyzer merges these into the repo-wide metrics map afterwards.
+ */
+@Data
+public class FileMetrics {
+
+    /** Skip reason of a file whose content is not text. */
+    public static final String SKIPPED_BINARY = "binary";
+    /** Skip reason of a lock file, generated source or minified bundle. */
+    public static final String SKIPPED_GENERATED = "generated";
+
+    private String path;
+    private String extension;
+    private int depth;
+
+    private int lines;
+    private int commentLines;
+    private int complexity = 1;
+    private int functions;
+    private int classes;
+    private int maxNesting;
+    private int operators;
+    private int operands;
+    private int cognitiveComplexity;
+    private int todoCount;
+    private int importCount;
+
+    private Fingerprints fingerprints = Fingerprints.EMPTY;
+    private List<SecretHit> secrets = new ArrayList<>();
+
+    // Why the file was only counted, not analyzed (see FileClassifier); null for an analyzed file
+    private String skipped;
+
+    /** A line flagged by a secret rule; the message is built with the path at merge time. */
+    @Value
+    public static class SecretHit {
+        int line;
+        String text;
+        String rule;
+    }
+
+    public FileMetrics() {
+    }
+
+    public FileMetrics(String path, String extension, int depth) {
+        this.path = path;
+        this.extension = extension;
+        this.depth = depth;
+    }
+
+    /**
+     * Copy of the content-derived metrics placed at another location (used for cache hits).
+     * The secrets list is copied, so changes to the copy never reach a cached instance.
+     */
+    public FileMetrics relocate(String path, String extension, int depth) {
+        FileMetrics copy = new FileMetrics(path, extension, depth);
+        copy.lines = lines;
+        copy.commentLines = commentLines;
+        copy.complexity = complexity;
+        copy.functions = functions;
+        copy.classes = classes;
+        copy.maxNesting = maxNesting;
+        copy.operators = operators;
+        copy.operands = operands;
+        copy.cognitiveComplexity = cognitiveComplexity;
+        copy.todoCount = todoCount;
+        copy.importCount = importCount;
+        copy.fingerprints = fingerprints;
+        copy.secrets = new ArrayList<>(secrets);
+        copy.skipped = skipped;
+        return copy;
+    }
+
+    public double getHalsteadVolume() {
+        return halsteadVolume(operators, operands);
+    }
+
+    static double halsteadVolume(int operators, int operands) {
+        return (operators + operands) * Math.log(Math.max(operands, 1)) / Math.log(2);
+    }
+
+    public double getCommentDensity() {
+        return commentDensity(commentLines, lines);
+    }
+
+    static double commentDensity(int commentLines, int lines) {
+        double cDensity = lines == 0 ? 0.0 : ((double) commentLines / lines);
+        return Math.round(cDensity * 10000.0) / 10000.0;
+    }
+}
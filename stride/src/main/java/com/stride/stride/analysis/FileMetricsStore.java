@@ -0,0 +1,19 @@
+package com.stride.stride.analysis;
+
+import java.io.File;
+
+/**
+ * Hook for callers that keep per-file results between runs.
+ * The walk asks for a previous result before reading a file (possibly from several worker
+ * threads at once), and every result of the run, reused or fresh, is recorded in walk order
+ * on the calling thread once the walk has finished.
+ */
+public interface FileMetricsStore {
+
+    /**
+     * @return a still-valid result for this file, or null to analyze it
+     */
+    FileMetrics lookup(File file, int depth);
+
+    void record(FileMetrics metrics);
+}
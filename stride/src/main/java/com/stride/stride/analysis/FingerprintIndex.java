@@ -0,0 +1,385 @@
+package com.stride.stride.analysis;
+
+import com.stride.stride.model.CrossRepoDuplicate;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Winnowed fingerprints of every analyzed repository, kept on disk, so an analysis can report
+ * code first seen in another repository of the estate.
+ *
+ * Each fingerprint maps to its first occurrence: a file id and the lines the k-gram covers. The
+ * table is an open-addressing hash table in a memory-mapped file of 20-byte slots, mapped in
+ * segments of 2^26 slots, so a lookup is a probe or two into the page cache whatever the size of
+ * the index, and nothing of it is on the heap. File ids refer to a small append-only registry of
+ * (repository, relative path) that is read into memory on open. The table doubles into a new
+ * file at 70% load; size the initial capacity for the estate to avoid rehashing a large index.
+ *
+ * Lookups run concurrently. Adds are serialized among themselves and take the write lock one file
+ * at a time; a growing table is rehashed beside the old one while lookups go on, and only swapped
+ * in under the write lock. Fingerprints depend on the duplicate window settings, so only
+ * repositories analyzed with the same settings match.
+ */
+public final class FingerprintIndex implements Closeable {
+
+    private static final int TABLE_MAGIC = 0x53464931; // "SFI1"
+    private static final int REGISTRY_MAGIC = 0x53465231; // "SFR1"
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 20; // hash, file id + 1 (0 = empty), start line, end line
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final double MAX_LOAD = 0.7;
+    private static final long MIN_CAPACITY = 1024;
+
+    private static final byte REPO_RECORD = 'R';
+    private static final byte FILE_RECORD = 'F';
+
+    private final Path tableFile;
+    private final Path registryFile;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Held by the one add (or close) at a time; the only thread that writes slots or grows the table
+    private final ReentrantLock writer = new ReentrantLock();
+
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments;
+    private long capacity;
+    private long size;
+
+    // Registry: repositories by id, and the repository and relative path of each file id
+    private final List<String> repos = new ArrayList<>();
+    private final Map<String, Integer> repoIds = new HashMap<>();
+    private final List<String> filePaths = new ArrayList<>();
+    private int[] fileRepo = new int[1024];
+    private final Map<String, Integer> fileIds = new HashMap<>();
+    private final DataOutputStream registry;
+
+    /**
+     * Opens the index in {@code dir}, creating it when missing. A table and registry that do not
+     * belong together (one missing or unreadable) are discarded and the index starts empty.
+     *
+     * @param initialCapacity slots of a new table, rounded up to a power of two
+     */
+    public FingerprintIndex(Path dir, long initialCapacity) throws IOException {
+        Files.createDirectories(dir);
+        this.tableFile = dir.resolve("fingerprints.idx");
+        this.registryFile = dir.resolve("fingerprint-files.bin");
+        if (!loadRegistry() || !openTable()) {
+            repos.clear();
+            repoIds.clear();
+            filePaths.clear();
+            fileIds.clear();
+            Files.deleteIfExists(registryFile);
+            long slots = Math.max(Long.highestOneBit(Math.max(initialCapacity, MIN_CAPACITY) - 1) << 1, MIN_CAPACITY);
+            createTable(tableFile, slots);
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(registryFile))) {
+                out.writeInt(REGISTRY_MAGIC);
+            }
+        }
+        this.registry = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(registryFile, StandardOpenOption.APPEND)));
+    }
+
+    /**
+     * Code of an analysis that the index records as first seen in another repository, merged
+     * into contiguous line ranges per pair of files. Occurrences recorded for {@code repo} itself
+     * are skipped, so analyzing a repository again does not report it against itself.
+     *
+     * @param repo identity of the analyzed repository, as passed to {@link #add}
+     */
+    public List<CrossRepoDuplicate> match(String repo, RepoMetrics metrics) {
+        // (analyzed file << 32 | indexed file) -> matched lines, indexed file as side A
+        Map<Long, DuplicateDetector.MatchList> pairs = new TreeMap<>();
+        List<CrossRepoDuplicate> out = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Integer self = repoIds.get(repo);
+            int own = self != null ? self : -1;
+            int known = filePaths.size();
+            for (int f = 0; f < metrics.getFileCount(); f++) {
+                Fingerprints fp = metrics.getFingerprints(f);
+                for (int j = 0; j < fp.size(); j++) {
+                    long slot = find(segments, capacity - 1, fp.hash(j));
+                    ByteBuffer seg = segments[(int) (slot >>> SEGMENT_SHIFT)];
+                    int off = (int) (slot & SEGMENT_MASK) * SLOT_BYTES;
+                    int file = seg.getInt(off + 8) - 1;
+                    // an id past the registry: the table reached the disk but the registry did not
+                    if (file < 0 || file >= known || fileRepo[file] == own) continue;
+                    pairs.computeIfAbsent(((long) f << 32) | file, k -> new DuplicateDetector.MatchList())
+                            .add(seg.getInt(off + 12), seg.getInt(off + 16), fp.startLine(j), fp.endLine(j));
+                }
+            }
+            for (Map.Entry<Long, DuplicateDetector.MatchList> e : pairs.entrySet()) {
+                String file = metrics.getPath((int) (e.getKey() >>> 32));
+                int source = (int) (long) e.getKey();
+                String sourceRepo = repos.get(fileRepo[source]);
+                String sourceFile = filePaths.get(source);
+                e.getValue().merge((sA, eA, sB, eB, count) ->
+                        out.add(new CrossRepoDuplicate(file, sB, eB, sourceRepo, sourceFile, sA, eA, count)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return out;
+    }
+
+    /**
+     * Records the fingerprints of an analysis that are not in the index yet, as first seen in
+     * {@code repo}. Fingerprints already present keep their first occurrence.
+     *
+     * @param root prefix stripped from analyzed paths (the repository directory plus a separator
+     *             for work trees, empty for commits whose paths are already relative)
+     * @return the number of fingerprints added
+     */
+    public int add(String repo, RepoMetrics metrics, String root) throws IOException {
+        writer.lock();
+        try {
+            int added = 0;
+            int repoId = -1;
+            for (int f = 0; f < metrics.getFileCount(); f++) {
+                Fingerprints fp = metrics.getFingerprints(f);
+                if (fp.size() == 0) continue;
+                // room for the whole file first, so the write lock is never held across a rehash
+                while (size + fp.size() > capacity * MAX_LOAD) grow();
+                lock.writeLock().lock();
+                try {
+                    int file = -1;
+                    for (int j = 0; j < fp.size(); j++) {
+                        long hash = fp.hash(j);
+                        long slot = find(segments, capacity - 1, hash);
+                        ByteBuffer seg = segments[(int) (slot >>> SEGMENT_SHIFT)];
+                        int off = (int) (slot & SEGMENT_MASK) * SLOT_BYTES;
+                        if (seg.getInt(off + 8) != 0) continue;
+                        if (file < 0) {
+                            if (repoId < 0) repoId = repoId(repo);
+                            String path = metrics.getPath(f);
+                            file = fileId(repoId, path.startsWith(root) ? path.substring(root.length()) : path);
+                        }
+                        seg.putLong(off, hash);
+                        seg.putInt(off + 12, fp.startLine(j));
+                        seg.putInt(off + 16, fp.endLine(j));
+                        seg.putInt(off + 8, file + 1);
+                        size++;
+                        added++;
+                    }
+                    header.putLong(12, size);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            return added;
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("fingerprints", size);
+            stats.put("capacity", capacity);
+            stats.put("load", (double) size / capacity);
+            stats.put("repositories", repos.size());
+            stats.put("files", filePaths.size());
+            stats.put("tableBytes", HEADER_BYTES + capacity * SLOT_BYTES);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return stats;
+    }
+
+    /** Writes the table and registry through to disk. */
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            registry.flush();
+            for (MappedByteBuffer seg : segments) seg.force();
+            header.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.lock();
+        try {
+            flush();
+            lock.writeLock().lock();
+            try {
+                registry.close();
+                channel.close();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    // Slot holding the hash, or the empty slot where it would go; the load cap keeps one free
+    private static long find(MappedByteBuffer[] segments, long mask, long hash) {
+        long slot = DuplicateDetector.mix(hash) & mask;
+        while (true) {
+            ByteBuffer seg = segments[(int) (slot >>> SEGMENT_SHIFT)];
+            int off = (int) (slot & SEGMENT_MASK) * SLOT_BYTES;
+            if (seg.getInt(off + 8) == 0 || seg.getLong(off) == hash) return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Rehash into a table twice the size, written beside the old one and moved over it. Called
+    // holding only the writer lock: lookups keep reading the old table, which nothing writes meanwhile.
+    private void grow() throws IOException {
+        long bigger = capacity * 2;
+        Path tmp = tableFile.resolveSibling(tableFile.getFileName() + ".grow");
+        FileChannel newChannel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer[] newSegments = map(newChannel, bigger);
+        for (long slot = 0; slot < capacity; slot++) {
+            ByteBuffer seg = segments[(int) (slot >>> SEGMENT_SHIFT)];
+            int off = (int) (slot & SEGMENT_MASK) * SLOT_BYTES;
+            if (seg.getInt(off + 8) == 0) continue;
+            long to = find(newSegments, bigger - 1, seg.getLong(off));
+            ByteBuffer target = newSegments[(int) (to >>> SEGMENT_SHIFT)];
+            int at = (int) (to & SEGMENT_MASK) * SLOT_BYTES;
+            for (int b = 0; b < SLOT_BYTES; b += 4) target.putInt(at + b, seg.getInt(off + b));
+        }
+        MappedByteBuffer newHeader = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        writeHeader(newHeader, bigger, size);
+        for (MappedByteBuffer seg : newSegments) seg.force();
+        newHeader.force();
+        Files.move(tmp, tableFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lock.writeLock().lock();
+        try {
+            // the old mappings stay valid until collected; they no longer name a file
+            channel.close();
+            channel = newChannel;
+            segments = newSegments;
+            header = newHeader;
+            capacity = bigger;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean openTable() throws IOException {
+        if (!Files.isRegularFile(tableFile)) return false;
+        FileChannel ch = FileChannel.open(tableFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer head = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        long slots = head.getLong(4);
+        if (head.getInt(0) != TABLE_MAGIC || Long.bitCount(slots) != 1
+                || ch.size() != HEADER_BYTES + slots * SLOT_BYTES) {
+            ch.close();
+            return false;
+        }
+        channel = ch;
+        header = head;
+        capacity = slots;
+        size = head.getLong(12);
+        segments = map(ch, slots);
+        return true;
+    }
+
+    private void createTable(Path file, long slots) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments = map(channel, slots); // extends the (sparse, zero-filled) file to its full size
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        capacity = slots;
+        size = 0;
+        writeHeader(header, slots, 0);
+    }
+
+    private static MappedByteBuffer[] map(FileChannel ch, long slots) throws IOException {
+        int count = (int) ((slots + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+        for (int s = 0; s < count; s++) {
+            long first = (long) s << SEGMENT_SHIFT;
+            long length = Math.min(SEGMENT_MASK + 1, slots - first) * SLOT_BYTES;
+            mapped[s] = ch.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + first * SLOT_BYTES, length);
+        }
+        return mapped;
+    }
+
+    private static void writeHeader(MappedByteBuffer head, long slots, long size) {
+        head.putInt(0, TABLE_MAGIC);
+        head.putLong(4, slots);
+        head.putLong(12, size);
+    }
+
+    // Registry records: 'R' url, or 'F' repo id and path. A torn last record is cut off.
+    private boolean loadRegistry() throws IOException {
+        if (!Files.isRegularFile(registryFile)) return false;
+        byte[] bytes = Files.readAllBytes(registryFile);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        long good = 0;
+        try {
+            if (in.readInt() != REGISTRY_MAGIC) return false;
+            good = bytes.length - in.available();
+            while (in.available() > 0) {
+                byte type = in.readByte();
+                if (type == REPO_RECORD) {
+                    String url = in.readUTF();
+                    repoIds.put(url, repos.size());
+                    repos.add(url);
+                } else if (type == FILE_RECORD) {
+                    int repo = in.readInt();
+                    String path = in.readUTF();
+                    if (repo < 0 || repo >= repos.size()) return false;
+                    putFile(repo, path);
+                } else {
+                    return false;
+                }
+                good = bytes.length - in.available();
+            }
+        } catch (EOFException e) {
+            if (good == 0) return false;
+            try (FileChannel ch = FileChannel.open(registryFile, StandardOpenOption.WRITE)) {
+                ch.truncate(good);
+            }
+        }
+        return true;
+    }
+
+    private int repoId(String repo) throws IOException {
+        Integer id = repoIds.get(repo);
+        if (id != null) return id;
+        registry.writeByte(REPO_RECORD);
+        registry.writeUTF(repo);
+        repoIds.put(repo, repos.size());
+        repos.add(repo);
+        return repos.size() - 1;
+    }
+
+    // Written through before any slot names the file, so a crash cannot leave slots for an unknown id
+    private int fileId(int repo, String path) throws IOException {
+        Integer id = fileIds.get(repo + "/" + path);
+        if (id != null) return id;
+        registry.writeByte(FILE_RECORD);
+        registry.writeInt(repo);
+        registry.writeUTF(path);
+        registry.flush();
+        return putFile(repo, path);
+    }
+
+    private int putFile(int repo, String path) {
+        int id = filePaths.size();
+        if (id == fileRepo.length) fileRepo = Arrays.copyOf(fileRepo, id * 2);
+        fileRepo[id] = repo;
+        filePaths.add(path);
+        fileIds.put(repo + "/" + path, id);
+        return id;
+    }
+}
@@ -0,0 +1,71 @@
+package com.stride.stride.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Winnowed fingerprints of one file, kept in primitive arrays: the 64-bit hash of each
+ * selected token k-gram plus the first and last source line the k-gram covers.
+ */
+public final class Fingerprints {
+
+    public static final Fingerprints EMPTY = new Fingerprints(new long[0], new int[0], new int[0], 0);
+
+    private final long[] hashes;
+    private final int[] startLines;
+    private final int[] endLines;
+    private final int size;
+
+    Fingerprints(long[] hashes, int[] startLines, int[] endLines, int size) {
+        this.hashes = hashes;
+        this.startLines = startLines;
+        this.endLines = endLines;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long hash(int i) {
+        return hashes[i];
+    }
+
+    public int startLine(int i) {
+        return startLines[i];
+    }
+
+    public int endLine(int i) {
+        return endLines[i];
+    }
+
+    /** Growable builder; build() copies the arrays at their size, so the builder can be cleared and reused. */
+    static final class Builder {
+        private long[] hashes = new long[16];
+        private int[] startLines = new int[16];
+        private int[] endLines = new int[16];
+        private int size;
+
+        void add(long hash, int startLine, int endLine) {
+            if (size == hashes.length) {
+                int cap = size * 2;
+                hashes = Arrays.copyOf(hashes, cap);
+                startLines = Arrays.copyOf(startLines, cap);
+                endLines = Arrays.copyOf(endLines, cap);
+            }
+            hashes[size] = hash;
+            startLines[size] = startLine;
+            endLines[size] = endLine;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        Fingerprints build() {
+            if (size == 0) return EMPTY;
+            return new Fingerprints(Arrays.copyOf(hashes, size), Arrays.copyOf(startLines, size),
+                    Arrays.copyOf(endLines, size), size);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.stride.stride.analysis;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Splits a reader into lines with readLine() semantics (\n, \r or \r\n) inside a char buffer of
+ * its own; no String is created per line. The buffer grows for a line longer than it and is
+ * reused for the next reader, so an instance travels with the other pooled scan state.
+ */
+final class LineSplitter {
+
+    private static final int INITIAL_CHARS = 8192;
+    // A buffer grown past this for one long line is not kept for the next file
+    private static final int MAX_KEPT_CHARS = 1 << 20;
+
+    /** Receives every line, without its terminator. */
+    interface LineSink {
+        void line(char[] buf, int start, int end);
+    }
+
+    private char[] buf = new char[INITIAL_CHARS];
+
+    void split(Reader reader, LineSink sink) throws IOException {
+        int len = 0;
+        boolean skipLF = false;
+        int n;
+        while ((n = reader.read(buf, len, buf.length - len)) >= 0) {
+            int lineStart = 0;
+            if (skipLF && n > 0) {
+                // second half of a \r\n split across reads
+                if (buf[0] == '\n') lineStart = 1;
+                skipLF = false;
+            }
+            len += n;
+            for (int i = lineStart; i < len; i++) {
+                char c = buf[i];
+                if (c != '\n' && c != '\r') continue;
+                sink.line(buf, lineStart, i);
+                if (c == '\r') {
+                    if (i + 1 == len) skipLF = true;
+                    else if (buf[i + 1] == '\n') i++;
+                }
+                lineStart = i + 1;
+            }
+            if (lineStart == 0 && len >= buf.length - 1) {
+                // line longer than the buffer (a decoder may need two chars of room to progress)
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            } else {
+                len -= lineStart;
+                System.arraycopy(buf, lineStart, buf, 0, len);
+            }
+        }
+        if (len > 0) sink.line(buf, 0, len);
+    }
+
+    /** Drops a buffer grown for one very long line. */
+    void trim() {
+        if (buf.length > MAX_KEPT_CHARS) buf = new char[INITIAL_CHARS];
+    }
+}
@@ -0,0 +1,144 @@
+package com.stride.stride.analysis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streaming quantiles of non-negative values with 1% relative error, plus exact count, min,
+ * max and mean.
+ *
+ * Values are counted in logarithmic buckets: bucket i holds (γ^(i-1), γ^i] with
+ * γ = 1.01 / 0.99, and a quantile is answered with the midpoint of its bucket, which is within
+ * 1% of every value in it. Memory depends on the range of values (about 460 buckets from 1 to
+ * 10 000), not on how many are added. Values below {@link #MIN_POSITIVE}, zero included, are
+ * counted apart and read back as 0.
+ *
+ * Sketches of the same kind merge by adding bucket counts, so per-extension sketches sum to the
+ * repository one without a second pass.
+ */
+public final class QuantileSketch {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+    static final double MIN_POSITIVE = 1e-9;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    // counts[i] is bucket offset + i
+    private int[] counts = new int[0];
+    private int offset;
+    private long zeros;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+
+    public void add(double value) {
+        count++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+        if (value < MIN_POSITIVE) {
+            zeros++;
+            return;
+        }
+        int bucket = (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+        ensure(bucket, bucket);
+        counts[bucket - offset]++;
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) return;
+        count += other.count;
+        sum += other.sum;
+        zeros += other.zeros;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        if (other.counts.length == 0) return;
+        ensure(other.offset, other.offset + other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) counts[other.offset + i - offset] += other.counts[i];
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /** NaN when empty, as are {@link #getMax()} and {@link #getMean()}. */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * The value of rank ⌊q·(count-1)⌋ in sorted order, within 1%; exact for 0, the minimum and
+     * the maximum. NaN when empty.
+     *
+     * @param q between 0 and 1
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("Quantile out of [0, 1]: " + q);
+        if (count == 0) return Double.NaN;
+        long rank = (long) (q * (count - 1));
+        if (rank == 0) return min;
+        if (rank == count - 1) return max;
+        if (rank < zeros) return 0;
+        long seen = zeros;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                double mid = 2 * Math.pow(GAMMA, offset + i) / (GAMMA + 1);
+                return Math.max(min, Math.min(max, mid));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * count, min, max, mean, p50, p90 and p99, the doubles rounded to two decimals; only
+     * {@code count} for an empty sketch.
+     */
+    public Map<String, Object> summary() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("count", count);
+        if (count == 0) return out;
+        out.put("min", round(getMin()));
+        out.put("max", round(getMax()));
+        out.put("mean", round(getMean()));
+        out.put("p50", round(quantile(0.5)));
+        out.put("p90", round(quantile(0.9)));
+        out.put("p99", round(quantile(0.99)));
+        return out;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    // Grow the buckets to cover [from, to]
+    private void ensure(int from, int to) {
+        if (counts.length == 0) {
+            offset = from;
+            counts = new int[to - from + 1];
+            return;
+        }
+        int end = offset + counts.length - 1;
+        if (from >= offset && to <= end) return;
+        int newOffset = Math.min(from, offset);
+        int newEnd = Math.max(to, end);
+        // grow by at least half again, so a slowly widening range costs amortized O(1)
+        int slack = counts.length / 2;
+        if (newOffset < offset) newOffset = Math.min(newOffset, offset - slack);
+        if (newEnd > end) newEnd = Math.max(newEnd, end + slack);
+        int[] grown = new int[newEnd - newOffset + 1];
+        System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+        counts = grown;
+        offset = newOffset;
+    }
+}
@@ -0,0 +1,818 @@
+package com.stride.stride.analysis;
+
+import com.stride.stride.model.DuplicateBlock;
+import com.stride.stride.repo.GitChurnCalculator;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Repo-wide analysis result in columnar form.
+ *
+ * Per-file values are primitive arrays indexed by a file id (the position in walk order), and
+ * every path and extension string is held once. Per-extension totals use a second, small
+ * table. {@link #toMap()} gives the historical Map form with the same keys; its per-file maps
+ * are read-only views over the columns, so values are boxed only while they are read (for
+ * example during JSON serialization), not stored boxed.
+ *
+ * Rankings and distributions are aggregated while files are added, in the same pass: the
+ * largest and most coupled files through bounded heaps ({@link TopK}), and lines, complexity and
+ * Halstead volume per extension through {@link QuantileSketch}es, whose memory does not grow
+ * with the number of files.
+ */
+public final class RepoMetrics {
+
+    private static final int TOP_LARGEST = 5;
+    private static final int TOP_COUPLED = 10;
+
+    /** Per-file values summarized as distributions; the key is the map form's. */
+    public enum Measure {
+        LINES("lines"),
+        COMPLEXITY("complexity"),
+        HALSTEAD_VOLUME("halsteadVolume");
+
+        private final String key;
+
+        Measure(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private static final Measure[] MEASURES = Measure.values();
+
+    private final String error;
+
+    // File table
+    private final int fileCount;
+    private final String[] paths;
+    private final int[] typeOf;
+    private final int[] lines;
+    private final int[] commentLines;
+    private final int[] complexity;
+    private final int[] functions;
+    private final int[] classes;
+    private final int[] maxNesting;
+    private final int[] cognitiveComplexity;
+    private final int[] todoCount;
+    private final int[] importCount;
+    private final int[] operators;
+    private final int[] operands;
+    // Winnowed fingerprints, for the cross-repository index; not part of the map form or the store
+    private final Fingerprints[] fingerprints;
+
+    // Secret hits, with the id of the file they were found in
+    private final int[] secretFile;
+    private final List<FileMetrics.SecretHit> secretHits;
+
+    // Extension table
+    private final int typeCount;
+    private final String[] types;
+    private final int[] typeFiles;
+    private final int[] typeLines;
+    private final int[] typeCommentLines;
+    private final int[] typeFunctions;
+    private final int[] typeClasses;
+    // [type][measure], and the same over all files
+    private final QuantileSketch[][] typeDistributions;
+    private final QuantileSketch[] distributions;
+
+    private final int totalLines;
+    private final int cyclomaticComplexity;
+    private final int maxDepth;
+    private final int largeFileThreshold;
+    private final double avgHalsteadVolume;
+    private final double maintainabilityIndex;
+    private final double overallCommentDensity;
+    private final int[] largestFiles;
+    private final List<String> top5LargestFiles;
+    private final List<String> optimizationFlags;
+    private final List<String> topCoupledFiles;
+    private final List<DuplicateBlock> duplicateBlocks;
+    private final GitChurnCalculator.Churn churn;
+
+    // Files counted but not analyzed, and paths the walk left out (see FileClassifier)
+    private final int skippedBinary;
+    private final int skippedGenerated;
+    private final int excludedPaths;
+
+    // The stride-analyzer.properties in effect (optimizer rule overrides); not part of the map form
+    private final Map<String, String> settings;
+
+    // Extra top-level keys for the map form (head commit, incremental counters, ...)
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+    // path -> file id, built on first lookup by path
+    private volatile Map<String, Integer> fileIndex;
+
+    private RepoMetrics(Builder b) {
+        this.error = null;
+        this.fileCount = b.size;
+        this.paths = Arrays.copyOf(b.paths, b.size);
+        this.typeOf = Arrays.copyOf(b.typeOf, b.size);
+        this.lines = Arrays.copyOf(b.lines, b.size);
+        this.commentLines = Arrays.copyOf(b.commentLines, b.size);
+        this.complexity = Arrays.copyOf(b.complexity, b.size);
+        this.functions = Arrays.copyOf(b.functions, b.size);
+        this.classes = Arrays.copyOf(b.classes, b.size);
+        this.maxNesting = Arrays.copyOf(b.maxNesting, b.size);
+        this.cognitiveComplexity = Arrays.copyOf(b.cognitiveComplexity, b.size);
+        this.todoCount = Arrays.copyOf(b.todoCount, b.size);
+        this.importCount = Arrays.copyOf(b.importCount, b.size);
+        this.operators = Arrays.copyOf(b.operators, b.size);
+        this.operands = Arrays.copyOf(b.operands, b.size);
+        this.fingerprints = Arrays.copyOf(b.fingerprints, b.size);
+        this.secretFile = b.secretFile.stream().mapToInt(Integer::intValue).toArray();
+        this.secretHits = Collections.unmodifiableList(b.secretHits);
+
+        this.typeCount = b.typeCount;
+        this.types = Arrays.copyOf(b.types, b.typeCount);
+        this.typeFiles = Arrays.copyOf(b.typeFiles, b.typeCount);
+        this.typeLines = Arrays.copyOf(b.typeLines, b.typeCount);
+        this.typeCommentLines = Arrays.copyOf(b.typeCommentLines, b.typeCount);
+        this.typeFunctions = Arrays.copyOf(b.typeFunctions, b.typeCount);
+        this.typeClasses = Arrays.copyOf(b.typeClasses, b.typeCount);
+        this.typeDistributions = new QuantileSketch[typeCount][];
+        this.distributions = sketches();
+        for (int t = 0; t < typeCount; t++) {
+            typeDistributions[t] = sketches();
+            for (Measure m : MEASURES) {
+                typeDistributions[t][m.ordinal()].merge(b.typeDistributions[t][m.ordinal()]);
+                distributions[m.ordinal()].merge(b.typeDistributions[t][m.ordinal()]);
+            }
+        }
+
+        this.totalLines = b.totalLines;
+        this.cyclomaticComplexity = b.totalComplexity;
+        this.maxDepth = b.maxDepth;
+        this.largeFileThreshold = b.largeFileThreshold;
+        this.duplicateBlocks = b.duplicateBlocks;
+        this.churn = b.churn;
+        this.skippedBinary = b.skippedBinary;
+        this.skippedGenerated = b.skippedGenerated;
+        this.excludedPaths = b.excludedPaths;
+        this.settings = b.settings;
+
+        double halsteadSum = 0;
+        for (int i = 0; i < fileCount; i++) halsteadSum += getHalsteadVolume(i);
+        this.avgHalsteadVolume = fileCount == 0 ? 0.0 : halsteadSum / fileCount;
+        this.maintainabilityIndex = computeMaintainabilityIndex(totalLines, cyclomaticComplexity, avgHalsteadVolume);
+
+        long typedLines = 0;
+        long typedComments = 0;
+        for (int t = 0; t < typeCount; t++) {
+            typedLines += typeLines[t];
+            typedComments += typeCommentLines[t];
+        }
+        this.overallCommentDensity = typedLines == 0 ? 0.0 : (double) typedComments / typedLines;
+
+        List<String> largest = new ArrayList<>();
+        List<String> flags = new ArrayList<>();
+        this.largestFiles = b.largest.ids();
+        for (int id : largestFiles) {
+            largest.add(paths[id] + " (" + lines[id] + " lines)");
+            if (lines[id] > largeFileThreshold) {
+                flags.add("File " + paths[id] + " exceeds " + largeFileThreshold + " lines");
+            }
+        }
+        this.top5LargestFiles = Collections.unmodifiableList(largest);
+        this.optimizationFlags = Collections.unmodifiableList(flags);
+
+        List<String> coupled = new ArrayList<>();
+        for (int id : b.coupled.ids()) coupled.add(paths[id] + " (" + importCount[id] + ")");
+        this.topCoupledFiles = Collections.unmodifiableList(coupled);
+    }
+
+    private RepoMetrics(String error) {
+        this.error = error;
+        this.fileCount = 0;
+        this.paths = new String[0];
+        this.typeOf = this.lines = this.commentLines = this.complexity = this.functions = this.classes =
+                this.maxNesting = this.cognitiveComplexity = this.todoCount = this.importCount =
+                this.operators = this.operands = this.secretFile = new int[0];
+        this.fingerprints = new Fingerprints[0];
+        this.secretHits = List.of();
+        this.typeCount = 0;
+        this.types = new String[0];
+        this.typeFiles = this.typeLines = this.typeCommentLines = this.typeFunctions = this.typeClasses = new int[0];
+        this.typeDistributions = new QuantileSketch[0][];
+        this.distributions = sketches();
+        this.totalLines = this.cyclomaticComplexity = this.maxDepth = this.largeFileThreshold = 0;
+        this.avgHalsteadVolume = this.maintainabilityIndex = this.overallCommentDensity = 0.0;
+        this.largestFiles = new int[0];
+        this.top5LargestFiles = this.optimizationFlags = this.topCoupledFiles = List.of();
+        this.duplicateBlocks = List.of();
+        this.churn = GitChurnCalculator.Churn.EMPTY;
+        this.skippedBinary = this.skippedGenerated = this.excludedPaths = 0;
+        this.settings = Map.of();
+    }
+
+    private static QuantileSketch[] sketches() {
+        QuantileSketch[] sketches = new QuantileSketch[MEASURES.length];
+        for (int m = 0; m < sketches.length; m++) sketches[m] = new QuantileSketch();
+        return sketches;
+    }
+
+    /** A failed analysis; the map form is just {@code {"error": message}}. */
+    public static RepoMetrics error(String message) {
+        return new RepoMetrics(message);
+    }
+
+    public static Builder builder(int expectedFiles) {
+        return new Builder(expectedFiles);
+    }
+
+    /** Null unless the analysis failed. */
+    public String getError() {
+        return error;
+    }
+
+    // File table
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public String getPath(int file) {
+        return paths[file];
+    }
+
+    public String getExtension(int file) {
+        return types[typeOf[file]];
+    }
+
+    public int getLines(int file) {
+        return lines[file];
+    }
+
+    public int getCommentLines(int file) {
+        return commentLines[file];
+    }
+
+    public double getCommentDensity(int file) {
+        return FileMetrics.commentDensity(commentLines[file], lines[file]);
+    }
+
+    public int getComplexity(int file) {
+        return complexity[file];
+    }
+
+    public int getFunctions(int file) {
+        return functions[file];
+    }
+
+    public int getClasses(int file) {
+        return classes[file];
+    }
+
+    public int getMaxNesting(int file) {
+        return maxNesting[file];
+    }
+
+    public int getCognitiveComplexity(int file) {
+        return cognitiveComplexity[file];
+    }
+
+    public int getTodoCount(int file) {
+        return todoCount[file];
+    }
+
+    public int getImportCount(int file) {
+        return importCount[file];
+    }
+
+    public int getOperators(int file) {
+        return operators[file];
+    }
+
+    public int getOperands(int file) {
+        return operands[file];
+    }
+
+    /** Empty for results read back from the store, and once released. */
+    public Fingerprints getFingerprints(int file) {
+        return fingerprints[file];
+    }
+
+    /** Drops the fingerprints once they are indexed; nothing else reads them after the walk. */
+    public void releaseFingerprints() {
+        Arrays.fill(fingerprints, Fingerprints.EMPTY);
+    }
+
+    public double getHalsteadVolume(int file) {
+        return FileMetrics.halsteadVolume(operators[file], operands[file]);
+    }
+
+    public int getSecretCount() {
+        return secretHits.size();
+    }
+
+    /** File id of the i-th secret hit. */
+    public int getSecretFile(int i) {
+        return secretFile[i];
+    }
+
+    public FileMetrics.SecretHit getSecretHit(int i) {
+        return secretHits.get(i);
+    }
+
+    /**
+     * @return the file id for a path as reported by this result, or -1
+     */
+    public int fileId(String path) {
+        Map<String, Integer> index = fileIndex;
+        if (index == null) {
+            index = new HashMap<>(fileCount * 4 / 3 + 1);
+            for (int i = 0; i < fileCount; i++) index.put(paths[i], i);
+            fileIndex = index;
+        }
+        Integer id = index.get(path);
+        return id != null ? id : -1;
+    }
+
+    // Extension table (in order of first appearance)
+
+    public int getTypeCount() {
+        return typeCount;
+    }
+
+    public String getType(int type) {
+        return types[type];
+    }
+
+    public int getTypeFiles(int type) {
+        return typeFiles[type];
+    }
+
+    public int getTypeLines(int type) {
+        return typeLines[type];
+    }
+
+    public int getTypeCommentLines(int type) {
+        return typeCommentLines[type];
+    }
+
+    public int getTypeFunctions(int type) {
+        return typeFunctions[type];
+    }
+
+    public int getTypeClasses(int type) {
+        return typeClasses[type];
+    }
+
+    /** A quantile of one measure over the files of an extension; see {@link QuantileSketch#quantile}. */
+    public double getTypeQuantile(int type, Measure measure, double q) {
+        return typeDistributions[type][measure.ordinal()].quantile(q);
+    }
+
+    // Aggregates
+
+    public int getTotalFiles() {
+        return fileCount;
+    }
+
+    public int getTotalLines() {
+        return totalLines;
+    }
+
+    public int getCyclomaticComplexity() {
+        return cyclomaticComplexity;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getLargeFileThreshold() {
+        return largeFileThreshold;
+    }
+
+    public double getAvgHalsteadVolume() {
+        return avgHalsteadVolume;
+    }
+
+    public double getMaintainabilityIndex() {
+        return maintainabilityIndex;
+    }
+
+    public double getOverallCommentDensity() {
+        return overallCommentDensity;
+    }
+
+    /** A quantile of one measure over all files; see {@link QuantileSketch#quantile}. */
+    public double getQuantile(Measure measure, double q) {
+        return distributions[measure.ordinal()].quantile(q);
+    }
+
+    /** Ids of the files in {@link #getTop5LargestFiles()}, largest first. */
+    public int[] getLargestFiles() {
+        return largestFiles.clone();
+    }
+
+    public List<String> getTop5LargestFiles() {
+        return top5LargestFiles;
+    }
+
+    public List<String> getOptimizationFlags() {
+        return optimizationFlags;
+    }
+
+    public List<String> getTopCoupledFiles() {
+        return topCoupledFiles;
+    }
+
+    public List<String> getSecretsFound() {
+        List<String> found = new ArrayList<>(secretHits.size());
+        for (int i = 0; i < secretHits.size(); i++) {
+            FileMetrics.SecretHit hit = secretHits.get(i);
+            found.add("Potential secret in " + paths[secretFile[i]] + ":" + hit.getLine() + " -> " + hit.getText());
+        }
+        return found;
+    }
+
+    /** Hits per secret rule, in the order rules were first hit. */
+    public Map<String, Integer> getSecretRuleCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (FileMetrics.SecretHit hit : secretHits) counts.merge(hit.getRule(), 1, Integer::sum);
+        return counts;
+    }
+
+    public List<DuplicateBlock> getDuplicateBlocks() {
+        return duplicateBlocks;
+    }
+
+    public GitChurnCalculator.Churn getChurn() {
+        return churn;
+    }
+
+    /** Binary files counted but not read as text. */
+    public int getSkippedBinary() {
+        return skippedBinary;
+    }
+
+    /** Lock files, generated sources and minified bundles counted but not analyzed. */
+    public int getSkippedGenerated() {
+        return skippedGenerated;
+    }
+
+    /** Files and directories left out by the exclude list or .gitignore; a directory counts once. */
+    public int getExcludedPaths() {
+        return excludedPaths;
+    }
+
+    /** The repository's stride-analyzer.properties as it was when analyzed; empty for stored runs. */
+    public Map<String, String> getSettings() {
+        return settings;
+    }
+
+    public Map<String, Object> getAttributes() {
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    /** Add an extra top-level key to the map form. */
+    public void setAttribute(String key, Object value) {
+        attributes.put(key, value);
+    }
+
+    /**
+     * The historical analyzer output: a mutable top-level map with the same keys and value
+     * types as before. Per-file maps are read-only views keyed by path.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> metrics = new HashMap<>();
+        if (error != null) {
+            metrics.put("error", error);
+            metrics.putAll(attributes);
+            return metrics;
+        }
+        Map<String, Integer> fileTypes = new HashMap<>();
+        Map<String, Integer> linesPerType = new HashMap<>();
+        Map<String, Integer> commentLinesPerType = new HashMap<>();
+        Map<String, Double> avgLinesPerType = new HashMap<>();
+        Map<String, Integer> functionsPerType = new HashMap<>();
+        Map<String, Integer> classesPerType = new HashMap<>();
+        Map<String, Map<String, Object>> distributionPerType = new HashMap<>();
+        for (int t = 0; t < typeCount; t++) {
+            fileTypes.put(types[t], typeFiles[t]);
+            linesPerType.put(types[t], typeLines[t]);
+            commentLinesPerType.put(types[t], typeCommentLines[t]);
+            avgLinesPerType.put(types[t], typeFiles[t] > 0 ? (double) typeLines[t] / typeFiles[t] : 0);
+            functionsPerType.put(types[t], typeFunctions[t]);
+            classesPerType.put(types[t], typeClasses[t]);
+            distributionPerType.put(types[t], distribution(typeDistributions[t]));
+        }
+
+        metrics.put("totalFiles", fileCount);
+        metrics.put("totalLines", totalLines);
+        metrics.put("fileTypes", fileTypes);
+        metrics.put("linesPerType", linesPerType);
+        metrics.put("commentLinesPerType", commentLinesPerType);
+        metrics.put("avgLinesPerType", avgLinesPerType);
+        metrics.put("cyclomaticComplexity", cyclomaticComplexity);
+        metrics.put("maxDepth", maxDepth);
+        metrics.put("top5LargestFiles", top5LargestFiles);
+        metrics.put("functionsPerType", functionsPerType);
+        metrics.put("classesPerType", classesPerType);
+        metrics.put("nestingDepthPerFile", new FileColumn<>(i -> maxNesting[i]));
+        metrics.put("halsteadVolumePerFile", new FileColumn<>(this::getHalsteadVolume));
+        metrics.put("optimizationFlags", optimizationFlags);
+
+        metrics.put("maintainabilityIndex", maintainabilityIndex);
+        metrics.put("avgHalsteadVolume", avgHalsteadVolume);
+        metrics.put("commentDensityPerFile", new FileColumn<>(this::getCommentDensity));
+        metrics.put("overallCommentDensity", overallCommentDensity);
+        metrics.put("todoCountPerFile", new FileColumn<>(i -> todoCount[i]));
+        metrics.put("duplicateBlocks", duplicateBlocks);
+        metrics.put("secretsFound", getSecretsFound());
+        metrics.put("secretRuleCounts", getSecretRuleCounts());
+        metrics.put("cognitiveComplexityPerFile", new FileColumn<>(i -> cognitiveComplexity[i]));
+        metrics.put("fileCoupling", new FileColumn<>(i -> importCount[i]));
+        metrics.put("topCoupledFiles", topCoupledFiles);
+        metrics.put("gitChurnPerFile", churn.getCommits());
+        metrics.put("gitLinesAddedPerFile", churn.getLinesAdded());
+        metrics.put("gitLinesRemovedPerFile", churn.getLinesRemoved());
+        metrics.put("gitCommitsScanned", churn.getCommitsScanned());
+        Map<String, Integer> skipped = new LinkedHashMap<>();
+        skipped.put(FileMetrics.SKIPPED_BINARY, skippedBinary);
+        skipped.put(FileMetrics.SKIPPED_GENERATED, skippedGenerated);
+        metrics.put("skippedFiles", skipped);
+        metrics.put("excludedPaths", excludedPaths);
+        metrics.put("distribution", distribution(distributions));
+        metrics.put("distributionPerType", distributionPerType);
+        metrics.putAll(attributes);
+        return metrics;
+    }
+
+    // measure key -> count, min, max, mean, p50, p90, p99
+    private static Map<String, Object> distribution(QuantileSketch[] sketches) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (Measure m : MEASURES) out.put(m.key, sketches[m.ordinal()].summary());
+        return out;
+    }
+
+    /**
+     * Compute Maintainability Index using common formula.
+     * MI = 171 - 5.2 * ln(H) - 0.23 * C - 16.2 * ln(LOC)
+     * Where H is Halstead Volume, C is cyclomatic complexity, LOC lines of code
+     */
+    private static double computeMaintainabilityIndex(int loc, int cyclo, double halsteadVolume) {
+        double H = Math.max(halsteadVolume, 1.0);
+        double LOC = Math.max(loc, 1.0);
+        double mi = 171.0 - 5.2 * Math.log(H) - 0.23 * cyclo - 16.2 * Math.log(LOC);
+        // normalize roughly to 0..100
+        if (mi < 0) mi = 0;
+        if (mi > 100) mi = Math.min(mi, 100);
+        return Math.round(mi * 100.0) / 100.0;
+    }
+
+    /**
+     * Read-only path -> value view over one file column. Lookups by path go through the
+     * shared lazy index; iteration walks the arrays in file order.
+     */
+    private final class FileColumn<V> extends AbstractMap<String, V> {
+        private final IntFunction<V> value;
+
+        FileColumn(IntFunction<V> value) {
+            this.value = value;
+        }
+
+        @Override
+        public int size() {
+            return fileCount;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String s && fileId(s) >= 0;
+        }
+
+        @Override
+        public V get(Object key) {
+            int id = key instanceof String s ? fileId(s) : -1;
+            return id >= 0 ? value.apply(id) : null;
+        }
+
+        @Override
+        public Set<Entry<String, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return fileCount;
+                }
+
+                @Override
+                public Iterator<Entry<String, V>> iterator() {
+                    return new Iterator<>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < fileCount;
+                        }
+
+                        @Override
+                        public Entry<String, V> next() {
+                            if (next >= fileCount) throw new NoSuchElementException();
+                            int id = next++;
+                            return new SimpleImmutableEntry<>(paths[id], value.apply(id));
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * Appends files in walk order, keeping the rankings and distributions as it goes; the other
+     * aggregates are computed once in {@link #build()}.
+     */
+    public static final class Builder {
+        private String[] paths;
+        private int[] typeOf;
+        private int[] lines;
+        private int[] commentLines;
+        private int[] complexity;
+        private int[] functions;
+        private int[] classes;
+        private int[] maxNesting;
+        private int[] cognitiveComplexity;
+        private int[] todoCount;
+        private int[] importCount;
+        private int[] operators;
+        private int[] operands;
+        private Fingerprints[] fingerprints;
+        private int size;
+
+        private final Map<String, Integer> typeIndex = new HashMap<>();
+        private String[] types = new String[8];
+        private int[] typeFiles = new int[8];
+        private int[] typeLines = new int[8];
+        private int[] typeCommentLines = new int[8];
+        private int[] typeFunctions = new int[8];
+        private int[] typeClasses = new int[8];
+        private QuantileSketch[][] typeDistributions = new QuantileSketch[8][];
+        private int typeCount;
+
+        private final TopK largest = new TopK(TOP_LARGEST);
+        private final TopK coupled = new TopK(TOP_COUPLED);
+
+        private int totalLines;
+        private int totalComplexity;
+        private int maxDepth;
+        private int largeFileThreshold = 500;
+        private final List<Integer> secretFile = new ArrayList<>();
+        private final List<FileMetrics.SecretHit> secretHits = new ArrayList<>();
+        private List<DuplicateBlock> duplicateBlocks = List.of();
+        private GitChurnCalculator.Churn churn = GitChurnCalculator.Churn.EMPTY;
+        private int skippedBinary;
+        private int skippedGenerated;
+        private int excludedPaths;
+        private Map<String, String> settings = Map.of();
+
+        private Builder(int expectedFiles) {
+            int capacity = Math.max(expectedFiles, 16);
+            paths = new String[capacity];
+            typeOf = new int[capacity];
+            lines = new int[capacity];
+            commentLines = new int[capacity];
+            complexity = new int[capacity];
+            functions = new int[capacity];
+            classes = new int[capacity];
+            maxNesting = new int[capacity];
+            cognitiveComplexity = new int[capacity];
+            todoCount = new int[capacity];
+            importCount = new int[capacity];
+            operators = new int[capacity];
+            operands = new int[capacity];
+            fingerprints = new Fingerprints[capacity];
+        }
+
+        /** Appends an analyzed file; a skipped one is only counted under its reason. */
+        public Builder add(FileMetrics fm) {
+            if (fm.getSkipped() != null) {
+                if (FileMetrics.SKIPPED_BINARY.equals(fm.getSkipped())) skippedBinary++;
+                else skippedGenerated++;
+                return this;
+            }
+            if (size == paths.length) growFiles();
+            int t = typeId(fm.getExtension());
+            int id = size++;
+            paths[id] = fm.getPath();
+            typeOf[id] = t;
+            lines[id] = fm.getLines();
+            commentLines[id] = fm.getCommentLines();
+            complexity[id] = fm.getComplexity();
+            functions[id] = fm.getFunctions();
+            classes[id] = fm.getClasses();
+            maxNesting[id] = fm.getMaxNesting();
+            cognitiveComplexity[id] = fm.getCognitiveComplexity();
+            todoCount[id] = fm.getTodoCount();
+            importCount[id] = fm.getImportCount();
+            operators[id] = fm.getOperators();
+            operands[id] = fm.getOperands();
+            fingerprints[id] = fm.getFingerprints();
+
+            typeFiles[t]++;
+            typeLines[t] += fm.getLines();
+            typeCommentLines[t] += fm.getCommentLines();
+            typeFunctions[t] += fm.getFunctions();
+            typeClasses[t] += fm.getClasses();
+            QuantileSketch[] distribution = typeDistributions[t];
+            distribution[Measure.LINES.ordinal()].add(fm.getLines());
+            distribution[Measure.COMPLEXITY.ordinal()].add(fm.getComplexity());
+            distribution[Measure.HALSTEAD_VOLUME.ordinal()].add(FileMetrics.halsteadVolume(fm.getOperators(), fm.getOperands()));
+            largest.offer(id, fm.getLines());
+            coupled.offer(id, fm.getImportCount());
+
+            totalLines += fm.getLines();
+            totalComplexity += fm.getComplexity();
+            for (FileMetrics.SecretHit hit : fm.getSecrets()) {
+                secretFile.add(id);
+                secretHits.add(hit);
+            }
+            return this;
+        }
+
+        public Builder maxDepth(int maxDepth) {
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        public Builder largeFileThreshold(int largeFileThreshold) {
+            this.largeFileThreshold = largeFileThreshold;
+            return this;
+        }
+
+        public Builder duplicateBlocks(List<DuplicateBlock> duplicateBlocks) {
+            this.duplicateBlocks = duplicateBlocks;
+            return this;
+        }
+
+        public Builder churn(GitChurnCalculator.Churn churn) {
+            this.churn = churn;
+            return this;
+        }
+
+        public Builder skipped(int binary, int generated) {
+            this.skippedBinary += binary;
+            this.skippedGenerated += generated;
+            return this;
+        }
+
+        public Builder excludedPaths(int excludedPaths) {
+            this.excludedPaths = excludedPaths;
+            return this;
+        }
+
+        /** The repository's settings ({@link AnalyzerSettings#getProperties()}), copied so later changes are not seen. */
+        public Builder settings(Map<String, String> settings) {
+            this.settings = Collections.unmodifiableMap(new TreeMap<>(settings));
+            return this;
+        }
+
+        public RepoMetrics build() {
+            return new RepoMetrics(this);
+        }
+
+        // Every file of a type shares the first extension string seen
+        private int typeId(String extension) {
+            Integer t = typeIndex.get(extension);
+            if (t != null) return t;
+            if (typeCount == types.length) {
+                int n = typeCount * 2;
+                types = Arrays.copyOf(types, n);
+                typeFiles = Arrays.copyOf(typeFiles, n);
+                typeLines = Arrays.copyOf(typeLines, n);
+                typeCommentLines = Arrays.copyOf(typeCommentLines, n);
+                typeFunctions = Arrays.copyOf(typeFunctions, n);
+                typeClasses = Arrays.copyOf(typeClasses, n);
+                typeDistributions = Arrays.copyOf(typeDistributions, n);
+            }
+            types[typeCount] = extension;
+            typeDistributions[typeCount] = sketches();
+            typeIndex.put(extension, typeCount);
+            return typeCount++;
+        }
+
+        private void growFiles() {
+            int n = paths.length * 2;
+            paths = Arrays.copyOf(paths, n);
+            typeOf = Arrays.copyOf(typeOf, n);
+            lines = Arrays.copyOf(lines, n);
+            commentLines = Arrays.copyOf(commentLines, n);
+            complexity = Arrays.copyOf(complexity, n);
+            functions = Arrays.copyOf(functions, n);
+            classes = Arrays.copyOf(classes, n);
+            maxNesting = Arrays.copyOf(maxNesting, n);
+            cognitiveComplexity = Arrays.copyOf(cognitiveComplexity, n);
+            todoCount = Arrays.copyOf(todoCount, n);
+            importCount = Arrays.copyOf(importCount, n);
+            operators = Arrays.copyOf(operators, n);
+            operands = Arrays.copyOf(operands, n);
+            fingerprints = Arrays.copyOf(fingerprints, n);
+        }
+    }
+}
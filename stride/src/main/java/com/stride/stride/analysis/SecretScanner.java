@@ -0,0 +1,257 @@
+package com.stride.stride.analysis;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rule-based secret detection, one line at a time.
+ *
+ * Every rule names literal keywords that any of its matches contains (compared ignoring case)
+ * and a regex that confirms a match, optionally with a minimum Shannon entropy of the matched
+ * text. The keywords of all rules form one Aho-Corasick automaton, stored as a dense ASCII
+ * transition table, so a line costs one table step per char; a rule's regex runs only on lines
+ * where one of its keywords occurs. A line yields at most one hit, from the first rule in rule
+ * order that confirms.
+ *
+ * The rule set is the built-in one, optionally overlaid from a properties file ({@link #load}).
+ */
+public final class SecretScanner {
+
+    /** Rules are tracked as bits of a long while a line is scanned. */
+    public static final int MAX_RULES = 64;
+
+    private static final int ALPHABET = 128;
+    private static final int MAX_SNIPPET_CHARS = 200;
+
+    /** One detection rule. */
+    @Value
+    public static class Rule {
+        String id;
+        List<String> keywords;
+        Pattern pattern;
+        double minEntropy;
+    }
+
+    private final List<Rule> rules;
+    private final String signature;
+
+    // Automaton: next state (pre-multiplied by ALPHABET) per state and char, and per state the
+    // rules with a keyword ending there
+    private final int[] delta;
+    private final long[] output;
+
+    public SecretScanner(List<Rule> rules) {
+        if (rules.size() > MAX_RULES) throw new IllegalArgumentException("At most " + MAX_RULES + " secret rules");
+        this.rules = List.copyOf(rules);
+
+        List<int[]> next = new ArrayList<>();
+        List<Long> out = new ArrayList<>();
+        next.add(newRow());
+        out.add(0L);
+        for (int r = 0; r < this.rules.size(); r++) {
+            Rule rule = this.rules.get(r);
+            if (rule.keywords.isEmpty()) throw new IllegalArgumentException("Secret rule " + rule.id + " has no keywords");
+            for (String keyword : rule.keywords) {
+                int state = 0;
+                for (char c : keyword.toLowerCase(Locale.ROOT).toCharArray()) {
+                    if (c >= ALPHABET) {
+                        throw new IllegalArgumentException("Secret rule " + rule.id + ": keywords must be ASCII");
+                    }
+                    if (next.get(state)[c] < 0) {
+                        next.get(state)[c] = next.size();
+                        next.add(newRow());
+                        out.add(0L);
+                    }
+                    state = next.get(state)[c];
+                }
+                out.set(state, out.get(state) | (1L << r));
+            }
+        }
+
+        // Breadth-first: missing edges follow the failure link, outputs include the link's
+        int states = next.size();
+        int[] fail = new int[states];
+        this.delta = new int[states * ALPHABET];
+        this.output = new long[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int child = next.get(0)[c];
+            delta[c] = child < 0 ? 0 : child;
+            if (child > 0) queue.add(child);
+        }
+        output[0] = out.get(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            output[state] = out.get(state) | output[fail[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = next.get(state)[c];
+                if (child < 0) {
+                    delta[state * ALPHABET + c] = delta[fail[state] * ALPHABET + c];
+                } else {
+                    delta[state * ALPHABET + c] = child;
+                    fail[child] = delta[fail[state] * ALPHABET + c];
+                    queue.add(child);
+                }
+            }
+        }
+        for (int s = 0; s < states; s++) {
+            int row = s * ALPHABET;
+            for (char c = 'a'; c <= 'z'; c++) delta[row + Character.toUpperCase(c)] = delta[row + c];
+            for (int c = 0; c < ALPHABET; c++) delta[row + c] *= ALPHABET;
+        }
+
+        StringBuilder definition = new StringBuilder();
+        for (Rule rule : this.rules) {
+            definition.append(rule.id).append('\n').append(rule.keywords).append('\n').append(rule.pattern.pattern())
+                    .append('\n').append(rule.pattern.flags()).append('\n').append(rule.minEntropy).append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(definition.toString().getBytes(StandardCharsets.UTF_8));
+            this.signature = HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    /** The built-in rules. */
+    public static SecretScanner defaults() {
+        return new SecretScanner(builtInRules());
+    }
+
+    /**
+     * The built-in rules overlaid with a properties file of {@code <rule>.keywords} (comma
+     * separated), {@code <rule>.pattern}, {@code <rule>.min-entropy} and {@code <rule>.enabled}.
+     * A built-in rule keeps its place and takes the properties given for it; new rules go after
+     * the built-in ones, ordered by id. Backslashes in patterns are doubled, as in any properties file.
+     *
+     * @throws IllegalArgumentException for a new rule without keywords or pattern, or a bad pattern
+     */
+    public static SecretScanner load(Path file) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+        Map<String, Rule> rules = new LinkedHashMap<>();
+        for (Rule rule : builtInRules()) rules.put(rule.id, rule);
+        SortedSet<String> ids = new TreeSet<>();
+        for (String key : props.stringPropertyNames()) {
+            int dot = key.indexOf('.');
+            if (dot > 0) ids.add(key.substring(0, dot));
+        }
+        for (String id : ids) {
+            if (!Boolean.parseBoolean(props.getProperty(id + ".enabled", "true"))) {
+                rules.remove(id);
+                continue;
+            }
+            Rule base = rules.get(id);
+            String keywords = props.getProperty(id + ".keywords");
+            String pattern = props.getProperty(id + ".pattern");
+            String entropy = props.getProperty(id + ".min-entropy");
+            if (base == null && (keywords == null || pattern == null)) {
+                throw new IllegalArgumentException("Secret rule " + id + " needs keywords and a pattern");
+            }
+            rules.put(id, new Rule(id,
+                    keywords != null ? Arrays.stream(keywords.split(",")).map(String::trim).filter(k -> !k.isEmpty()).toList()
+                            : base.keywords,
+                    pattern != null ? Pattern.compile(pattern) : base.pattern,
+                    entropy != null ? Double.parseDouble(entropy) : base != null ? base.minEntropy : 0));
+        }
+        return new SecretScanner(new ArrayList<>(rules.values()));
+    }
+
+    // Specific token formats first; the generic checks only when none of them matched
+    private static List<Rule> builtInRules() {
+        return List.of(
+                new Rule("private-key", List.of("-----begin"),
+                        Pattern.compile("-----BEGIN (?:[A-Z0-9]+ )*PRIVATE KEY(?: BLOCK)?-----"), 0),
+                new Rule("aws-access-key", List.of("akia", "asia"),
+                        Pattern.compile("\\b(?:AKIA|ASIA)[0-9A-Z]{16}\\b"), 0),
+                new Rule("google-api-key", List.of("aiza"),
+                        Pattern.compile("AIza[0-9A-Za-z\\-_]{35}"), 0),
+                new Rule("slack-token", List.of("xoxa-", "xoxb-", "xoxp-", "xoxr-", "xoxs-"),
+                        Pattern.compile("xox[abprs]-[0-9A-Za-z\\-]{10,}"), 0),
+                new Rule("sendgrid-key", List.of("sg."),
+                        Pattern.compile("SG\\.[0-9A-Za-z\\-_]{16,}\\.[0-9A-Za-z\\-_]{16,}"), 0),
+                new Rule("password-assignment", List.of("apikey", "api_key", "secret", "token", "passwd", "password"),
+                        Pattern.compile("(?i)(apikey|api_key|secret|token|passwd|password)\\s*[=:\"']\\s*[^\\s\"']+"), 0),
+                // long random-looking values, only next to a word that suggests a credential
+                new Rule("high-entropy-value", List.of("key", "secret", "token", "auth", "credential", "passw", "pwd"),
+                        Pattern.compile("[A-Za-z0-9+/_\\-]{32,}={0,2}"), 4.0));
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /** SHA-256 of the rule definitions, in hex; part of every cache key a result with secrets is stored under. */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * Scan one line and add a hit to {@code out} when a rule confirms.
+     *
+     * @param line 1-based line number recorded with the hit
+     */
+    void scanLine(char[] buf, int start, int end, int line, List<FileMetrics.SecretHit> out) {
+        long candidates = 0;
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            char c = buf[i];
+            state = c < ALPHABET ? delta[state + c] : 0;
+            candidates |= output[state / ALPHABET];
+        }
+        if (candidates == 0) return;
+
+        CharBuffer text = CharBuffer.wrap(buf, start, end - start);
+        for (int r = 0; r < rules.size(); r++) {
+            if ((candidates & (1L << r)) == 0) continue;
+            Rule rule = rules.get(r);
+            Matcher m = rule.pattern.matcher(text);
+            while (m.find()) {
+                if (rule.minEntropy > 0 && entropy(buf, start + m.start(), start + m.end()) < rule.minEntropy) continue;
+                out.add(new FileMetrics.SecretHit(line, snippet(buf, start, end, start + m.start()), rule.id));
+                return;
+            }
+        }
+    }
+
+    // Shannon entropy in bits per char
+    static double entropy(char[] buf, int start, int end) {
+        int[] counts = new int[ALPHABET + 1];
+        for (int i = start; i < end; i++) counts[Math.min(buf[i], ALPHABET)]++;
+        double bits = 0;
+        int n = end - start;
+        for (int count : counts) {
+            if (count == 0) continue;
+            double p = (double) count / n;
+            bits -= p * Math.log(p);
+        }
+        return bits / Math.log(2);
+    }
+
+    // The trimmed line, or for a long (minified) one, a window from a little before the match
+    private static String snippet(char[] buf, int start, int end, int match) {
+        String line = new String(buf, start, end - start).trim();
+        if (line.length() <= MAX_SNIPPET_CHARS) return line;
+        int from = Math.max(start, match - 40);
+        return new String(buf, from, Math.min(MAX_SNIPPET_CHARS, end - from)).trim();
+    }
+}
@@ -0,0 +1,55 @@
+package com.stride.stride.analysis;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-file results of the previous snapshot in a walk over several commits, by blob id, so
+ * each snapshot only reads the blobs that changed since the one before. Unlike the shared
+ * {@link ContentCache} nothing is evicted, and only the last snapshot's blobs are kept: memory
+ * is that of one analysis however many commits are walked.
+ *
+ * Use one memo per walk, from one thread at a time, calling the analyzer for commits in order.
+ */
+public final class SnapshotMemo {
+
+    private Map<String, FileMetrics> previous = Map.of();
+    private Map<String, FileMetrics> current = new ConcurrentHashMap<>();
+    private final AtomicInteger reused = new AtomicInteger();
+    private final AtomicInteger analyzed = new AtomicInteger();
+
+    // Called by walk workers, possibly from several threads at once
+
+    FileMetrics lookup(String key) {
+        FileMetrics fm = previous.get(key);
+        if (fm != null) {
+            current.put(key, fm);
+            reused.incrementAndGet();
+        }
+        return fm;
+    }
+
+    void record(String key, FileMetrics fm) {
+        current.put(key, fm);
+        analyzed.incrementAndGet();
+    }
+
+    /** Starts a snapshot: lookups now see the one analyzed last, and the counters restart. */
+    void advance() {
+        previous = current;
+        current = new ConcurrentHashMap<>();
+        reused.set(0);
+        analyzed.set(0);
+    }
+
+    /** Files of the last snapshot taken from the one before it. */
+    public int getReused() {
+        return reused.get();
+    }
+
+    /** Files of the last snapshot read and analyzed. */
+    public int getAnalyzed() {
+        return analyzed.get();
+    }
+}
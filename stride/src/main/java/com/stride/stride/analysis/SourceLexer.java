@@ -0,0 +1,263 @@
+package com.stride.stride.analysis;
+
+/**
+ * Single-pass, character-level line scanner used by the Analyzer in place of per-line regexes.
+ * One instance is reused for every line of a file; the public flags describe the last scanned line.
+ *
+ * Each flag reproduces the regex it replaces, including Java's regex character classes:
+ * \w and \s are ASCII-only, while \b treats any Unicode letter/digit (or '_') as a word character.
+ */
+final class SourceLexer {
+
+    /** Receives every word token (a run of [A-Za-z0-9_]) in scan order. */
+    interface TokenSink {
+        void token(char[] buf, int start, int end);
+    }
+
+    private static final String[] BRANCH_KEYWORDS = {"if", "for", "while", "case", "catch", "switch"};
+    private static final String[] TYPE_KEYWORDS = {"class", "interface", "enum"};
+
+    // Results for the last scanned line
+    boolean comment;      // trimmed starts with //, /*, * or #
+    boolean todo;         // contains TODO or FIXME (ASCII case-insensitive)
+    boolean branch;       // if/for/while/case/catch/switch as a whole word
+    boolean booleanOp;    // contains &&, ||, ? or :
+    boolean function;     // type, name and parenthesised parameter list
+    boolean type;         // class/interface/enum followed by a name
+    boolean openBrace;
+    boolean closeBrace;
+    boolean importLine;   // import / #include / require( / from x import
+    int words;            // word tokens, the Halstead operands
+
+    /**
+     * Scan buf[start, end), which must not contain '\n' or '\r'.
+     */
+    void scanLine(char[] buf, int start, int end, TokenSink sink) {
+        // trim() semantics: strip chars <= ' ' on both ends
+        int from = start;
+        int to = end;
+        while (from < to && buf[from] <= ' ') from++;
+        while (to > from && buf[to - 1] <= ' ') to--;
+
+        comment = false;
+        todo = false;
+        branch = false;
+        booleanOp = false;
+        function = false;
+        type = false;
+        openBrace = false;
+        closeBrace = false;
+        importLine = false;
+        words = 0;
+
+        if (from < to) {
+            char first = buf[from];
+            comment = first == '*' || first == '#'
+                    || (first == '/' && from + 1 < to && (buf[from + 1] == '/' || buf[from + 1] == '*'));
+            importLine = isImport(buf, from, to);
+        }
+
+        boolean branchWord = false;
+        boolean lineSeparator = false;
+
+        // \b state: is the previous code point a word char, and does a mark here have a letter base
+        boolean prevBoundaryWord = false;
+        boolean nsmBase = false;
+
+        // \w token runs
+        int tokenStart = -1;
+
+        // function pattern: T+ \s+ \w+ \s* ( ... )  where T = [\w<>\[\]]
+        int prev = NONE;
+        boolean wsAfterT = false;
+        boolean qualifiedWord = false;
+        boolean qualifiedWordThenWs = false;
+        boolean openParen = false;
+
+        // type pattern: (class|interface|enum) \s+ \w
+        boolean wsAfterTypeKeyword = false;
+
+        int i = from;
+        while (i < to) {
+            char c = buf[i];
+            int cp = c;
+            int width = 1;
+            if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(buf[i + 1])) {
+                cp = Character.toCodePoint(c, buf[i + 1]);
+                width = 2;
+            }
+
+            // Branch keywords need a \b on both sides
+            if (!branchWord && !prevBoundaryWord && (c == 'i' || c == 'f' || c == 'w' || c == 'c' || c == 's')) {
+                for (String k : BRANCH_KEYWORDS) {
+                    int e = i + k.length();
+                    if (startsWith(buf, i, to, k) && (e == to || !isBoundaryWordAfter(buf, e, to))) {
+                        branchWord = true;
+                        break;
+                    }
+                }
+            }
+            if (cp == 0x85 || cp == 0x2028 || cp == 0x2029) lineSeparator = true;
+
+            // Mirrors java.util.regex \b: a non-spacing mark counts as a word char when it follows a
+            // BMP letter/digit; looking left, a supplementary mark never does
+            boolean word = cp < 0x80 ? isAsciiWord(c) : Character.isLetterOrDigit(cp);
+            boolean mark = cp >= 0x80 && Character.getType(cp) == Character.NON_SPACING_MARK;
+            prevBoundaryWord = word || (mark && width == 1 && nsmBase);
+            if (width == 2) nsmBase = false;
+            else if (!mark) nsmBase = word && cp != '_';
+
+            // ASCII classes
+            int cls = classify(c);
+            if (cls == WORD) {
+                if (tokenStart < 0) tokenStart = i;
+                if (prev != WORD) qualifiedWord = prev == SPACE && wsAfterT;
+                if (prev == SPACE && wsAfterTypeKeyword) type = true;
+            } else {
+                if (tokenStart >= 0) {
+                    words++;
+                    if (sink != null) sink.token(buf, tokenStart, i);
+                    tokenStart = -1;
+                }
+                if (cls == SPACE) {
+                    if (prev != SPACE) {
+                        wsAfterT = prev == WORD || prev == BRACKET;
+                        qualifiedWordThenWs = prev == WORD && qualifiedWord;
+                        wsAfterTypeKeyword = endsWithAny(buf, from, i, TYPE_KEYWORDS);
+                    }
+                } else {
+                    switch (c) {
+                        case '(':
+                            if ((prev == WORD && qualifiedWord) || (prev == SPACE && qualifiedWordThenWs)) openParen = true;
+                            break;
+                        case ')':
+                            if (openParen) function = true;
+                            break;
+                        case '{':
+                            openBrace = true;
+                            break;
+                        case '}':
+                            closeBrace = true;
+                            break;
+                        case '?':
+                        case ':':
+                            booleanOp = true;
+                            break;
+                        case '&':
+                        case '|':
+                            if (i + 1 < to && buf[i + 1] == c) booleanOp = true;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            prev = cls;
+
+            // TODO / FIXME markers
+            char lower = (char) (c | 0x20);
+            if ((lower == 't' && regionMatchesAsciiIgnoreCase(buf, i, to, "todo"))
+                    || (lower == 'f' && regionMatchesAsciiIgnoreCase(buf, i, to, "fixme"))) {
+                todo = true;
+            }
+
+            i += width;
+        }
+
+        if (tokenStart >= 0) {
+            words++;
+            if (sink != null) sink.token(buf, tokenStart, to);
+        }
+        // String.matches(".*...") cannot span a line separator
+        branch = branchWord && !lineSeparator;
+    }
+
+    private static final int NONE = 0;
+    private static final int WORD = 1;
+    private static final int SPACE = 2;
+    private static final int BRACKET = 3;
+
+    private static int classify(char c) {
+        if (isAsciiWord(c)) return WORD;
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\u000B':
+            case '\f':
+            case '\r':
+                return SPACE;
+            case '<':
+            case '>':
+            case '[':
+            case ']':
+                return BRACKET;
+            default:
+                return NONE;
+        }
+    }
+
+    private static boolean isAsciiWord(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    // Right-hand side of a \b right after an ASCII letter
+    private static boolean isBoundaryWordAfter(char[] buf, int i, int to) {
+        char c = buf[i];
+        if (c < 0x80) return isAsciiWord(c);
+        int cp = Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(buf[i + 1])
+                ? Character.toCodePoint(c, buf[i + 1]) : c;
+        return Character.isLetterOrDigit(cp) || Character.getType(cp) == Character.NON_SPACING_MARK;
+    }
+
+    private static boolean isSpace(char c) {
+        return classify(c) == SPACE;
+    }
+
+    // ^(import\s+|#include\s+|require\(|from\s+\S+\s+import)
+    private static boolean isImport(char[] buf, int from, int to) {
+        if (startsWith(buf, from, to, "import")) return from + 6 < to && isSpace(buf[from + 6]);
+        if (startsWith(buf, from, to, "#include")) return from + 8 < to && isSpace(buf[from + 8]);
+        if (startsWith(buf, from, to, "require(")) return true;
+        if (!startsWith(buf, from, to, "from")) return false;
+        int i = from + 4;
+        int mark = i;
+        while (i < to && isSpace(buf[i])) i++;
+        if (i == mark) return false;
+        mark = i;
+        while (i < to && !isSpace(buf[i])) i++;
+        if (i == mark) return false;
+        mark = i;
+        while (i < to && isSpace(buf[i])) i++;
+        if (i == mark) return false;
+        return startsWith(buf, i, to, "import");
+    }
+
+    private static boolean startsWith(char[] buf, int from, int to, String prefix) {
+        int n = prefix.length();
+        if (to - from < n) return false;
+        for (int k = 0; k < n; k++) {
+            if (buf[from + k] != prefix.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private static boolean endsWithAny(char[] buf, int lowerBound, int end, String[] keywords) {
+        for (String k : keywords) {
+            int s = end - k.length();
+            if (s >= lowerBound && startsWith(buf, s, end, k)) return true;
+        }
+        return false;
+    }
+
+    private static boolean regionMatchesAsciiIgnoreCase(char[] buf, int from, int to, String lowerWord) {
+        int n = lowerWord.length();
+        if (to - from < n) return false;
+        for (int k = 0; k < n; k++) {
+            char c = buf[from + k];
+            if (c >= 'A' && c <= 'Z') c = (char) (c | 0x20);
+            if (c != lowerWord.charAt(k)) return false;
+        }
+        return true;
+    }
+}
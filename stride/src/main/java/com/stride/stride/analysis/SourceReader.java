@@ -0,0 +1,250 @@
+package com.stride.stride.analysis;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads file and blob content for the line scan without allocating per file.
+ *
+ * Instances are pooled: a worker takes one for a file ({@link #acquire}) and gives it back
+ * afterwards, so the byte buffer, the decoder, the line splitter and the fingerprinter serve file
+ * after file. A file up to {@link #MAP_THRESHOLD} bytes is read with one channel read into a
+ * direct buffer, grown on demand; a larger one is memory-mapped, so only the pages the scan
+ * touches are read.
+ *
+ * Decoding is explicit and never uses the platform default: a byte order mark selects UTF-8 or
+ * UTF-16, otherwise valid UTF-8 is decoded as UTF-8 and anything else as ISO-8859-1. A sequence
+ * cut short by the end of the content does not make it invalid; it decodes to a replacement
+ * char. ASCII and ISO-8859-1 content, the common case, is widened byte by byte with no decoder.
+ */
+final class SourceReader extends Reader {
+
+    /** Files above this size are memory-mapped instead of read into the pooled buffer. */
+    static final int MAP_THRESHOLD = 1 << 20;
+
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_POOLED = 64;
+
+    private static final Queue<SourceReader> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private static final byte[] BLOB_HEADER = {'b', 'l', 'o', 'b', ' '};
+
+    private enum Mode { WIDEN, DECODE }
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_BYTES);
+    private final CharsetDecoder utf8 = decoder(StandardCharsets.UTF_8);
+    private CharsetDecoder utf16le;
+    private CharsetDecoder utf16be;
+    private final MessageDigest sha1;
+    private final byte[] lengthDigits = new byte[20];
+
+    // View of the char array last read into, rewrapped only when the caller's array changes
+    private char[] target;
+    private CharBuffer targetView;
+
+    // Scan state that travels with the buffers, so its rings and output buffers are reused too
+    private final LineSplitter lines = new LineSplitter();
+    private WinnowingFingerprinter fingerprinter;
+
+    // The content being decoded
+    private ByteBuffer content;
+    private Mode mode;
+    private CharsetDecoder decoder;
+    private boolean flushed;
+
+    private SourceReader() {
+        try {
+            sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static SourceReader acquire() {
+        SourceReader reader = POOL.poll();
+        if (reader == null) return new SourceReader();
+        POOLED.decrementAndGet();
+        return reader;
+    }
+
+    /** Give the reader back; the content it was handed must not be used any more. */
+    void release() {
+        content = null;
+        decoder = null;
+        target = null;
+        targetView = null;
+        lines.trim();
+        if (POOLED.incrementAndGet() <= MAX_POOLED) POOL.offer(this);
+        else POOLED.decrementAndGet();
+    }
+
+    /** The line splitter for the next file. */
+    LineSplitter lineSplitter() {
+        return lines;
+    }
+
+    /** A fingerprinter for the next file, reset, with these parameters. */
+    WinnowingFingerprinter fingerprinter(int k, int w, int minTokens) {
+        if (fingerprinter == null || !fingerprinter.hasParameters(k, w, minTokens)) {
+            fingerprinter = new WinnowingFingerprinter(k, w, minTokens);
+        } else {
+            fingerprinter.reset();
+        }
+        return fingerprinter;
+    }
+
+    /**
+     * The whole content of a file, valid until the next read or {@link #release}.
+     */
+    ByteBuffer read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAP_THRESHOLD) return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocateDirect(Math.min(MAP_THRESHOLD, Integer.highestOneBit((int) size) << 1));
+            }
+            buffer.clear().limit((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // a file that shrank while being read ends early
+            }
+            return buffer.flip();
+        }
+    }
+
+    /** Git blob id of the content, as {@code git hash-object} computes it; leaves its position unchanged. */
+    String blobId(ByteBuffer bytes) {
+        sha1.reset();
+        sha1.update(BLOB_HEADER);
+        int n = bytes.remaining();
+        int digits = 0;
+        do {
+            lengthDigits[lengthDigits.length - 1 - digits++] = (byte) ('0' + n % 10);
+            n /= 10;
+        } while (n > 0);
+        sha1.update(lengthDigits, lengthDigits.length - digits, digits);
+        sha1.update((byte) 0);
+        int position = bytes.position();
+        sha1.update(bytes);
+        bytes.position(position);
+        byte[] digest = sha1.digest();
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = Character.forDigit((digest[i] >> 4) & 0xf, 16);
+            hex[2 * i + 1] = Character.forDigit(digest[i] & 0xf, 16);
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Start reading chars from this content, in the encoding it is detected to be in.
+     */
+    SourceReader open(ByteBuffer bytes) {
+        content = bytes;
+        flushed = false;
+        int p = bytes.position();
+        int remaining = bytes.remaining();
+        if (remaining >= 3 && bytes.get(p) == (byte) 0xEF && bytes.get(p + 1) == (byte) 0xBB && bytes.get(p + 2) == (byte) 0xBF) {
+            bytes.position(p + 3);
+            return decodeWith(utf8);
+        }
+        if (remaining >= 2 && bytes.get(p) == (byte) 0xFF && bytes.get(p + 1) == (byte) 0xFE) {
+            bytes.position(p + 2);
+            if (utf16le == null) utf16le = decoder(StandardCharsets.UTF_16LE);
+            return decodeWith(utf16le);
+        }
+        if (remaining >= 2 && bytes.get(p) == (byte) 0xFE && bytes.get(p + 1) == (byte) 0xFF) {
+            bytes.position(p + 2);
+            if (utf16be == null) utf16be = decoder(StandardCharsets.UTF_16BE);
+            return decodeWith(utf16be);
+        }
+        // ASCII and non-UTF-8 bytes (taken as ISO-8859-1) widen to the same chars
+        mode = Mode.WIDEN;
+        if (isMultiByteUtf8(bytes)) decodeWith(utf8);
+        return this;
+    }
+
+    /**
+     * Charset for content that can only be streamed (very large blobs): the byte order mark of
+     * its first bytes, or UTF-8.
+     */
+    static Charset streamCharset(byte[] head) {
+        if (head.length >= 2 && head[0] == (byte) 0xFF && head[1] == (byte) 0xFE) return StandardCharsets.UTF_16LE;
+        if (head.length >= 2 && head[0] == (byte) 0xFE && head[1] == (byte) 0xFF) return StandardCharsets.UTF_16BE;
+        return StandardCharsets.UTF_8;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+        if (mode == Mode.WIDEN) {
+            int n = Math.min(len, content.remaining());
+            if (n == 0) return len == 0 ? 0 : -1;
+            int p = content.position();
+            for (int i = 0; i < n; i++) cbuf[off + i] = (char) (content.get(p + i) & 0xff);
+            content.position(p + n);
+            return n;
+        }
+        if (flushed) return -1;
+        if (cbuf != target) {
+            target = cbuf;
+            targetView = CharBuffer.wrap(cbuf);
+        }
+        targetView.limit(off + len).position(off);
+        decoder.decode(content, targetView, true);
+        if (!content.hasRemaining() && decoder.flush(targetView).isUnderflow()) flushed = true;
+        int n = targetView.position() - off;
+        return n == 0 && flushed ? -1 : n;
+    }
+
+    @Override
+    public void close() {
+        // the content belongs to the caller; the reader goes back with release()
+    }
+
+    private SourceReader decodeWith(CharsetDecoder d) {
+        mode = Mode.DECODE;
+        decoder = d;
+        d.reset();
+        return this;
+    }
+
+    private static CharsetDecoder decoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    // True when the bytes hold non-ASCII chars and every one is a well-formed UTF-8 sequence, the
+    // last possibly cut short by the end of the content (a truncated file or blob)
+    private static boolean isMultiByteUtf8(ByteBuffer bytes) {
+        boolean multiByte = false;
+        int end = bytes.limit();
+        for (int i = bytes.position(); i < end; i++) {
+            int b = bytes.get(i) & 0xff;
+            if (b < 0x80) continue;
+            int continuation = b >= 0xF5 ? -1 : b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : b >= 0xC2 ? 1 : -1;
+            if (continuation < 0) return false;
+            int present = Math.min(continuation, end - 1 - i);
+            for (int k = 1; k <= present; k++) {
+                if ((bytes.get(i + k) & 0xC0) != 0x80) return false;
+            }
+            i += present;
+            multiByte = true;
+        }
+        return multiByte;
+    }
+}
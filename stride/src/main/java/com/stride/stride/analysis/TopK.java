@@ -0,0 +1,92 @@
+package com.stride.stride.analysis;
+
+/**
+ * The k ids with the largest keys among those offered, kept in one pass and O(k) memory: a
+ * bounded min-heap whose root is the weakest entry kept, so an offer costs O(log k) and most
+ * offers only compare with the root.
+ *
+ * On equal keys the smaller id is stronger. Offered in file order, the result is what a stable
+ * descending sort of all files would put first.
+ */
+public final class TopK {
+
+    private final int[] keys;
+    private final int[] ids;
+    private int size;
+
+    public TopK(int k) {
+        this.keys = new int[k];
+        this.ids = new int[k];
+    }
+
+    public void offer(int id, int key) {
+        if (size < ids.length) {
+            keys[size] = key;
+            ids[size] = id;
+            up(size++);
+        } else if (size > 0 && weaker(0, key, id)) {
+            keys[0] = key;
+            ids[0] = id;
+            down(0, size);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** The ids kept, strongest first. */
+    public int[] ids() {
+        int[] out = new int[size];
+        // pop the weakest into the last free slot, on a copy so offers may continue
+        TopK copy = new TopK(keys.clone(), ids.clone(), size);
+        for (int i = size - 1; i >= 0; i--) {
+            out[i] = copy.ids[0];
+            copy.size--;
+            copy.keys[0] = copy.keys[copy.size];
+            copy.ids[0] = copy.ids[copy.size];
+            copy.down(0, copy.size);
+        }
+        return out;
+    }
+
+    private TopK(int[] keys, int[] ids, int size) {
+        this.keys = keys;
+        this.ids = ids;
+        this.size = size;
+    }
+
+    // Whether the entry at heap slot i is weaker than (key, id)
+    private boolean weaker(int i, int key, int id) {
+        return keys[i] < key || keys[i] == key && ids[i] > id;
+    }
+
+    private void up(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!weaker(i, keys[parent], ids[parent])) return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void down(int i, int n) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) return;
+            if (child + 1 < n && weaker(child + 1, keys[child], ids[child])) child++;
+            if (!weaker(child, keys[i], ids[i])) return;
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int k = keys[a];
+        keys[a] = keys[b];
+        keys[b] = k;
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+    }
+}
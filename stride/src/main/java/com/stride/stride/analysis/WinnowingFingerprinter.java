@@ -0,0 +1,130 @@
+package com.stride.stride.analysis;
+
+/**
+ * Winnowing (Schleimer et al.) over a file's token stream.
+ *
+ * Every k consecutive tokens form a k-gram whose 64-bit Rabin-Karp hash is rolled in O(1) per
+ * token. From each run of w consecutive k-grams the minimum hash is kept, which guarantees that
+ * any shared run of at least w + k - 1 tokens produces a shared fingerprint. State is a pair of
+ * fixed-size rings, so memory per file does not depend on file size beyond the selected output,
+ * and an instance can be {@link #reset} and reused for the next file.
+ */
+final class WinnowingFingerprinter {
+
+    private static final long BASE = 0x100000001B3L;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private final int k;
+    private final int w;
+    private final int minTokens;
+    private final long basePowK;
+
+    // last k tokens
+    private final long[] tokenHashes;
+    private final int[] tokenLines;
+    private int tokens;
+    private long rolling;
+
+    // last w k-grams
+    private final long[] gramHashes;
+    private final int[] gramStartLines;
+    private final int[] gramEndLines;
+    private int grams;
+    private int selected = -1;
+
+    private final Fingerprints.Builder out = new Fingerprints.Builder();
+
+    /**
+     * @param k         tokens per k-gram
+     * @param w         k-grams per winnowing window
+     * @param minTokens files shorter than k but with at least this many tokens get one whole-file fingerprint
+     */
+    WinnowingFingerprinter(int k, int w, int minTokens) {
+        this.k = Math.max(1, k);
+        this.w = Math.max(1, w);
+        this.minTokens = minTokens;
+        long p = 1;
+        for (int i = 1; i < this.k; i++) p *= BASE;
+        this.basePowK = p;
+        this.tokenHashes = new long[this.k];
+        this.tokenLines = new int[this.k];
+        this.gramHashes = new long[this.w];
+        this.gramStartLines = new int[this.w];
+        this.gramEndLines = new int[this.w];
+    }
+
+    /** FNV-1a over the token characters, no String needed. */
+    static long hashToken(char[] buf, int start, int end) {
+        long h = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            h ^= buf[i];
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    void add(long tokenHash, int line) {
+        int slot = tokens % k;
+        if (tokens >= k) rolling -= tokenHashes[slot] * basePowK;
+        rolling = rolling * BASE + tokenHash;
+        tokenHashes[slot] = tokenHash;
+        tokenLines[slot] = line;
+        tokens++;
+        if (tokens >= k) addGram(rolling, tokenLines[tokens % k], line);
+    }
+
+    private void addGram(long hash, int startLine, int endLine) {
+        int slot = grams % w;
+        gramHashes[slot] = hash;
+        gramStartLines[slot] = startLine;
+        gramEndLines[slot] = endLine;
+        grams++;
+        if (grams < w) return;
+
+        int windowStart = grams - w;
+        if (selected < windowStart) {
+            // previous minimum slid out: rescan, rightmost minimum wins
+            int best = windowStart;
+            for (int g = windowStart + 1; g < grams; g++) {
+                if (gramHashes[g % w] <= gramHashes[best % w]) best = g;
+            }
+            select(best);
+        } else if (hash <= gramHashes[selected % w]) {
+            select(grams - 1);
+        }
+    }
+
+    private void select(int gram) {
+        if (gram == selected) return;
+        selected = gram;
+        int slot = gram % w;
+        out.add(gramHashes[slot], gramStartLines[slot], gramEndLines[slot]);
+    }
+
+    boolean hasParameters(int k, int w, int minTokens) {
+        return this.k == Math.max(1, k) && this.w == Math.max(1, w) && this.minTokens == minTokens;
+    }
+
+    /** Forget the previous file; the rings and the output buffer are kept. */
+    void reset() {
+        tokens = 0;
+        rolling = 0;
+        grams = 0;
+        selected = -1;
+        out.clear();
+    }
+
+    Fingerprints finish() {
+        if (tokens < k) {
+            if (tokens > 0 && tokens >= minTokens) out.add(rolling, tokenLines[0], tokenLines[tokens - 1]);
+        } else if (grams < w) {
+            // fewer k-grams than one window: keep the window minimum
+            int best = 0;
+            for (int g = 1; g < grams; g++) {
+                if (gramHashes[g] <= gramHashes[best]) best = g;
+            }
+            select(best);
+        }
+        return out.build();
+    }
+}
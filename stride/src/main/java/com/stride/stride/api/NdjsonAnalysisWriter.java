@@ -0,0 +1,82 @@
+package com.stride.stride.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stride.stride.analysis.FileMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes an analysis as newline-delimited JSON: one {"type":"file"} record per file as it
+ * finishes, then a single {"type":"summary"} record with the aggregates, or {"type":"error"}.
+ * Records are flushed one by one so the client can render while the walk is still running.
+ */
+class NdjsonAnalysisWriter {
+
+    // Already sent record by record, so they are left out of the summary
+    private static final Set<String> PER_FILE_KEYS = Set.of(
+            "nestingDepthPerFile", "halsteadVolumePerFile", "commentDensityPerFile",
+            "todoCountPerFile", "cognitiveComplexityPerFile", "fileCoupling");
+
+    private final OutputStream out;
+    private final ObjectMapper mapper;
+
+    NdjsonAnalysisWriter(OutputStream out, ObjectMapper mapper) {
+        this.out = out;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Called from the walk workers; a failed write (client gone) is rethrown unchecked, which cancels the run.
+     */
+    synchronized void file(FileMetrics fm) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("type", "file");
+        record.put("path", fm.getPath());
+        record.put("extension", fm.getExtension());
+        record.put("lines", fm.getLines());
+        record.put("commentLines", fm.getCommentLines());
+        record.put("commentDensity", fm.getCommentDensity());
+        record.put("complexity", fm.getComplexity());
+        record.put("cognitiveComplexity", fm.getCognitiveComplexity());
+        record.put("functions", fm.getFunctions());
+        record.put("classes", fm.getClasses());
+        record.put("maxNesting", fm.getMaxNesting());
+        record.put("halsteadVolume", fm.getHalsteadVolume());
+        record.put("todoCount", fm.getTodoCount());
+        record.put("imports", fm.getImportCount());
+        record.put("secrets", fm.getSecrets().size());
+        if (fm.getSkipped() != null) record.put("skipped", fm.getSkipped());
+        try {
+            write(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void summary(Map<String, Object> metrics) throws IOException {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("type", metrics.containsKey("error") ? "error" : "summary");
+        for (Map.Entry<String, Object> e : metrics.entrySet()) {
+            if (!PER_FILE_KEYS.contains(e.getKey())) record.put(e.getKey(), e.getValue());
+        }
+        write(record);
+    }
+
+    synchronized void error(String message) throws IOException {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("type", "error");
+        record.put("error", message);
+        write(record);
+    }
+
+    private void write(Map<String, Object> record) throws IOException {
+        out.write(mapper.writeValueAsBytes(record));
+        out.write('\n');
+        out.flush();
+    }
+}
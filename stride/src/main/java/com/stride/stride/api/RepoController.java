@@ -1,25 +1,62 @@
 package com.stride.stride.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stride.stride.analysis.AnalysisProgress;
+import com.stride.stride.model.BatchRequest;
+import com.stride.stride.repo.CloneOptions;
+import com.stride.stride.service.AnalysisJobService;
+import com.stride.stride.service.BatchAnalysisService;
 import com.stride.stride.service.StrideService;
 
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/repo")
 public class RepoController {
 
+    // A queued streaming analysis gives up if the response body has not started by then
+    private static final long STREAM_START_TIMEOUT_SECONDS = 60;
+
     private final StrideService strideService;
+    private final AnalysisJobService jobService;
+    private final BatchAnalysisService batchService;
+    private final ObjectMapper objectMapper;
 
-    public RepoController(StrideService strideService) {
+    public RepoController(StrideService strideService, AnalysisJobService jobService,
+                          BatchAnalysisService batchService, ObjectMapper objectMapper) {
         this.strideService = strideService;
+        this.jobService = jobService;
+        this.batchService = batchService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/clone")
-    public String cloneRepo(@RequestParam String url, @RequestParam String path) {
-        return strideService.cloneRepo(url, path);
+    public Map<String, Object> cloneRepo(@RequestParam String url, @RequestParam String path,
+                                         @RequestParam(defaultValue = "0") int depth,
+                                         @RequestParam(defaultValue = "-1") long blobLimit,
+                                         @RequestParam(defaultValue = "false") boolean bare,
+                                         @RequestParam(defaultValue = "true") boolean mirror) {
+        CloneOptions options = new CloneOptions();
+        options.setDepth(depth);
+        options.setBlobLimit(blobLimit);
+        options.setBare(bare);
+        options.setUseMirror(mirror);
+        return strideService.cloneRepo(url, path, options);
     }
 
     @PostMapping("/analyze")
@@ -27,6 +64,53 @@ public class RepoController {
     return strideService.analyzeRepo(path);
 }
 
+    // NDJSON: a record per file as it finishes, then one summary record. The analysis is queued
+    // with the background jobs, so a full queue is refused with 429 before the stream starts.
+    @PostMapping(value = "/analyze/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> analyzeRepoStream(@RequestParam String path) {
+        CompletableFuture<NdjsonAnalysisWriter> writer = new CompletableFuture<>();
+        Future<Map<String, Object>> analysis;
+        try {
+            analysis = jobService.submitAttached(path,
+                    () -> new AnalysisProgress(writer.get(STREAM_START_TIMEOUT_SECONDS, TimeUnit.SECONDS)::file));
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Analysis queue is full, retry later");
+        }
+        StreamingResponseBody body = out -> {
+            NdjsonAnalysisWriter ndjson = new NdjsonAnalysisWriter(out, objectMapper);
+            writer.complete(ndjson);
+            try {
+                ndjson.summary(analysis.get());
+            } catch (InterruptedException e) {
+                analysis.cancel(true);
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                // UncheckedIOException or CancellationException: client went away, the walk has been cancelled
+                if (!(cause instanceof UncheckedIOException) && !(cause instanceof CancellationException)) {
+                    ndjson.error(cause.toString());
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    // Reads blobs from a bare clone at the given ref; no working tree is written
+    @PostMapping("/analyze-ref")
+    public Map<String, Object> analyzeRef(@RequestParam(required = false) String url, @RequestParam String path,
+                                          @RequestParam(defaultValue = "HEAD") String ref) {
+        return strideService.analyzeRef(url, path, ref, null);
+    }
+
+    // Metrics of sampled commits on the first-parent history of ref, one series per metric
+    @PostMapping("/trend")
+    public Map<String, Object> analyzeTrend(@RequestParam(required = false) String url, @RequestParam String path,
+                                            @RequestParam(defaultValue = "HEAD") String ref,
+                                            @RequestParam(defaultValue = "10") int samples,
+                                            @RequestParam(defaultValue = "0") int intervalDays) {
+        return strideService.analyzeTrend(url, path, ref, samples, intervalDays);
+    }
+
     @PostMapping("/optimize")
     public List<String> optimizeRepo(@RequestParam String path) {
     return strideService.optimizeRepo(path);
@@ -36,4 +120,79 @@ public class RepoController {
     return strideService.analyzeAndOptimize(path);
 }
 
+    @GetMapping("/cache/stats")
+    public Map<String, Object> cacheStats() {
+        return strideService.cacheStats();
+    }
+
+    @GetMapping("/fingerprints/stats")
+    public Map<String, Object> fingerprintStats() {
+        return strideService.fingerprintStats();
+    }
+
+    // Background jobs: submit returns immediately with a job id to poll
+
+    @PostMapping("/jobs")
+    public ResponseEntity<Map<String, Object>> submitJob(@RequestParam String path,
+                                                         @RequestParam(defaultValue = "false") boolean optimize) {
+        try {
+            return ResponseEntity.accepted().body(jobService.submit(path, optimize));
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Analysis queue is full, retry later");
+        }
+    }
+
+    @GetMapping("/jobs/{id}")
+    public Map<String, Object> jobStatus(@PathVariable String id) {
+        return requireJob(jobService.status(id));
+    }
+
+    @GetMapping("/jobs/{id}/result")
+    public ResponseEntity<Map<String, Object>> jobResult(@PathVariable String id) {
+        Map<String, Object> status = requireJob(jobService.status(id));
+        Map<String, Object> result = jobService.result(id);
+        return result != null ? ResponseEntity.ok(result) : ResponseEntity.status(HttpStatus.CONFLICT).body(status);
+    }
+
+    @DeleteMapping("/jobs/{id}")
+    public Map<String, Object> cancelJob(@PathVariable String id) {
+        return requireJob(jobService.cancel(id));
+    }
+
+    @GetMapping("/jobs/stats")
+    public Map<String, Object> jobStats() {
+        return jobService.executorStats();
+    }
+
+    // Batches: clone and analyze a list of repositories; poll for the consolidated report
+
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> submitBatch(@RequestBody BatchRequest request) {
+        try {
+            return ResponseEntity.accepted().body(batchService.submit(request));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/batch/{id}")
+    public Map<String, Object> batchStatus(@PathVariable String id) {
+        return requireBatch(batchService.status(id));
+    }
+
+    @DeleteMapping("/batch/{id}")
+    public Map<String, Object> cancelBatch(@PathVariable String id) {
+        return requireBatch(batchService.cancel(id));
+    }
+
+    private static Map<String, Object> requireBatch(Map<String, Object> status) {
+        if (status == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown batch id");
+        return status;
+    }
+
+    private static Map<String, Object> requireJob(Map<String, Object> status) {
+        if (status == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown job id");
+        return status;
+    }
+
 }
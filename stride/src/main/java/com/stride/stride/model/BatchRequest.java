@@ -0,0 +1,34 @@
+package com.stride.stride.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Body of POST /repo/batch: repositories to clone and analyze in one run.
+ */
+@Data
+public class BatchRequest {
+
+    /** Clone URLs (file:// works too), analyzed in no particular order. */
+    private List<String> urls = new ArrayList<>();
+
+    /**
+     * Clones go in a directory per batch under here; blank uses stride.batch.work-dir. It must lie
+     * inside stride.batch.work-dir, and a relative path is taken from there.
+     */
+    private String workDir;
+
+    /** Also generate optimizer suggestions for every repository. */
+    private boolean optimize;
+
+    /** Leave the clones on disk after analysis instead of deleting them. */
+    private boolean keepClones;
+
+    /** History depth of the clones in commits; 0 fetches full history. */
+    private int depth;
+
+    /** Analysis time budget per repository; 0 for none. A repository over budget is cancelled. */
+    private long repoTimeoutSeconds;
+}
@@ -0,0 +1,21 @@
+package com.stride.stride.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A run of code in an analyzed file that was first seen in another repository.
+ * The source file is relative to its repository root; line numbers are 1-based and inclusive.
+ */
+@Data
+@AllArgsConstructor
+public class CrossRepoDuplicate {
+    private String file;
+    private int startLine;
+    private int endLine;
+    private String sourceRepo;
+    private String sourceFile;
+    private int sourceStartLine;
+    private int sourceEndLine;
+    private int fingerprints;
+}
@@ -0,0 +1,20 @@
+package com.stride.stride.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A run of duplicated code shared by two files (fileA is where it was seen first).
+ * Line numbers are 1-based and inclusive.
+ */
+@Data
+@AllArgsConstructor
+public class DuplicateBlock {
+    private String fileA;
+    private int fileAStartLine;
+    private int fileAEndLine;
+    private String fileB;
+    private int fileBStartLine;
+    private int fileBEndLine;
+    private int fingerprints;
+}
@@ -1,136 +1,289 @@
 package com.stride.stride.optimizer;
 
+import com.stride.stride.analysis.RepoMetrics;
+import com.stride.stride.optimizer.OptimizerRule.Metric;
+import com.stride.stride.optimizer.Suggestion.Severity;
+
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntToDoubleFunction;
 
+/**
+ * Evaluates {@link OptimizerRules} against analysis results.
+ *
+ * Each metric column is read once per result, whatever the number of rules on it (see
+ * {@link OptimizerRules}). Results with many files are evaluated in chunks on the common
+ * fork/join pool; the hits of each chunk are kept apart and concatenated in chunk order, so the
+ * suggestions come out in rule order, then file order, as in a sequential pass.
+ *
+ * A repository's stride-analyzer.properties may overlay the rules with {@code optimizer.*}
+ * keys; the overlaid rule set is compiled once per distinct overlay and cached.
+ */
 public class OptimizerEngine {
 
+    // Fewer files are evaluated on the calling thread
+    static final int PARALLEL_MIN_FILES = 8192;
+    private static final int CHUNK = 4096;
+    private static final int MAX_CACHED_OVERLAYS = 64;
+
+    private final OptimizerRules rules;
+    private final ForkJoinPool pool;
+    private final Map<Map<String, String>, Overlay> overlays =
+            Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Map<String, String>, Overlay> eldest) {
+                    return size() > MAX_CACHED_OVERLAYS;
+                }
+            });
+
+    public OptimizerEngine() {
+        this(OptimizerRules.defaults());
+    }
+
+    public OptimizerEngine(OptimizerRules rules) {
+        this(rules, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool runs the chunks of large results
+     */
+    public OptimizerEngine(OptimizerRules rules, ForkJoinPool pool) {
+        this.rules = rules;
+        this.pool = pool;
+    }
+
+    public OptimizerRules getRules() {
+        return rules;
+    }
+
     /**
      * Generate highly advanced optimization suggestions
-     * @param metrics Map from Analyzer
+     * @param metrics typed result from Analyzer
      * @return List of actionable suggestions
      */
-    public List<String> generateSuggestions(Map<String, Object> metrics) {
-        List<String> suggestions = new ArrayList<>();
+    public List<String> generateSuggestions(RepoMetrics metrics) {
+        return Suggestion.messages(evaluate(metrics));
+    }
 
-        if (metrics.containsKey("error")) {
-            suggestions.add("Cannot optimize: " + metrics.get("error"));
-            return suggestions;
+    /**
+     * Structured form of {@link #generateSuggestions}: what every rule found, in rule order.
+     */
+    public List<Suggestion> evaluate(RepoMetrics metrics) {
+        List<Suggestion> out = new ArrayList<>();
+        if (metrics.getError() != null) {
+            out.add(new Suggestion("error", Severity.HIGH, null, null, Double.NaN, "Cannot optimize: " + metrics.getError()));
+            return out;
         }
 
-        int totalFiles = (int) metrics.getOrDefault("totalFiles", 0);
-        int totalLines = (int) metrics.getOrDefault("totalLines", 0);
-        int complexity = (int) metrics.getOrDefault("cyclomaticComplexity", 0);
-        int maxDepth = (int) metrics.getOrDefault("maxDepth", 0);
-
-        Map<String, Integer> fileTypes = castMap(metrics.getOrDefault("fileTypes", new HashMap<>()));
-        Map<String, Integer> linesPerType = castMap(metrics.getOrDefault("linesPerType", new HashMap<>()));
-        Map<String, Integer> commentLines = castMap(metrics.getOrDefault("commentLinesPerType", new HashMap<>()));
-        Map<String, Integer> functionsPerType = castMap(metrics.getOrDefault("functionsPerType", new HashMap<>()));
-        Map<String, Integer> classesPerType = castMap(metrics.getOrDefault("classesPerType", new HashMap<>()));
-        Map<String, Integer> nestingDepth = castMap(metrics.getOrDefault("nestingDepthPerFile", new HashMap<>()));
-        Map<String, Double> halsteadVolume = castDoubleMap(metrics.getOrDefault("halsteadVolumePerFile", new HashMap<>()));
-        List<String> optimizationFlags = castList(metrics.getOrDefault("optimizationFlags", new ArrayList<>()));
-
-        Map<String, Double> severityScores = new HashMap<>();
-
-        // 1. Compute severity per file using weighted complexity
-        for (String file : nestingDepth.keySet()) {
-            double severity = 0;
-            int nest = nestingDepth.getOrDefault(file, 0);
-            double hal = halsteadVolume.getOrDefault(file, 0.0);
-            severity = complexity * 0.4 + hal * 0.3 + nest * 0.3;
-            severityScores.put(file, severity);
-
-            if (severity > 1000) {
-                suggestions.add("[HIGH PRIORITY] Refactor file: " + file + " (Severity=" + String.format("%.1f", severity) + ")");
-            }
+        OptimizerRules ruleSet = rules;
+        Overlay overlay = overlay(metrics.getSettings());
+        if (overlay != null && overlay.rules != null) {
+            ruleSet = overlay.rules;
+        } else if (overlay != null) {
+            // an invalid overlay is reported and the rules are used as they are
+            out.add(new Suggestion("config", Severity.LOW, null, null, Double.NaN,
+                    "[CONFIG] Optimizer rules in stride-analyzer.properties ignored: " + overlay.problem));
         }
+        List<OptimizerRule> list = ruleSet.getRules();
 
-        // 2. Large files and functions
-        List<String> largeFiles = ((List<String>) metrics.getOrDefault("top5LargestFiles", new ArrayList<>()));
-        for (String lf : largeFiles) {
-            suggestions.add("[LARGE FILE] Review: " + lf);
+        // Columns read by this result's rules, built once with their repository-wide terms
+        IntToDoubleFunction[] columns = new IntToDoubleFunction[Metric.values().length];
+        for (OptimizerRules.Column c : ruleSet.getFileColumns()) columns[c.metric.ordinal()] = c.metric.column(metrics);
+        for (OptimizerRules.Column c : ruleSet.getTypeColumns()) columns[c.metric.ordinal()] = c.metric.column(metrics);
+
+        int files = metrics.getFileCount();
+        Hits[] fileHits = new Hits[(files + CHUNK - 1) / CHUNK];
+        if (!ruleSet.getFileColumns().isEmpty() && files > 0) {
+            ChunkTask task = new ChunkTask(ruleSet, columns, list.size(), fileHits, 0, fileHits.length, files);
+            if (files >= PARALLEL_MIN_FILES) pool.invoke(task);
+            else task.compute();
         }
+        Hits typeHits = new Hits(list.size());
+        scan(ruleSet.getTypeColumns(), columns, 0, metrics.getTypeCount(), typeHits);
 
-        // 3. Documentation gaps
-        for (String ext : fileTypes.keySet()) {
-            int totalLinesOfType = linesPerType.getOrDefault(ext, 0);
-            int comments = commentLines.getOrDefault(ext, 0);
-            double commentRatio = totalLinesOfType > 0 ? ((double) comments / totalLinesOfType) * 100 : 0;
-            if (commentRatio < 50) {
-                suggestions.add("[DOC GAP] Low documentation in ." + ext + " files (" + String.format("%.1f", commentRatio) + "% comments)");
+        for (int r = 0; r < list.size(); r++) {
+            OptimizerRule rule = list.get(r);
+            Metric metric = rule.getMetric();
+            switch (metric.getScope()) {
+                case FILE -> {
+                    IntToDoubleFunction column = columns[metric.ordinal()];
+                    for (Hits chunk : fileHits) {
+                        if (chunk == null) continue;
+                        for (int i = 0; i < chunk.count[r]; i++) {
+                            int f = chunk.ids[r][i];
+                            out.add(fileSuggestion(rule, metrics.getPath(f), column.applyAsDouble(f)));
+                        }
+                    }
+                }
+                case TYPE -> {
+                    IntToDoubleFunction column = columns[metric.ordinal()];
+                    for (int i = 0; i < typeHits.count[r]; i++) {
+                        int t = typeHits.ids[r][i];
+                        double value = column.applyAsDouble(t);
+                        out.add(new Suggestion(rule.getId(), rule.getSeverity(), null, metrics.getType(t), value,
+                                rule.render(null, metrics.getType(t), value, rule.getThreshold())));
+                    }
+                }
+                case REPO -> {
+                    double value = metric.repoValue(metrics);
+                    if (rule.matches(value)) {
+                        out.add(new Suggestion(rule.getId(), rule.getSeverity(), null, null, value,
+                                rule.render(null, null, value, rule.getThreshold())));
+                    }
+                }
+                case REPORT -> report(rule, metrics, out);
             }
         }
+        return out;
+    }
 
-        // 4. Function/Class cohesion
-        for (String ext : functionsPerType.keySet()) {
-            int funcs = functionsPerType.getOrDefault(ext, 0);
-            int classes = classesPerType.getOrDefault(ext, 1); // avoid div by zero
-            double avgFunctionsPerClass = (double) funcs / classes;
-            if (avgFunctionsPerClass > 10) {
-                suggestions.add("[COHESION] High functions per class in ." + ext + " (" + String.format("%.1f", avgFunctionsPerClass) + ")");
+    private static Suggestion fileSuggestion(OptimizerRule rule, String path, double value) {
+        return new Suggestion(rule.getId(), rule.getSeverity(), path, null, value,
+                rule.render(path, null, value, rule.getThreshold()));
+    }
+
+    private static void report(OptimizerRule rule, RepoMetrics metrics, List<Suggestion> out) {
+        switch (rule.getMetric()) {
+            case LARGEST_FILES -> {
+                for (int f : metrics.getLargestFiles()) out.add(fileSuggestion(rule, metrics.getPath(f), metrics.getLines(f)));
+            }
+            case LARGE_FILES -> {
+                int threshold = metrics.getLargeFileThreshold();
+                for (int f : metrics.getLargestFiles()) {
+                    if (metrics.getLines(f) <= threshold) continue;
+                    out.add(new Suggestion(rule.getId(), rule.getSeverity(), metrics.getPath(f), null, metrics.getLines(f),
+                            rule.render(metrics.getPath(f), null, metrics.getLines(f), threshold)));
+                }
             }
+            case DOMINANT_TYPE -> {
+                String dominant = "unknown";
+                int dominantFiles = -1;
+                for (int t = 0; t < metrics.getTypeCount(); t++) {
+                    if (metrics.getTypeFiles(t) > dominantFiles) {
+                        dominantFiles = metrics.getTypeFiles(t);
+                        dominant = metrics.getType(t);
+                    }
+                }
+                double value = Math.max(dominantFiles, 0);
+                out.add(new Suggestion(rule.getId(), rule.getSeverity(), null, dominant, value,
+                        rule.render(null, dominant, value, rule.getThreshold())));
+            }
+            case EMPTY_TYPES -> {
+                List<String> empty = new ArrayList<>();
+                for (int t = 0; t < metrics.getTypeCount(); t++) {
+                    if (metrics.getTypeLines(t) == 0) empty.add(metrics.getType(t));
+                }
+                if (empty.isEmpty()) return;
+                out.add(new Suggestion(rule.getId(), rule.getSeverity(), null, empty.toString(), empty.size(),
+                        rule.render(null, empty.toString(), empty.size(), rule.getThreshold())));
+            }
+            default -> throw new IllegalStateException("Not a report: " + rule.getMetric());
         }
+    }
 
-        // 5. Deep nesting warnings
-        nestingDepth.entrySet().stream()
-                .filter(e -> e.getValue() > 5)
-                .forEach(e -> suggestions.add("[NESTING] Deep nesting in file " + e.getKey() + " (" + e.getValue() + ")"));
-
-        // 6. Technical debt
-        suggestions.addAll(optimizationFlags);
+    // The rules overlaid with a repository's optimizer.* settings, or why they cannot be
+    private static final class Overlay {
+        final OptimizerRules rules;
+        final String problem;
 
-        // 7. Directory depth warnings
-        if (maxDepth > 10) {
-            suggestions.add("[STRUCTURE] Repository directory depth is " + maxDepth + "; consider flattening modules");
+        Overlay(OptimizerRules rules, String problem) {
+            this.rules = rules;
+            this.problem = problem;
         }
+    }
 
-        // 8. Overall repo size advice
-        if (totalFiles > 500) {
-            suggestions.add("[MODULARIZE] High file count (" + totalFiles + "); consider splitting into submodules");
+    // null when the settings have no optimizer.* keys
+    private Overlay overlay(Map<String, String> settings) {
+        Map<String, String> overlay = null;
+        for (Map.Entry<String, String> e : settings.entrySet()) {
+            if (!e.getKey().startsWith(OptimizerRules.PREFIX)) continue;
+            if (overlay == null) overlay = new TreeMap<>();
+            overlay.put(e.getKey(), e.getValue());
         }
-        if (totalLines > 20000) {
-            suggestions.add("[REFACTOR] Large codebase (" + totalLines + " lines); review large classes/functions");
+        if (overlay == null) return null;
+        return overlays.computeIfAbsent(overlay, o -> {
+            try {
+                return new Overlay(rules.overlay(o), null);
+            } catch (IllegalArgumentException e) {
+                return new Overlay(null, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * One pass per column over ids [from, to): each value is matched against all thresholds
+     * of its column and the ids are appended to the hits of every rule it fires.
+     */
+    private static void scan(List<OptimizerRules.Column> columnsToScan, IntToDoubleFunction[] columns,
+                             int from, int to, Hits hits) {
+        for (OptimizerRules.Column c : columnsToScan) {
+            IntToDoubleFunction column = columns[c.metric.ordinal()];
+            for (int id = from; id < to; id++) {
+                double value = column.applyAsDouble(id);
+                if (Double.isNaN(value)) continue;
+                int end = c.aboveEnd(value);
+                for (int i = 0; i < end; i++) hits.add(c.aboveRule[i], id);
+                for (int i = c.belowStart(value); i < c.below.length; i++) hits.add(c.belowRule[i], id);
+            }
         }
+    }
+
+    /** Ids each rule fired for, in id order, per rule index. */
+    private static final class Hits {
+        final int[][] ids;
+        final int[] count;
 
-        // 9. Dominant file type
-        String dominantType = fileTypes.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("unknown");
-        suggestions.add("[INFO] Dominant file type: " + dominantType);
-
-        // 10. Halstead complexity per file
-        halsteadVolume.entrySet().stream()
-                .filter(e -> e.getValue() > 5000)
-                .forEach(e -> suggestions.add("[HALSTEAD] High complexity in file " + e.getKey() + " (Volume=" + String.format("%.0f", e.getValue()) + ")"));
-
-        // 11. Unused/empty files
-        List<String> zeroLineFiles = linesPerType.entrySet().stream()
-                .filter(e -> e.getValue() == 0)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
-        if (!zeroLineFiles.isEmpty()) {
-            suggestions.add("[CLEANUP] Some file types have zero lines: " + zeroLineFiles);
+        Hits(int rules) {
+            ids = new int[rules][];
+            count = new int[rules];
         }
 
-        return suggestions;
+        void add(int rule, int id) {
+            int[] list = ids[rule];
+            if (list == null) {
+                list = ids[rule] = new int[8];
+            } else if (count[rule] == list.length) {
+                list = ids[rule] = Arrays.copyOf(list, list.length * 2);
+            }
+            list[count[rule]++] = id;
+        }
     }
 
-    // Utility casts
-    @SuppressWarnings("unchecked")
-    private Map<String,Integer> castMap(Object obj) {
-        return (Map<String,Integer>) obj;
-    }
+    /** Evaluates file chunks [from, to), halving down to single chunks; each fills its own slot. */
+    private static final class ChunkTask extends RecursiveAction {
+        private final OptimizerRules rules;
+        private final IntToDoubleFunction[] columns;
+        private final int ruleCount;
+        private final Hits[] results;
+        private final int from;
+        private final int to;
+        private final int files;
 
-    @SuppressWarnings("unchecked")
-    private Map<String,Double> castDoubleMap(Object obj) {
-        return (Map<String,Double>) obj;
-    }
+        ChunkTask(OptimizerRules rules, IntToDoubleFunction[] columns, int ruleCount, Hits[] results,
+                  int from, int to, int files) {
+            this.rules = rules;
+            this.columns = columns;
+            this.ruleCount = ruleCount;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.files = files;
+        }
 
-    @SuppressWarnings("unchecked")
-    private List<String> castList(Object obj) {
-        return (List<String>) obj;
+        @Override
+        protected void compute() {
+            if (to - from > 1 && files >= PARALLEL_MIN_FILES) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(rules, columns, ruleCount, results, from, mid, files),
+                        new ChunkTask(rules, columns, ruleCount, results, mid, to, files));
+                return;
+            }
+            for (int chunk = from; chunk < to; chunk++) {
+                Hits hits = new Hits(ruleCount);
+                scan(rules.getFileColumns(), columns, chunk * CHUNK, Math.min(files, (chunk + 1) * CHUNK), hits);
+                results[chunk] = hits;
+            }
+        }
     }
 }
@@ -0,0 +1,173 @@
+package com.stride.stride.optimizer;
+
+import com.stride.stride.analysis.RepoMetrics;
+import lombok.Value;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * A declarative optimizer rule: a metric, a threshold it must be above or below, and the
+ * message for each file, extension or repository where it is. Report rules (metrics named
+ * {@code report.*}) list fixed findings such as the largest files and have no threshold.
+ *
+ * Messages may use {file}, {type}, {value} and {threshold}; numbers are written with the
+ * rule's format.
+ */
+@Value
+public class OptimizerRule {
+
+    public enum Scope { FILE, TYPE, REPO, REPORT }
+
+    /** What a rule measures; the key is its name in properties files. */
+    public enum Metric {
+        LINES("lines", Scope.FILE),
+        COMMENT_LINES("comment-lines", Scope.FILE),
+        COMMENT_DENSITY("comment-density", Scope.FILE),
+        COMPLEXITY("complexity", Scope.FILE),
+        COGNITIVE_COMPLEXITY("cognitive-complexity", Scope.FILE),
+        FUNCTIONS("functions", Scope.FILE),
+        CLASSES("classes", Scope.FILE),
+        NESTING("nesting", Scope.FILE),
+        TODOS("todos", Scope.FILE),
+        IMPORTS("imports", Scope.FILE),
+        HALSTEAD_VOLUME("halstead-volume", Scope.FILE),
+        // repository complexity * 0.4 + file Halstead volume * 0.3 + file nesting * 0.3
+        SEVERITY("severity", Scope.FILE),
+
+        TYPE_FILES("type.files", Scope.TYPE),
+        TYPE_LINES("type.lines", Scope.TYPE),
+        // comment lines per 100 lines, 0 for an extension without lines
+        TYPE_COMMENT_RATIO("type.comment-ratio", Scope.TYPE),
+        TYPE_FUNCTIONS_PER_CLASS("type.functions-per-class", Scope.TYPE),
+        // 90th percentile over the extension's files, within 1% (see QuantileSketch)
+        TYPE_LINES_P90("type.lines.p90", Scope.TYPE),
+        TYPE_COMPLEXITY_P90("type.complexity.p90", Scope.TYPE),
+        TYPE_HALSTEAD_VOLUME_P90("type.halstead-volume.p90", Scope.TYPE),
+
+        REPO_FILES("repo.files", Scope.REPO),
+        REPO_LINES("repo.lines", Scope.REPO),
+        REPO_COMPLEXITY("repo.complexity", Scope.REPO),
+        REPO_MAX_DEPTH("repo.max-depth", Scope.REPO),
+        REPO_MAINTAINABILITY_INDEX("repo.maintainability-index", Scope.REPO),
+        REPO_AVG_HALSTEAD_VOLUME("repo.avg-halstead-volume", Scope.REPO),
+        REPO_COMMENT_DENSITY("repo.comment-density", Scope.REPO),
+        REPO_DUPLICATE_BLOCKS("repo.duplicate-blocks", Scope.REPO),
+        REPO_SECRETS("repo.secrets", Scope.REPO),
+
+        // each of the largest files
+        LARGEST_FILES("report.largest-files", Scope.REPORT),
+        // each of the largest files above the large file threshold
+        LARGE_FILES("report.large-files", Scope.REPORT),
+        // the extension with the most files
+        DOMINANT_TYPE("report.dominant-type", Scope.REPORT),
+        // the extensions without lines, as one list
+        EMPTY_TYPES("report.empty-types", Scope.REPORT);
+
+        private final String key;
+        private final Scope scope;
+
+        Metric(String key, Scope scope) {
+            this.key = key;
+            this.scope = scope;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Scope getScope() {
+            return scope;
+        }
+
+        /** @throws IllegalArgumentException for an unknown key */
+        public static Metric of(String key) {
+            for (Metric metric : values()) {
+                if (metric.key.equals(key)) return metric;
+            }
+            throw new IllegalArgumentException("Unknown optimizer metric: " + key);
+        }
+
+        /**
+         * Values by file id (FILE) or extension id (TYPE) of one result. Repository-wide terms
+         * are computed here once, not once per file.
+         */
+        IntToDoubleFunction column(RepoMetrics m) {
+            return switch (this) {
+                case LINES -> m::getLines;
+                case COMMENT_LINES -> m::getCommentLines;
+                case COMMENT_DENSITY -> m::getCommentDensity;
+                case COMPLEXITY -> m::getComplexity;
+                case COGNITIVE_COMPLEXITY -> m::getCognitiveComplexity;
+                case FUNCTIONS -> m::getFunctions;
+                case CLASSES -> m::getClasses;
+                case NESTING -> m::getMaxNesting;
+                case TODOS -> m::getTodoCount;
+                case IMPORTS -> m::getImportCount;
+                case HALSTEAD_VOLUME -> m::getHalsteadVolume;
+                case SEVERITY -> {
+                    double base = m.getCyclomaticComplexity() * 0.4;
+                    yield f -> base + m.getHalsteadVolume(f) * 0.3 + m.getMaxNesting(f) * 0.3;
+                }
+                case TYPE_FILES -> m::getTypeFiles;
+                case TYPE_LINES -> m::getTypeLines;
+                case TYPE_COMMENT_RATIO -> t -> m.getTypeLines(t) > 0
+                        ? ((double) m.getTypeCommentLines(t) / m.getTypeLines(t)) * 100 : 0;
+                case TYPE_FUNCTIONS_PER_CLASS -> t -> (double) m.getTypeFunctions(t) / m.getTypeClasses(t);
+                case TYPE_LINES_P90 -> t -> m.getTypeQuantile(t, RepoMetrics.Measure.LINES, 0.9);
+                case TYPE_COMPLEXITY_P90 -> t -> m.getTypeQuantile(t, RepoMetrics.Measure.COMPLEXITY, 0.9);
+                case TYPE_HALSTEAD_VOLUME_P90 -> t -> m.getTypeQuantile(t, RepoMetrics.Measure.HALSTEAD_VOLUME, 0.9);
+                default -> throw new IllegalStateException(key + " is not a column");
+            };
+        }
+
+        double repoValue(RepoMetrics m) {
+            return switch (this) {
+                case REPO_FILES -> m.getTotalFiles();
+                case REPO_LINES -> m.getTotalLines();
+                case REPO_COMPLEXITY -> m.getCyclomaticComplexity();
+                case REPO_MAX_DEPTH -> m.getMaxDepth();
+                case REPO_MAINTAINABILITY_INDEX -> m.getMaintainabilityIndex();
+                case REPO_AVG_HALSTEAD_VOLUME -> m.getAvgHalsteadVolume();
+                case REPO_COMMENT_DENSITY -> m.getOverallCommentDensity();
+                case REPO_DUPLICATE_BLOCKS -> m.getDuplicateBlocks().size();
+                case REPO_SECRETS -> m.getSecretCount();
+                default -> throw new IllegalStateException(key + " is not a repository metric");
+            };
+        }
+    }
+
+    String id;
+    Metric metric;
+    /** True when values above the threshold fire the rule, false for values below it. */
+    boolean above;
+    double threshold;
+    Suggestion.Severity severity;
+    String message;
+    /** String.format pattern for {value} and {threshold}. */
+    String format;
+
+    /** NaN (0/0 ratios) never fires a rule. */
+    boolean matches(double value) {
+        return above ? value > threshold : value < threshold;
+    }
+
+    String render(String file, String type, double value, double threshold) {
+        StringBuilder out = new StringBuilder(message.length() + 64);
+        int from = 0;
+        int open;
+        while ((open = message.indexOf('{', from)) >= 0) {
+            int close = message.indexOf('}', open);
+            if (close < 0) break;
+            out.append(message, from, open);
+            switch (message.substring(open + 1, close)) {
+                case "file" -> out.append(file);
+                case "type" -> out.append(type);
+                case "value" -> out.append(String.format(format, value));
+                case "threshold" -> out.append(String.format(format, threshold));
+                default -> out.append(message, open, close + 1);
+            }
+            from = close + 1;
+        }
+        return out.append(message, from, message.length()).toString();
+    }
+}
@@ -0,0 +1,208 @@
+package com.stride.stride.optimizer;
+
+import com.stride.stride.optimizer.OptimizerRule.Metric;
+import com.stride.stride.optimizer.OptimizerRule.Scope;
+import com.stride.stride.optimizer.Suggestion.Severity;
+
+import java.util.*;
+
+/**
+ * An ordered, compiled set of optimizer rules.
+ *
+ * File and extension rules are grouped by metric, so one pass over a metric column serves
+ * every rule on it. Within a group the thresholds are sorted: the rules a value fires are a
+ * prefix (above) or suffix (below) of the sorted thresholds, found by binary search, so the
+ * cost per value does not grow with the number of rules that do not fire.
+ *
+ * The rule set is the built-in one, optionally overlaid from properties ({@link #overlay}).
+ */
+public final class OptimizerRules {
+
+    /** Keys of overlay properties start with this, then the rule id. */
+    public static final String PREFIX = "optimizer.";
+
+    private static final String DEFAULT_FORMAT = "%.1f";
+
+    private final List<OptimizerRule> rules;
+    // Per scope, the metrics its rules read and their sorted thresholds
+    private final List<Column> fileColumns;
+    private final List<Column> typeColumns;
+
+    /**
+     * Thresholds of the rules on one metric, each direction sorted ascending, with the index
+     * (in rule order) of the rule each threshold belongs to.
+     */
+    static final class Column {
+        final Metric metric;
+        final double[] above;
+        final int[] aboveRule;
+        final double[] below;
+        final int[] belowRule;
+
+        Column(Metric metric, List<OptimizerRule> rules, List<Integer> ids) {
+            this.metric = metric;
+            List<Integer> up = new ArrayList<>();
+            List<Integer> down = new ArrayList<>();
+            for (int id : ids) (rules.get(id).isAbove() ? up : down).add(id);
+            Comparator<Integer> byThreshold = Comparator.comparingDouble(id -> rules.get(id).getThreshold());
+            up.sort(byThreshold);
+            down.sort(byThreshold);
+            this.aboveRule = up.stream().mapToInt(Integer::intValue).toArray();
+            this.above = up.stream().mapToDouble(id -> rules.get(id).getThreshold()).toArray();
+            this.belowRule = down.stream().mapToInt(Integer::intValue).toArray();
+            this.below = down.stream().mapToDouble(id -> rules.get(id).getThreshold()).toArray();
+        }
+
+        /** Rules above-thresholds fire for value: indexes [0, result) of {@link #aboveRule}. */
+        int aboveEnd(double value) {
+            return firstNotBelow(above, value);
+        }
+
+        /** Rules below-thresholds fire for value: indexes [result, length) of {@link #belowRule}. */
+        int belowStart(double value) {
+            int lo = 0;
+            int hi = below.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (below[mid] > value) hi = mid;
+                else lo = mid + 1;
+            }
+            return lo;
+        }
+
+        // first index whose threshold is >= value
+        private static int firstNotBelow(double[] sorted, double value) {
+            int lo = 0;
+            int hi = sorted.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sorted[mid] < value) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    public OptimizerRules(List<OptimizerRule> rules) {
+        this.rules = List.copyOf(rules);
+        Map<Metric, List<Integer>> files = new EnumMap<>(Metric.class);
+        Map<Metric, List<Integer>> types = new EnumMap<>(Metric.class);
+        for (int i = 0; i < this.rules.size(); i++) {
+            Metric metric = this.rules.get(i).getMetric();
+            if (metric.getScope() == Scope.FILE) files.computeIfAbsent(metric, m -> new ArrayList<>()).add(i);
+            else if (metric.getScope() == Scope.TYPE) types.computeIfAbsent(metric, m -> new ArrayList<>()).add(i);
+        }
+        this.fileColumns = columns(files);
+        this.typeColumns = columns(types);
+    }
+
+    private List<Column> columns(Map<Metric, List<Integer>> byMetric) {
+        List<Column> columns = new ArrayList<>();
+        byMetric.forEach((metric, ids) -> columns.add(new Column(metric, rules, ids)));
+        return List.copyOf(columns);
+    }
+
+    /** The built-in rules. */
+    public static OptimizerRules defaults() {
+        return new OptimizerRules(builtInRules());
+    }
+
+    /**
+     * These rules overlaid with {@code optimizer.<rule>.metric}, {@code .above} or
+     * {@code .below} (the threshold), {@code .severity}, {@code .message}, {@code .format}
+     * (String.format pattern, default {@value #DEFAULT_FORMAT}) and {@code .enabled}. Other
+     * keys are ignored. A rule keeps its place and takes the properties given for it; new rules
+     * go after the existing ones, ordered by id.
+     *
+     * @throws IllegalArgumentException for a new rule without metric, threshold or message, or
+     *                                  an unknown metric, severity, bad number or bad format
+     */
+    public OptimizerRules overlay(Map<String, String> props) {
+        Map<String, OptimizerRule> merged = new LinkedHashMap<>();
+        for (OptimizerRule rule : rules) merged.put(rule.getId(), rule);
+        SortedSet<String> ids = new TreeSet<>();
+        for (String key : props.keySet()) {
+            if (!key.startsWith(PREFIX)) continue;
+            int dot = key.lastIndexOf('.');
+            if (dot > PREFIX.length()) ids.add(key.substring(PREFIX.length(), dot));
+        }
+        if (ids.isEmpty()) return this;
+        for (String id : ids) {
+            String p = PREFIX + id + ".";
+            if (!Boolean.parseBoolean(props.getOrDefault(p + "enabled", "true").trim())) {
+                merged.remove(id);
+                continue;
+            }
+            OptimizerRule base = merged.get(id);
+            String metric = props.get(p + "metric");
+            String above = props.get(p + "above");
+            String below = props.get(p + "below");
+            String severity = props.get(p + "severity");
+            String message = props.get(p + "message");
+            String format = props.get(p + "format");
+            if (above != null && below != null) {
+                throw new IllegalArgumentException("Optimizer rule " + id + " has both above and below");
+            }
+            Metric m = metric != null ? Metric.of(metric.trim()) : base != null ? base.getMetric() : null;
+            if (m == null || message == null && base == null) {
+                throw new IllegalArgumentException("Optimizer rule " + id + " needs a metric and a message");
+            }
+            boolean report = m.getScope() == Scope.REPORT;
+            if (!report && above == null && below == null && (base == null || metric != null)) {
+                throw new IllegalArgumentException("Optimizer rule " + id + " needs an above or below threshold");
+            }
+            // a bad format fails here rather than on the first suggestion
+            if (format != null) String.format(format, 0.0);
+            merged.put(id, new OptimizerRule(id, m,
+                    above != null || below == null && base != null && base.isAbove(),
+                    above != null ? Double.parseDouble(above.trim())
+                            : below != null ? Double.parseDouble(below.trim()) : base != null ? base.getThreshold() : 0,
+                    severity != null ? Severity.valueOf(severity.trim().toUpperCase(Locale.ROOT))
+                            : base != null ? base.getSeverity() : Severity.MEDIUM,
+                    message != null ? message : base.getMessage(),
+                    format != null ? format : base != null ? base.getFormat() : DEFAULT_FORMAT));
+        }
+        return new OptimizerRules(new ArrayList<>(merged.values()));
+    }
+
+    private static List<OptimizerRule> builtInRules() {
+        return List.of(
+                new OptimizerRule("high-priority", Metric.SEVERITY, true, 1000, Severity.HIGH,
+                        "[HIGH PRIORITY] Refactor file: {file} (Severity={value})", "%.1f"),
+                new OptimizerRule("largest-files", Metric.LARGEST_FILES, true, 0, Severity.MEDIUM,
+                        "[LARGE FILE] Review: {file} ({value} lines)", "%.0f"),
+                new OptimizerRule("doc-gap", Metric.TYPE_COMMENT_RATIO, false, 50, Severity.LOW,
+                        "[DOC GAP] Low documentation in .{type} files ({value}% comments)", "%.1f"),
+                new OptimizerRule("cohesion", Metric.TYPE_FUNCTIONS_PER_CLASS, true, 10, Severity.MEDIUM,
+                        "[COHESION] High functions per class in .{type} ({value})", "%.1f"),
+                new OptimizerRule("nesting", Metric.NESTING, true, 5, Severity.MEDIUM,
+                        "[NESTING] Deep nesting in file {file} ({value})", "%.0f"),
+                // the analyzer's optimization flags: largest files over large.file.threshold
+                new OptimizerRule("technical-debt", Metric.LARGE_FILES, true, 0, Severity.MEDIUM,
+                        "File {file} exceeds {threshold} lines", "%.0f"),
+                new OptimizerRule("structure", Metric.REPO_MAX_DEPTH, true, 10, Severity.LOW,
+                        "[STRUCTURE] Repository directory depth is {value}; consider flattening modules", "%.0f"),
+                new OptimizerRule("modularize", Metric.REPO_FILES, true, 500, Severity.LOW,
+                        "[MODULARIZE] High file count ({value}); consider splitting into submodules", "%.0f"),
+                new OptimizerRule("large-codebase", Metric.REPO_LINES, true, 20000, Severity.MEDIUM,
+                        "[REFACTOR] Large codebase ({value} lines); review large classes/functions", "%.0f"),
+                new OptimizerRule("dominant-type", Metric.DOMINANT_TYPE, true, 0, Severity.INFO,
+                        "[INFO] Dominant file type: {type}", "%.0f"),
+                new OptimizerRule("halstead", Metric.HALSTEAD_VOLUME, true, 5000, Severity.MEDIUM,
+                        "[HALSTEAD] High complexity in file {file} (Volume={value})", "%.0f"),
+                new OptimizerRule("empty-types", Metric.EMPTY_TYPES, true, 0, Severity.LOW,
+                        "[CLEANUP] Some file types have zero lines: {type}", "%.0f"));
+    }
+
+    public List<OptimizerRule> getRules() {
+        return rules;
+    }
+
+    List<Column> getFileColumns() {
+        return fileColumns;
+    }
+
+    List<Column> getTypeColumns() {
+        return typeColumns;
+    }
+}
@@ -0,0 +1,32 @@
+package com.stride.stride.optimizer;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One finding of an optimizer rule. {@code message} is the text the optimizer has always
+ * returned; the other fields are its parts.
+ */
+@Value
+public class Suggestion {
+
+    public enum Severity { INFO, LOW, MEDIUM, HIGH }
+
+    String ruleId;
+    Severity severity;
+    /** The file a file rule fired on, otherwise null. */
+    String file;
+    /** The extension a type rule fired on, otherwise null. */
+    String type;
+    /** The metric value that fired the rule; NaN when the rule has none. */
+    double value;
+    String message;
+
+    public static List<String> messages(List<Suggestion> suggestions) {
+        List<String> messages = new ArrayList<>(suggestions.size());
+        for (Suggestion suggestion : suggestions) messages.add(suggestion.message);
+        return messages;
+    }
+}
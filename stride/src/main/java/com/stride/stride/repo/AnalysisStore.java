@@ -0,0 +1,294 @@
+package com.stride.stride.repo;
+
+import com.stride.stride.analysis.Analyzer;
+import com.stride.stride.analysis.FileMetrics;
+import com.stride.stride.analysis.RepoMetrics;
+import com.stride.stride.model.DuplicateBlock;
+import com.stride.stride.optimizer.Suggestion;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Analysis results kept in the database (schema.sql), keyed by repository URL and commit.
+ *
+ * A run is written once, in one transaction, with JDBC batch inserts for the per-file rows;
+ * a 100k-file repository is a hundred round trips, not a hundred thousand. Reading a run back
+ * rebuilds the same {@link RepoMetrics} the analysis produced, so a stored result and a fresh
+ * one serialize alike. Paths are stored relative to the repository root, which lets a run be
+ * served for any clone of the same commit.
+ */
+@Repository
+public class AnalysisStore {
+
+    /** Analysis of a checked-out work tree. */
+    public static final String SOURCE_WORKTREE = "worktree";
+    /** Analysis of a commit read from the object database. */
+    public static final String SOURCE_TREE = "tree";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbc;
+
+    public AnalysisStore(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** A run read back from the store. */
+    @Getter
+    @AllArgsConstructor
+    public static class StoredRun {
+        private final long id;
+        private final Instant createdAt;
+        private final RepoMetrics metrics;
+        private final List<Suggestion> suggestions;
+    }
+
+    /**
+     * Latest run for this repository, commit and source written by the current analyzer version
+     * with the same settings.
+     *
+     * @param settings signature of the configuration the results depend on (secret rules, excludes)
+     * @param root     prepended to every stored path; the same prefix {@link #save} stripped
+     * @return null when there is none
+     */
+    @Transactional(readOnly = true)
+    public StoredRun find(String repoUrl, String commitId, String source, String settings, String root) {
+        List<Object[]> runs = jdbc.query(
+                "SELECT id, created_at, max_depth, large_file_threshold, commits_scanned,"
+                        + " skipped_binary, skipped_generated, excluded_paths FROM analysis_run"
+                        + " WHERE repo_url = ? AND commit_id = ? AND source = ? AND analyzer_version = ? AND settings = ?"
+                        + " ORDER BY id DESC FETCH FIRST 1 ROWS ONLY",
+                (rs, i) -> new Object[]{rs.getLong(1), rs.getTimestamp(2).toInstant(), rs.getInt(3), rs.getInt(4), rs.getInt(5),
+                        rs.getInt(6), rs.getInt(7), rs.getInt(8)},
+                repoUrl, commitId, source, Analyzer.VERSION, settings);
+        if (runs.isEmpty()) return null;
+        Object[] run = runs.get(0);
+        long runId = (Long) run[0];
+
+        List<FileMetrics> files = new ArrayList<>();
+        jdbc.query("SELECT path, extension, lines, comment_lines, complexity, functions, classes, max_nesting,"
+                        + " cognitive_complexity, todo_count, import_count, operators, operands"
+                        + " FROM analysis_file WHERE run_id = ? ORDER BY file_id",
+                rs -> {
+                    FileMetrics fm = new FileMetrics(root + rs.getString(1), rs.getString(2), 0);
+                    fm.setLines(rs.getInt(3));
+                    fm.setCommentLines(rs.getInt(4));
+                    fm.setComplexity(rs.getInt(5));
+                    fm.setFunctions(rs.getInt(6));
+                    fm.setClasses(rs.getInt(7));
+                    fm.setMaxNesting(rs.getInt(8));
+                    fm.setCognitiveComplexity(rs.getInt(9));
+                    fm.setTodoCount(rs.getInt(10));
+                    fm.setImportCount(rs.getInt(11));
+                    fm.setOperators(rs.getInt(12));
+                    fm.setOperands(rs.getInt(13));
+                    files.add(fm);
+                }, runId);
+
+        jdbc.query("SELECT file_id, line_no, snippet, rule FROM analysis_secret WHERE run_id = ? ORDER BY seq",
+                rs -> {
+                    files.get(rs.getInt(1)).getSecrets().add(
+                            new FileMetrics.SecretHit(rs.getInt(2), rs.getString(3), rs.getString(4)));
+                }, runId);
+
+        List<DuplicateBlock> duplicates = jdbc.query(
+                "SELECT file_a, a_start, a_end, file_b, b_start, b_end, fingerprints"
+                        + " FROM analysis_duplicate WHERE run_id = ? ORDER BY seq",
+                (rs, i) -> new DuplicateBlock(files.get(rs.getInt(1)).getPath(), rs.getInt(2), rs.getInt(3),
+                        files.get(rs.getInt(4)).getPath(), rs.getInt(5), rs.getInt(6), rs.getInt(7)),
+                runId);
+
+        Map<String, Integer> commits = new HashMap<>();
+        Map<String, Integer> linesAdded = new HashMap<>();
+        Map<String, Integer> linesRemoved = new HashMap<>();
+        jdbc.query("SELECT path, commits, lines_added, lines_removed FROM analysis_churn WHERE run_id = ?",
+                rs -> {
+                    putIfPresent(commits, rs.getString(1), (Integer) rs.getObject(2));
+                    putIfPresent(linesAdded, rs.getString(1), (Integer) rs.getObject(3));
+                    putIfPresent(linesRemoved, rs.getString(1), (Integer) rs.getObject(4));
+                }, runId);
+
+        List<Suggestion> suggestions = jdbc.query(
+                "SELECT rule_id, severity, file_path, file_type, val, suggestion FROM analysis_suggestion"
+                        + " WHERE run_id = ? ORDER BY seq",
+                (rs, i) -> new Suggestion(rs.getString(1), Suggestion.Severity.valueOf(rs.getString(2)),
+                        rs.getString(3) != null ? root + rs.getString(3) : null, rs.getString(4), rs.getDouble(5),
+                        rs.getString(6)),
+                runId);
+
+        RepoMetrics.Builder builder = RepoMetrics.builder(files.size());
+        for (FileMetrics fm : files) builder.add(fm);
+        RepoMetrics metrics = builder
+                .maxDepth((Integer) run[2])
+                .largeFileThreshold((Integer) run[3])
+                .duplicateBlocks(duplicates)
+                .churn(GitChurnCalculator.Churn.of((Integer) run[4], commits, linesAdded, linesRemoved))
+                .skipped((Integer) run[5], (Integer) run[6])
+                .excludedPaths((Integer) run[7])
+                .build();
+        return new StoredRun(runId, (Instant) run[1], metrics, suggestions);
+    }
+
+    /**
+     * Stores a successful analysis and the suggestions made for it.
+     *
+     * @param settings as for {@link #find}
+     * @param root     prefix stripped from every analyzed path (the repository directory plus a
+     *             separator for work trees, empty for commits whose paths are already relative)
+     * @return the id of the new run
+     */
+    @Transactional
+    public long save(String repoUrl, String commitId, String source, String settings, String root,
+                     RepoMetrics metrics, List<Suggestion> suggestions, long durationMs) {
+        KeyHolder key = new GeneratedKeyHolder();
+        jdbc.update(con -> {
+            PreparedStatement ps = con.prepareStatement("INSERT INTO analysis_run (repo_url, commit_id, source,"
+                    + " analyzer_version, settings, created_at, duration_ms, total_files, total_lines, cyclomatic_complexity,"
+                    + " max_depth, large_file_threshold, maintainability_index, commits_scanned,"
+                    + " skipped_binary, skipped_generated, excluded_paths)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", new String[]{"ID"});
+            ps.setString(1, repoUrl);
+            ps.setString(2, commitId);
+            ps.setString(3, source);
+            ps.setInt(4, Analyzer.VERSION);
+            ps.setString(5, settings);
+            ps.setTimestamp(6, Timestamp.from(Instant.now()));
+            ps.setLong(7, durationMs);
+            ps.setInt(8, metrics.getTotalFiles());
+            ps.setInt(9, metrics.getTotalLines());
+            ps.setInt(10, metrics.getCyclomaticComplexity());
+            ps.setInt(11, metrics.getMaxDepth());
+            ps.setInt(12, metrics.getLargeFileThreshold());
+            ps.setDouble(13, metrics.getMaintainabilityIndex());
+            ps.setInt(14, metrics.getChurn().getCommitsScanned());
+            ps.setInt(15, metrics.getSkippedBinary());
+            ps.setInt(16, metrics.getSkippedGenerated());
+            ps.setInt(17, metrics.getExcludedPaths());
+            return ps;
+        }, key);
+        long runId = key.getKey().longValue();
+
+        batch("INSERT INTO analysis_file (run_id, file_id, path, extension, lines, comment_lines, complexity,"
+                + " functions, classes, max_nesting, cognitive_complexity, todo_count, import_count, operators, operands)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", metrics.getFileCount(), (ps, f) -> {
+            ps.setLong(1, runId);
+            ps.setInt(2, f);
+            ps.setString(3, relative(metrics.getPath(f), root));
+            ps.setString(4, metrics.getExtension(f));
+            ps.setInt(5, metrics.getLines(f));
+            ps.setInt(6, metrics.getCommentLines(f));
+            ps.setInt(7, metrics.getComplexity(f));
+            ps.setInt(8, metrics.getFunctions(f));
+            ps.setInt(9, metrics.getClasses(f));
+            ps.setInt(10, metrics.getMaxNesting(f));
+            ps.setInt(11, metrics.getCognitiveComplexity(f));
+            ps.setInt(12, metrics.getTodoCount(f));
+            ps.setInt(13, metrics.getImportCount(f));
+            ps.setInt(14, metrics.getOperators(f));
+            ps.setInt(15, metrics.getOperands(f));
+        });
+
+        batch("INSERT INTO analysis_secret (run_id, seq, file_id, line_no, snippet, rule) VALUES (?, ?, ?, ?, ?, ?)",
+                metrics.getSecretCount(), (ps, i) -> {
+            FileMetrics.SecretHit hit = metrics.getSecretHit(i);
+            ps.setLong(1, runId);
+            ps.setInt(2, i);
+            ps.setInt(3, metrics.getSecretFile(i));
+            ps.setInt(4, hit.getLine());
+            ps.setString(5, hit.getText());
+            ps.setString(6, hit.getRule());
+        });
+
+        // Blocks always name analyzed files, so they are stored by file id
+        List<DuplicateBlock> duplicates = metrics.getDuplicateBlocks();
+        batch("INSERT INTO analysis_duplicate (run_id, seq, file_a, a_start, a_end, file_b, b_start, b_end, fingerprints)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", duplicates.size(), (ps, i) -> {
+            DuplicateBlock block = duplicates.get(i);
+            ps.setLong(1, runId);
+            ps.setInt(2, i);
+            ps.setInt(3, metrics.fileId(block.getFileA()));
+            ps.setInt(4, block.getFileAStartLine());
+            ps.setInt(5, block.getFileAEndLine());
+            ps.setInt(6, metrics.fileId(block.getFileB()));
+            ps.setInt(7, block.getFileBStartLine());
+            ps.setInt(8, block.getFileBEndLine());
+            ps.setInt(9, block.getFingerprints());
+        });
+
+        GitChurnCalculator.Churn churn = metrics.getChurn();
+        List<String> churnPaths = new ArrayList<>(churn.getCommits().keySet());
+        for (String path : churn.getLinesAdded().keySet()) if (!churn.getCommits().containsKey(path)) churnPaths.add(path);
+        for (String path : churn.getLinesRemoved().keySet()) {
+            if (!churn.getCommits().containsKey(path) && !churn.getLinesAdded().containsKey(path)) churnPaths.add(path);
+        }
+        batch("INSERT INTO analysis_churn (run_id, path, commits, lines_added, lines_removed) VALUES (?, ?, ?, ?, ?)",
+                churnPaths.size(), (ps, i) -> {
+            String path = churnPaths.get(i);
+            ps.setLong(1, runId);
+            ps.setString(2, path);
+            ps.setObject(3, churn.getCommits().get(path));
+            ps.setObject(4, churn.getLinesAdded().get(path));
+            ps.setObject(5, churn.getLinesRemoved().get(path));
+        });
+
+        batch("INSERT INTO analysis_suggestion (run_id, seq, suggestion, rule_id, severity, file_path, file_type, val)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)", suggestions.size(), (ps, i) -> {
+            Suggestion suggestion = suggestions.get(i);
+            ps.setLong(1, runId);
+            ps.setInt(2, i);
+            ps.setString(3, suggestion.getMessage());
+            ps.setString(4, suggestion.getRuleId());
+            ps.setString(5, suggestion.getSeverity().name());
+            ps.setString(6, suggestion.getFile() != null ? relative(suggestion.getFile(), root) : null);
+            ps.setString(7, suggestion.getType());
+            ps.setDouble(8, suggestion.getValue());
+        });
+        return runId;
+    }
+
+    private interface RowSetter {
+        void set(PreparedStatement ps, int row) throws SQLException;
+    }
+
+    // Rows 0..count-1 in JDBC batches of BATCH_SIZE
+    private void batch(String sql, int count, RowSetter setter) {
+        for (int from = 0; from < count; from += BATCH_SIZE) {
+            int offset = from;
+            int size = Math.min(BATCH_SIZE, count - from);
+            jdbc.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    setter.set(ps, offset + i);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+
+    private static String relative(String path, String root) {
+        return path.startsWith(root) ? path.substring(root.length()) : path;
+    }
+
+    private static void putIfPresent(Map<String, Integer> map, String path, Integer value) {
+        if (value != null) map.put(path, value);
+    }
+}
@@ -0,0 +1,27 @@
+package com.stride.stride.repo;
+
+import lombok.Data;
+
+/**
+ * How {@link RepoConnector#clone} fetches a repository. The defaults give a full clone with a
+ * working tree, the same as {@link RepoConnector#cloneRepository}.
+ */
+@Data
+public class CloneOptions {
+
+    /** History depth in commits; 0 fetches full history. */
+    private int depth;
+
+    /**
+     * Partial clone: blobs larger than this many bytes are not fetched (0 fetches no blobs, -1
+     * disables the filter). Needs a bare clone, since a checkout would need the missing blobs;
+     * tree analysis counts a missing blob as an empty file.
+     */
+    private long blobLimit = -1;
+
+    /** Clone without a working tree (for analysis from the object database). */
+    private boolean bare;
+
+    /** Go through the local mirror of the URL, when mirrors are configured. */
+    private boolean useMirror = true;
+}
@@ -0,0 +1,17 @@
+package com.stride.stride.repo;
+
+import lombok.Data;
+
+/**
+ * What a clone cost. bytesReceived is the pack data the fetch wrote, which is the size of the
+ * transfer; when a mirror is used it counts only the fetch from the remote into the mirror.
+ */
+@Data
+public class CloneResult {
+    private String path;
+    private String headCommit;
+    private long durationMs;
+    private long bytesReceived;
+    private String mirrorPath;
+    private boolean mirrorReused;
+}
@@ -0,0 +1,57 @@
+package com.stride.stride.repo;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Picks the commits of a history trend from the first-parent line of a start commit (the
+ * mainline as merged, without the inside of merged branches). Only commit headers are parsed.
+ */
+public class CommitSampler {
+
+    /**
+     * @param samples      at most this many commits; 0 for no limit (only with an interval)
+     * @param intervalDays when above 0, the newest commit at least this many days older than the
+     *                     previous pick; otherwise {@code samples} commits evenly spaced over the
+     *                     whole first-parent history
+     * @return the picked commits, oldest first; the start commit is always the last one
+     */
+    public List<RevCommit> sample(Repository repository, ObjectId start, int samples, int intervalDays) throws IOException {
+        List<RevCommit> history = new ArrayList<>();
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.setFirstParent(true);
+            walk.setRetainBody(false);
+            walk.markStart(walk.parseCommit(start));
+            for (RevCommit commit : walk) history.add(commit);
+        }
+        // newest first from here on
+
+        List<RevCommit> picked = new ArrayList<>();
+        if (intervalDays > 0) {
+            long interval = intervalDays * 86_400L;
+            long next = Long.MAX_VALUE;
+            for (RevCommit commit : history) {
+                if (commit.getCommitTime() > next) continue;
+                picked.add(commit);
+                if (samples > 0 && picked.size() == samples) break;
+                next = commit.getCommitTime() - interval;
+            }
+        } else if (samples >= history.size()) {
+            picked.addAll(history);
+        } else if (samples == 1) {
+            picked.add(history.get(0));
+        } else if (samples > 1) {
+            double step = (history.size() - 1) / (double) (samples - 1);
+            for (int k = 0; k < samples; k++) picked.add(history.get((int) Math.round(k * step)));
+        }
+        Collections.reverse(picked);
+        return picked;
+    }
+}
@@ -0,0 +1,116 @@
+package com.stride.stride.repo;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads what changed in a local clone between two commits, using JGit in-process.
+ * Paths are repo-relative with '/' separators.
+ */
+public class GitChangeDetector {
+
+    /**
+     * @return the commit HEAD points to, or null if the directory is not a git work tree or has no commits
+     */
+    public ObjectId resolveHead(File repoDir) throws Exception {
+        if (!new File(repoDir, ".git").exists()) return null;
+        try (Git git = Git.open(repoDir)) {
+            return git.getRepository().resolve(Constants.HEAD);
+        }
+    }
+
+    /**
+     * Paths whose blob differs between two commits, mapped to the blob id in {@code to}
+     * (null when the path was deleted). Identical subtrees are skipped without being read.
+     */
+    public Map<String, ObjectId> changedPaths(File repoDir, ObjectId from, ObjectId to) throws Exception {
+        Map<String, ObjectId> changed = new HashMap<>();
+        try (Git git = Git.open(repoDir);
+             RevWalk revWalk = new RevWalk(git.getRepository());
+             TreeWalk treeWalk = new TreeWalk(git.getRepository())) {
+            treeWalk.addTree(revWalk.parseCommit(from).getTree());
+            treeWalk.addTree(revWalk.parseCommit(to).getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            while (treeWalk.next()) {
+                boolean deleted = treeWalk.getFileMode(1) == FileMode.MISSING;
+                changed.put(treeWalk.getPathString(), deleted ? null : treeWalk.getObjectId(1));
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Every file in a commit mapped to its blob id; tree objects only, no blob is read.
+     */
+    public Map<String, ObjectId> trackedBlobs(File repoDir, ObjectId commit) throws Exception {
+        Map<String, ObjectId> blobs = new HashMap<>();
+        try (Git git = Git.open(repoDir);
+             RevWalk revWalk = new RevWalk(git.getRepository());
+             TreeWalk treeWalk = new TreeWalk(git.getRepository())) {
+            treeWalk.addTree(revWalk.parseCommit(commit).getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                blobs.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+            }
+        }
+        return blobs;
+    }
+
+    /**
+     * True when the work tree and index match HEAD and there are no untracked files,
+     * so an analysis of the directory is an analysis of the HEAD commit.
+     */
+    public boolean isClean(File repoDir) throws Exception {
+        try (Git git = Git.open(repoDir)) {
+            return git.status().call().isClean();
+        }
+    }
+
+    /**
+     * Number of files in the index: the size of a checkout, without reading any file.
+     */
+    public int trackedFileCount(File repoDir) throws Exception {
+        try (Git git = Git.open(repoDir)) {
+            return git.getRepository().readDirCache().getEntryCount();
+        }
+    }
+
+    /**
+     * @return the fetch URL of the origin remote, or null if there is none
+     */
+    public String originUrl(File repoDir) throws Exception {
+        try (Git git = Git.open(repoDir)) {
+            return git.getRepository().getConfig().getString("remote", "origin", "url");
+        }
+    }
+
+    /**
+     * Tracked paths whose working-tree or index content differs from HEAD.
+     */
+    public Set<String> uncommittedPaths(File repoDir) throws Exception {
+        try (Git git = Git.open(repoDir)) {
+            Status status = git.status().call();
+            Set<String> paths = new HashSet<>();
+            paths.addAll(status.getAdded());
+            paths.addAll(status.getChanged());
+            paths.addAll(status.getModified());
+            paths.addAll(status.getRemoved());
+            paths.addAll(status.getMissing());
+            paths.addAll(status.getConflicting());
+            return paths;
+        }
+    }
+}
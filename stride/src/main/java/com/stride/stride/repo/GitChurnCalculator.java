@@ -0,0 +1,138 @@
+package com.stride.stride.repo;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-file change history computed in-process with a JGit RevWalk.
+ *
+ * Commits are streamed newest first and each one is diffed against its parent (merges are
+ * skipped, as in plain {@code git log}), so memory depends on the number of files, not on the
+ * length of the history. Results are cached by repository, start commit and window; a new
+ * commit gives a new key, so repeat runs on an unchanged HEAD cost nothing. A time window starts
+ * at UTC midnight, so its cached result holds for the rest of the day and is recomputed after.
+ */
+public class GitChurnCalculator {
+
+    /** Changes per repo-relative path. */
+    public static class Churn {
+        public static final Churn EMPTY = new Churn();
+
+        private final Map<String, Integer> commits = new HashMap<>();
+        private final Map<String, Integer> linesAdded = new HashMap<>();
+        private final Map<String, Integer> linesRemoved = new HashMap<>();
+        private int commitsScanned;
+
+        /** Rebuilds a result saved elsewhere (for example a stored analysis run). */
+        public static Churn of(int commitsScanned, Map<String, Integer> commits,
+                               Map<String, Integer> linesAdded, Map<String, Integer> linesRemoved) {
+            Churn churn = new Churn();
+            churn.commitsScanned = commitsScanned;
+            churn.commits.putAll(commits);
+            churn.linesAdded.putAll(linesAdded);
+            churn.linesRemoved.putAll(linesRemoved);
+            return churn;
+        }
+
+        // Cached and shared between runs, so handed out read-only
+        public Map<String, Integer> getCommits() {
+            return Collections.unmodifiableMap(commits);
+        }
+
+        public Map<String, Integer> getLinesAdded() {
+            return Collections.unmodifiableMap(linesAdded);
+        }
+
+        public Map<String, Integer> getLinesRemoved() {
+            return Collections.unmodifiableMap(linesRemoved);
+        }
+
+        public int getCommitsScanned() {
+            return commitsScanned;
+        }
+    }
+
+    private static final long DAY_MS = 86_400_000L;
+
+    private final Map<String, Churn> cache;
+    private final Clock clock;
+
+    public GitChurnCalculator(int maxCached) {
+        this(maxCached, Clock.systemUTC());
+    }
+
+    GitChurnCalculator(int maxCached, Clock clock) {
+        this.clock = clock;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Churn> eldest) {
+                return size() > maxCached;
+            }
+        });
+    }
+
+    /**
+     * @param start      newest commit to include (usually HEAD)
+     * @param sinceDays  only commits from the last this many days, counted from UTC midnight of
+     *                   the earliest one; 0 for no time limit
+     * @param maxCommits stop after this many non-merge commits; 0 for no limit
+     */
+    public Churn compute(Repository repository, ObjectId start, int sinceDays, int maxCommits) throws IOException {
+        // the cutoff moves once a day rather than with every call, so it can be part of the key
+        long cutoff = sinceDays > 0 ? Math.floorDiv(clock.millis() - sinceDays * DAY_MS, DAY_MS) * DAY_MS : 0;
+        String key = repository.getDirectory().getAbsolutePath() + '@' + start.name() + '/' + cutoff + '/' + maxCommits;
+        Churn cached = cache.get(key);
+        if (cached != null) return cached;
+
+        Churn churn = new Churn();
+        try (RevWalk walk = new RevWalk(repository);
+             DiffFormatter diff = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            diff.setRepository(repository);
+            diff.setDiffComparator(RawTextComparator.DEFAULT);
+            diff.setDetectRenames(true);
+            walk.setRetainBody(false);
+            if (sinceDays > 0) {
+                walk.setRevFilter(CommitTimeRevFilter.after(cutoff));
+            }
+            walk.markStart(walk.parseCommit(start));
+
+            for (RevCommit commit : walk) {
+                if (commit.getParentCount() > 1) continue;
+                if (maxCommits > 0 && churn.commitsScanned >= maxCommits) break;
+                churn.commitsScanned++;
+                ObjectId parentTree = commit.getParentCount() == 1
+                        ? walk.parseCommit(commit.getParent(0)).getTree()
+                        : null;
+                for (DiffEntry entry : diff.scan(parentTree, commit.getTree())) {
+                    String path = entry.getChangeType() == DiffEntry.ChangeType.DELETE ? entry.getOldPath() : entry.getNewPath();
+                    churn.commits.merge(path, 1, Integer::sum);
+                    int added = 0;
+                    int removed = 0;
+                    for (Edit edit : diff.toFileHeader(entry).toEditList()) {
+                        added += edit.getLengthB();
+                        removed += edit.getLengthA();
+                    }
+                    if (added > 0) churn.linesAdded.merge(path, added, Integer::sum);
+                    if (removed > 0) churn.linesRemoved.merge(path, removed, Integer::sum);
+                }
+            }
+        }
+        cache.put(key, churn);
+        return churn;
+    }
+}
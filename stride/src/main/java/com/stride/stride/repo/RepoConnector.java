@@ -1,11 +1,55 @@
 package com.stride.stride.repo;
 
+import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.TransportCommand;
+import org.eclipse.jgit.errors.PackProtocolException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.FilterSpec;
+import org.eclipse.jgit.util.FS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 public class RepoConnector {
 
+    private static final Logger log = LoggerFactory.getLogger(RepoConnector.class);
+
+    private static final String REMOTE_HEAD = Constants.R_REMOTES + "origin/" + Constants.HEAD;
+
+    // Bare mirrors, one per remote URL; null disables mirroring
+    private final File mirrorRoot;
+    private final Map<String, Object> mirrorLocks = new ConcurrentHashMap<>();
+
+    public RepoConnector() {
+        this(null);
+    }
+
+    /**
+     * @param mirrorRoot directory holding a bare mirror per remote URL, or null to always clone from the remote
+     */
+    public RepoConnector(File mirrorRoot) {
+        this.mirrorRoot = mirrorRoot;
+    }
+
     /**
      * Clone a repository from GitHub into a local directory.
      * @param repoUrl URL of the GitHub repository
@@ -13,14 +57,208 @@ public class RepoConnector {
      * @throws Exception if cloning fails
      */
     public void cloneRepository(String repoUrl, String localPath) throws Exception {
-        System.out.println("Cloning from " + repoUrl + " to " + localPath);
+        clone(repoUrl, localPath, new CloneOptions());
+    }
+
+    /**
+     * Clone with the given depth, blob filter and checkout options. With mirrors configured the
+     * URL is first fetched into its mirror (only new objects on repeat requests) and the clone is
+     * made from the mirror; origin still points at the URL. Mirrors always keep full history and
+     * all blobs, so depth and filter then apply to the clone from the mirror.
+     * @param repoUrl URL of the repository
+     * @param localPath Path to clone the repository into
+     * @throws Exception if cloning fails
+     */
+    public CloneResult clone(String repoUrl, String localPath, CloneOptions options) throws Exception {
+        if (options.getBlobLimit() >= 0 && !options.isBare()) {
+            throw new IllegalArgumentException("A blob-filtered clone must be bare");
+        }
+        long start = System.nanoTime();
+        CloneResult result = new CloneResult();
+        result.setPath(localPath);
 
-        try (Git result = Git.cloneRepository()
-                .setURI(repoUrl)
+        String source = repoUrl;
+        if (mirrorRoot != null && options.isUseMirror()) {
+            File mirror = new File(mirrorRoot, mirrorName(repoUrl));
+            synchronized (mirrorLocks.computeIfAbsent(mirror.getAbsolutePath(), k -> new Object())) {
+                long before = packBytes(mirror);
+                result.setMirrorReused(updateMirror(repoUrl, mirror));
+                result.setBytesReceived(packBytes(mirror) - before);
+            }
+            result.setMirrorPath(mirror.getPath());
+            source = mirror.toURI().toString();
+        }
+
+        log.info("Cloning from {} to {}", source, localPath);
+        CloneCommand clone = Git.cloneRepository()
+                .setURI(source)
                 .setDirectory(new File(localPath))
-                .call()) {
+                .setBare(options.isBare());
+        if (options.getDepth() > 0) clone.setDepth(options.getDepth());
+        try (Git git = withFilter(clone, options).call()) {
+            Repository repository = git.getRepository();
+            if (!source.equals(repoUrl)) {
+                StoredConfig config = repository.getConfig();
+                config.setString("remote", "origin", "url", repoUrl);
+                config.save();
+            } else {
+                result.setBytesReceived(packBytes(repository.getDirectory()));
+            }
+            ObjectId head = repository.resolve(Constants.HEAD);
+            if (head != null) result.setHeadCommit(head.name());
+            log.debug("Repository cloned: {}", repository.getDirectory());
+        }
+        result.setDurationMs((System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * @return true if an existing mirror was updated, false if it was created
+     */
+    private boolean updateMirror(String repoUrl, File mirror) throws Exception {
+        if (RepositoryCache.FileKey.isGitRepository(mirror, FS.DETECTED)) {
+            log.info("Updating mirror {} from {}", mirror, repoUrl);
+            try (Git git = Git.open(mirror)) {
+                String origin = git.getRepository().getConfig().getString("remote", "origin", "url");
+                if (!repoUrl.equals(origin)) {
+                    throw new IllegalStateException("Mirror " + mirror + " is of " + origin + ", not of " + repoUrl);
+                }
+                git.fetch().setRemote("origin").setRemoveDeletedRefs(true).call();
+            }
+            return true;
+        }
+        log.info("Creating mirror {} from {}", mirror, repoUrl);
+        try (Git git = Git.cloneRepository().setURI(repoUrl).setDirectory(mirror).setMirror(true).call()) {
+            // clones from the mirror may ask for a blob filter
+            StoredConfig config = git.getRepository().getConfig();
+            config.setBoolean("uploadpack", null, "allowfilter", true);
+            config.save();
+        }
+        return false;
+    }
 
-            System.out.println("Repository cloned: " + result.getRepository().getDirectory());
+    private static <C extends TransportCommand<C, ?>> C withFilter(C command, CloneOptions options) throws PackProtocolException {
+        long limit = options.getBlobLimit();
+        if (limit < 0) return command;
+        FilterSpec filter = FilterSpec.fromFilterLine("blob:limit=" + limit);
+        return command.setTransportConfigCallback(t -> t.setFilterSpec(filter));
+    }
+
+    // Readable part of the URL plus a digest of all of it, so URLs that sanitize alike get separate mirrors
+    static String mirrorName(String repoUrl) {
+        String name = repoUrl.replaceAll("^[a-zA-Z]+://", "").replaceAll("[^A-Za-z0-9._-]", "_");
+        if (name.length() > 80) name = name.substring(0, 80);
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(repoUrl.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return name + "_" + HexFormat.of().formatHex(digest, 0, 8) + ".git";
+    }
+
+    // Pack and loose object bytes under a git directory; indexes are built locally and not counted
+    private static long packBytes(File gitDir) throws IOException {
+        Path objects = gitDir.toPath().resolve("objects");
+        if (!Files.isDirectory(objects)) return 0;
+        try (Stream<Path> files = Files.walk(objects)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(p -> !p.getFileName().toString().matches(".*\\.(idx|bitmap|rev|keep)"))
+                    .filter(p -> !p.startsWith(objects.resolve("info")))
+                    .mapToLong(p -> p.toFile().length())
+                    .sum();
+        }
+    }
+
+    /**
+     * Open a repository for object-database analysis without writing a working tree.
+     * An existing repository at localPath (bare or not) is reused and, when a URL is given,
+     * brought up to date with a fetch from origin, which must point at that URL; otherwise the
+     * URL is cloned bare. Use {@link #resolveCommit} to read revisions from the result.
+     * @param repoUrl URL to clone or fetch from, or null to use the local repository as is
+     * @param localPath Path of the bare clone (or of an existing repository)
+     * @return the opened repository; the caller closes it
+     * @throws IllegalArgumentException if the existing repository is a clone of another URL
+     * @throws Exception if opening, cloning or fetching fails
+     */
+    public Repository openBare(String repoUrl, String localPath) throws Exception {
+        File dir = new File(localPath);
+        boolean exists = RepositoryCache.FileKey.isGitRepository(dir, FS.DETECTED)
+                || new File(dir, ".git").isDirectory();
+        boolean remote = repoUrl != null && !repoUrl.isBlank();
+
+        if (exists) {
+            Repository repository = openRepository(RepositoryCache.FileKey.lenient(dir, FS.DETECTED).getFile());
+            if (!remote) return repository;
+            // Git over a repository it did not open leaves the repository to the caller
+            try (Git git = new Git(repository)) {
+                String origin = repository.getConfig().getString("remote", "origin", "url");
+                if (!sameRemote(origin, repoUrl)) {
+                    throw new IllegalArgumentException(localPath + " is a clone of " + origin + ", not of " + repoUrl);
+                }
+                log.info("Fetching {} into {}", repoUrl, localPath);
+                FetchResult fetched = git.fetch().setRemote("origin").call();
+                if (!repository.isBare()) linkRemoteHead(repository, fetched);
+                return repository;
+            } catch (Exception e) {
+                repository.close();
+                throw e;
+            }
+        }
+        if (!remote) throw new IllegalArgumentException("No repository at " + localPath + " and no URL to clone");
+
+        CloneOptions options = new CloneOptions();
+        options.setBare(true);
+        clone(repoUrl, localPath, options);
+        return openRepository(dir);
+    }
+
+    private static Repository openRepository(File gitDir) throws IOException {
+        return new FileRepositoryBuilder().setGitDir(gitDir).setMustExist(true).build();
+    }
+
+    /**
+     * Resolve a revision of a repository returned by {@link #openBare} to a commit. After a fetch
+     * into a clone with a working tree, the local branch has not moved, so HEAD then means the
+     * remote's default branch, refs/remotes/origin/HEAD. A bare clone fetches straight into its
+     * branches, and without a URL the repository is used as is, so HEAD is read as it stands.
+     * @param repoUrl the URL given to openBare, or null
+     * @return the commit, or null if the revision does not resolve
+     */
+    public static ObjectId resolveCommit(Repository repository, String rev, String repoUrl) throws IOException {
+        if (Constants.HEAD.equals(rev) && repoUrl != null && !repoUrl.isBlank() && !repository.isBare()) {
+            ObjectId remoteHead = repository.resolve(REMOTE_HEAD + "^{commit}");
+            if (remoteHead != null) return remoteHead;
         }
+        return repository.resolve(rev + "^{commit}");
+    }
+
+    // Point refs/remotes/origin/HEAD at the remote's default branch, as git remote set-head --auto does
+    private static void linkRemoteHead(Repository repository, FetchResult fetched) throws IOException {
+        Ref head = fetched.getAdvertisedRef(Constants.HEAD);
+        if (head == null || head.getObjectId() == null) return;
+        String branch = head.isSymbolic() ? head.getTarget().getName() : null;
+        if (branch == null) {
+            // no symref advertised: the branch at the same commit, the checked-out one if it is
+            String current = Constants.R_HEADS + repository.getBranch();
+            for (Ref ref : fetched.getAdvertisedRefs()) {
+                if (!ref.getName().startsWith(Constants.R_HEADS) || !head.getObjectId().equals(ref.getObjectId())) continue;
+                if (branch == null || ref.getName().equals(current)) branch = ref.getName();
+            }
+        }
+        if (branch == null || !branch.startsWith(Constants.R_HEADS)) return;
+        String target = Constants.R_REMOTES + "origin/" + branch.substring(Constants.R_HEADS.length());
+        if (repository.exactRef(target) != null) repository.updateRef(REMOTE_HEAD).link(target);
+    }
+
+    // Equal up to a trailing slash or .git suffix
+    private static boolean sameRemote(String a, String b) {
+        return a != null && b != null && trimRemote(a).equals(trimRemote(b));
+    }
+
+    private static String trimRemote(String url) {
+        String u = url.trim();
+        while (u.endsWith("/")) u = u.substring(0, u.length() - 1);
+        return u.endsWith(".git") ? u.substring(0, u.length() - 4) : u;
     }
 }
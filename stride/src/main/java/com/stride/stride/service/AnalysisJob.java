@@ -0,0 +1,143 @@
+package com.stride.stride.service;
+
+import com.stride.stride.analysis.AnalysisProgress;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * One submitted analysis: its live progress, final state and result.
+ * State changes are synchronized on the job; progress counters are read lock-free.
+ *
+ * A queued job is cancelled at once. A running one is CANCELLING until its worker returns, so
+ * it still counts as unfinished: a second job for the same path is not started beside it.
+ */
+class AnalysisJob {
+
+    enum State { QUEUED, RUNNING, CANCELLING, SUCCEEDED, FAILED, CANCELLED }
+
+    private final String id;
+    private final String path;
+    private final boolean optimize;
+    private final AnalysisProgress progress = new AnalysisProgress();
+    private final Instant submittedAt = Instant.now();
+
+    private State state = State.QUEUED;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private Map<String, Object> result;
+    private String error;
+    private Future<?> future;
+
+    AnalysisJob(String id, String path, boolean optimize) {
+        this.id = id;
+        this.path = path;
+        this.optimize = optimize;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    boolean isOptimize() {
+        return optimize;
+    }
+
+    AnalysisProgress getProgress() {
+        return progress;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    synchronized Map<String, Object> getResult() {
+        return result;
+    }
+
+    synchronized boolean isDone() {
+        return state != State.QUEUED && state != State.RUNNING && state != State.CANCELLING;
+    }
+
+    synchronized Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    synchronized void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /** @return false when the job was cancelled while queued and must not run */
+    synchronized boolean start() {
+        if (state != State.QUEUED) return false;
+        state = State.RUNNING;
+        startedAt = Instant.now();
+        return true;
+    }
+
+    // Outcomes of the worker; a job cancelled meanwhile ends CANCELLED whatever the outcome
+    synchronized void succeed(Map<String, Object> result) {
+        if (isDone()) return;
+        if (state == State.CANCELLING) {
+            finish(State.CANCELLED);
+            return;
+        }
+        this.result = result;
+        finish(State.SUCCEEDED);
+    }
+
+    synchronized void fail(String error) {
+        if (isDone()) return;
+        if (state == State.CANCELLING) {
+            finish(State.CANCELLED);
+            return;
+        }
+        this.error = error;
+        finish(State.FAILED);
+    }
+
+    /** The worker stopped on a cancellation. */
+    synchronized void stopped() {
+        if (!isDone()) finish(State.CANCELLED);
+    }
+
+    /**
+     * @return the queued task to drop from the executor, or null if the job had already started
+     */
+    synchronized Future<?> cancel() {
+        if (isDone()) return null;
+        progress.cancel();
+        if (state != State.QUEUED) {
+            state = State.CANCELLING;
+            return null;
+        }
+        finish(State.CANCELLED);
+        return future;
+    }
+
+    private void finish(State terminal) {
+        state = terminal;
+        finishedAt = Instant.now();
+    }
+
+    synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("jobId", id);
+        status.put("path", path);
+        status.put("optimize", optimize);
+        status.put("state", state.name());
+        status.put("filesScanned", progress.getFilesScanned());
+        status.put("filesTotal", progress.getFilesDiscovered());
+        status.put("submittedAt", submittedAt.toString());
+        if (startedAt != null) status.put("startedAt", startedAt.toString());
+        if (finishedAt != null) status.put("finishedAt", finishedAt.toString());
+        if (error != null) status.put("error", error);
+        return status;
+    }
+}
@@ -0,0 +1,174 @@
+package com.stride.stride.service;
+
+import com.stride.stride.analysis.AnalysisProgress;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs analyses in the background so request threads return immediately.
+ *
+ * Jobs execute on a fixed pool of workers behind a bounded queue; once the queue is full new
+ * submissions are rejected rather than piling up. A second submission for a path that already
+ * has a queued or running job of the same kind returns that job. Finished jobs are kept for the
+ * retention period so their results can be fetched, then dropped by a pruner that runs every minute.
+ */
+@Service
+public class AnalysisJobService {
+
+    private static final long PRUNE_INTERVAL_SECONDS = 60;
+
+    private final StrideService strideService;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService pruner;
+    private final Duration retention;
+    private final Map<String, AnalysisJob> jobs = new ConcurrentHashMap<>();
+    private final Counter rejected;
+
+    public AnalysisJobService(StrideService strideService,
+                              @Value("${stride.jobs.workers:2}") int workers,
+                              @Value("${stride.jobs.queue-limit:16}") int queueLimit,
+                              @Value("${stride.jobs.retention-minutes:60}") long retentionMinutes,
+                              MeterRegistry meterRegistry) {
+        this.strideService = strideService;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueLimit, 1)),
+                r -> {
+                    Thread t = new Thread(r, "stride-job-" + threads.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.pruner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stride-job-prune");
+            t.setDaemon(true);
+            return t;
+        });
+        pruner.scheduleWithFixedDelay(this::pruneFinished, PRUNE_INTERVAL_SECONDS, PRUNE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        Gauge.builder("stride.jobs.queued", executor, e -> e.getQueue().size())
+                .description("Jobs waiting for a worker").register(meterRegistry);
+        Gauge.builder("stride.jobs.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Jobs running").register(meterRegistry);
+        this.rejected = Counter.builder("stride.jobs.rejected")
+                .description("Submissions refused because the queue was full").register(meterRegistry);
+    }
+
+    /**
+     * @throws RejectedExecutionException when the queue is full
+     */
+    public Map<String, Object> submit(String path, boolean optimize) {
+        pruneFinished();
+        String key = new File(path).getAbsoluteFile().toPath().normalize().toString();
+        synchronized (jobs) {
+            for (AnalysisJob job : jobs.values()) {
+                if (!job.isDone() && job.isOptimize() == optimize && job.getPath().equals(key)) {
+                    return job.status();
+                }
+            }
+            AnalysisJob job = new AnalysisJob(UUID.randomUUID().toString(), key, optimize);
+            try {
+                job.setFuture(executor.submit(() -> run(job)));
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                throw e;
+            }
+            jobs.put(job.getId(), job);
+            return job.status();
+        }
+    }
+
+    /**
+     * Run an analysis on the job workers without keeping it as a job, for callers that hold the
+     * client connection themselves. It is queued or refused right away, like {@link #submit}, so
+     * a caller can still answer with an error before it starts responding.
+     *
+     * @param progress called on the worker before the analysis starts
+     * @throws RejectedExecutionException when the queue is full
+     */
+    public Future<Map<String, Object>> submitAttached(String path, Callable<AnalysisProgress> progress) {
+        try {
+            return executor.submit(() -> strideService.analyzeRepo(path, progress.call()));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    private void run(AnalysisJob job) {
+        if (!job.start()) return;
+        try {
+            Map<String, Object> result = job.isOptimize()
+                    ? strideService.analyzeAndOptimize(job.getPath(), job.getProgress())
+                    : strideService.analyzeRepo(job.getPath(), job.getProgress());
+            job.succeed(result);
+        } catch (CancellationException e) {
+            job.stopped();
+        } catch (Exception e) {
+            job.fail(e.toString());
+        }
+    }
+
+    /**
+     * @return the job status, or null for an unknown or expired id
+     */
+    public Map<String, Object> status(String id) {
+        AnalysisJob job = jobs.get(id);
+        return job != null ? job.status() : null;
+    }
+
+    /**
+     * @return the analysis result, or null unless the job has succeeded
+     */
+    public Map<String, Object> result(String id) {
+        AnalysisJob job = jobs.get(id);
+        return job != null ? job.getResult() : null;
+    }
+
+    /**
+     * Cancel a queued or running job; finished jobs are left as they are. A running job is
+     * CANCELLING until its analysis notices and stops.
+     *
+     * @return the job status after cancelling, or null for an unknown id
+     */
+    public Map<String, Object> cancel(String id) {
+        AnalysisJob job = jobs.get(id);
+        if (job == null) return null;
+        Future<?> queued = job.cancel();
+        if (queued instanceof Runnable task) executor.remove(task);
+        return job.status();
+    }
+
+    public Map<String, Object> executorStats() {
+        return Map.of(
+                "workers", executor.getMaximumPoolSize(),
+                "active", executor.getActiveCount(),
+                "queued", executor.getQueue().size(),
+                "queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity(),
+                "jobsRetained", jobs.size());
+    }
+
+    void pruneFinished() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isDone() && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pruner.shutdownNow();
+        jobs.values().forEach(AnalysisJob::cancel);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,291 @@
+package com.stride.stride.service;
+
+import com.stride.stride.model.BatchRequest;
+import com.stride.stride.repo.CloneOptions;
+import com.stride.stride.repo.GitChangeDetector;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clones and analyzes many repositories per request, as a two-stage pipeline.
+ *
+ * Cloning (network bound) and analysis (CPU bound) run on separate pools, so the next
+ * repositories are fetched while earlier ones are analyzed. A repository leaves the clone
+ * stage with its tracked file count, and the analysis queue is ordered by a virtual deadline:
+ * the time it was queued plus one millisecond per file. Small repositories therefore go ahead
+ * of a large one queued shortly before them, but a large one is never passed indefinitely, and
+ * one repository occupies at most one analysis worker. An optional per-repository time budget
+ * cancels an analysis that overruns.
+ *
+ * At most stride.batch.max-in-flight repositories are between the start of their clone and the
+ * end of their analysis; this also bounds the disk used by clones. Pools are shared by all
+ * batches. Clones are only ever written under stride.batch.work-dir, and finished batches are
+ * dropped from memory after the retention period.
+ *
+ * With spring.threads.virtual.enabled on Java 21, every clone gets its own virtual thread and
+ * only max-in-flight bounds how many run at once; stride.batch.clone-workers is then unused.
+ * Analysis workers stay platform threads.
+ */
+@Service
+public class BatchAnalysisService {
+
+    private static final long PRUNE_INTERVAL_SECONDS = 60;
+
+    private final StrideService strideService;
+    private final GitChangeDetector changeDetector = new GitChangeDetector();
+    private final ThreadPoolExecutor clonePool;
+    private final ThreadPoolExecutor analyzePool;
+    // Per-repository time budgets and the pruning of finished batches
+    private final ScheduledExecutorService scheduler;
+    private final Semaphore inFlight;
+    private final File workRoot;
+    private final Duration retention;
+    private final Map<String, BatchRun> batches = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Timer queueWait;
+
+    public BatchAnalysisService(StrideService strideService,
+                                @Value("${stride.batch.clone-workers:4}") int cloneWorkers,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                @Value("${stride.batch.analyze-workers:2}") int analyzeWorkers,
+                                @Value("${stride.batch.max-in-flight:8}") int maxInFlight,
+                                @Value("${stride.batch.work-dir:}") String workDir,
+                                @Value("${stride.jobs.retention-minutes:60}") long retentionMinutes,
+                                MeterRegistry meterRegistry) {
+        this.strideService = strideService;
+        // Clones block on the network, so on virtual threads they need no pool of their own
+        this.clonePool = virtualThreads && VirtualThreads.isSupported()
+                ? VirtualThreads.perTaskExecutor("stride-batch-clone-")
+                : new ThreadPoolExecutor(cloneWorkers, cloneWorkers, 0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(), threads("stride-batch-clone-"));
+        // Only AnalyzeTasks are executed here, so the queue orders them by deadline
+        this.analyzePool = new ThreadPoolExecutor(analyzeWorkers, analyzeWorkers, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), threads("stride-batch-analyze-"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threads("stride-batch-timer-"));
+        this.inFlight = new Semaphore(Math.max(maxInFlight, 1));
+        this.workRoot = (workDir.isBlank()
+                ? new File(System.getProperty("java.io.tmpdir"), "stride-batch")
+                : new File(workDir)).getAbsoluteFile();
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        scheduler.scheduleWithFixedDelay(this::pruneFinished, PRUNE_INTERVAL_SECONDS, PRUNE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        int permits = Math.max(maxInFlight, 1);
+        Gauge.builder("stride.batch.repos.in.flight", inFlight, s -> permits - s.availablePermits())
+                .description("Batch repositories between clone start and analysis end").register(meterRegistry);
+        Gauge.builder("stride.batch.analysis.queued", analyzePool, p -> p.getQueue().size())
+                .description("Cloned batch repositories waiting for an analysis worker").register(meterRegistry);
+        this.queueWait = Timer.builder("stride.batch.queue.wait")
+                .description("Time a cloned batch repository waits for an analysis worker").register(meterRegistry);
+    }
+
+    /**
+     * @throws IllegalArgumentException when no URL is given, or the work directory is outside stride.batch.work-dir
+     */
+    public Map<String, Object> submit(BatchRequest request) {
+        List<String> urls = request.getUrls().stream().filter(u -> u != null && !u.isBlank()).map(String::trim).toList();
+        if (urls.isEmpty()) throw new IllegalArgumentException("No repository URLs given");
+        File base = workDir(request.getWorkDir());
+        String id = UUID.randomUUID().toString();
+        BatchRun batch = new BatchRun(id, new File(base, id).getAbsoluteFile(), urls, request.isOptimize(),
+                request.isKeepClones(), Math.max(request.getDepth(), 0), Math.max(request.getRepoTimeoutSeconds(), 0));
+        batches.put(id, batch);
+        for (BatchRun.Entry entry : batch.getEntries()) {
+            clonePool.execute(() -> cloneStage(batch, entry));
+        }
+        return batch.status();
+    }
+
+    /**
+     * @return the consolidated report so far, or null for an unknown or expired id
+     */
+    public Map<String, Object> status(String id) {
+        BatchRun batch = batches.get(id);
+        return batch != null ? batch.status() : null;
+    }
+
+    /**
+     * Cancel every repository of the batch that has not finished; running analyses stop at
+     * their next file.
+     *
+     * @return the report after cancelling, or null for an unknown id
+     */
+    public Map<String, Object> cancel(String id) {
+        BatchRun batch = batches.get(id);
+        if (batch == null) return null;
+        batch.cancel();
+        return batch.status();
+    }
+
+    private void cloneStage(BatchRun batch, BatchRun.Entry entry) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entry.cancel();
+            entryFinished(batch, entry, false);
+            return;
+        }
+        boolean handedOff = false;
+        try {
+            if (!entry.startClone()) return;
+            CloneOptions options = new CloneOptions();
+            options.setDepth(batch.getDepth());
+            Map<String, Object> clone = strideService.cloneRepo(entry.getUrl(), entry.getPath(), options);
+            if (clone.containsKey("error")) {
+                entry.fail("Clone failed: " + clone.get("error"));
+                return;
+            }
+            int files;
+            try {
+                files = changeDetector.trackedFileCount(new File(entry.getPath()));
+            } catch (Exception e) {
+                files = 0;
+            }
+            if (!entry.cloned(files)) return;
+            analyzePool.execute(new AnalyzeTask(batch, entry, files, sequence.incrementAndGet()));
+            handedOff = true;
+        } catch (RejectedExecutionException e) {
+            entry.cancel();
+        } catch (Exception e) {
+            entry.fail(e.toString());
+        } finally {
+            if (!handedOff) entryFinished(batch, entry, true);
+        }
+    }
+
+    private final class AnalyzeTask implements Runnable, Comparable<AnalyzeTask> {
+        private final BatchRun batch;
+        private final BatchRun.Entry entry;
+        private final long deadline;
+        private final long seq;
+
+        AnalyzeTask(BatchRun batch, BatchRun.Entry entry, int files, long seq) {
+            this.batch = batch;
+            this.entry = entry;
+            this.deadline = System.currentTimeMillis() + files;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(AnalyzeTask other) {
+            int byDeadline = Long.compare(deadline, other.deadline);
+            return byDeadline != 0 ? byDeadline : Long.compare(seq, other.seq);
+        }
+
+        @Override
+        public void run() {
+            try {
+                long waited = entry.startAnalysis();
+                if (waited < 0) return;
+                queueWait.record(waited, TimeUnit.NANOSECONDS);
+                ScheduledFuture<?> budget = batch.getRepoTimeoutSeconds() > 0
+                        ? scheduler.schedule(entry::timeOut, batch.getRepoTimeoutSeconds(), TimeUnit.SECONDS)
+                        : null;
+                try {
+                    Map<String, Object> result = batch.isOptimize()
+                            ? strideService.analyzeAndOptimize(entry.getPath(), entry.getProgress())
+                            : strideService.analyzeRepo(entry.getPath(), entry.getProgress());
+                    if (result.containsKey("error")) entry.fail(String.valueOf(result.get("error")));
+                    else entry.succeed(summary(result));
+                } catch (CancellationException e) {
+                    entry.cancel(); // no-op when the budget ran out first
+                } catch (Exception e) {
+                    entry.fail(e.toString());
+                } finally {
+                    if (budget != null) budget.cancel(false);
+                }
+            } finally {
+                entryFinished(batch, entry, true);
+            }
+        }
+    }
+
+    // The report keeps headline numbers only; full results of hundreds of repos would not fit
+    private static Map<String, Object> summary(Map<String, Object> result) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (String key : List.of("headCommit", "totalFiles", "totalLines", "cyclomaticComplexity",
+                "maintainabilityIndex", "avgHalsteadVolume", "storedRunId")) {
+            if (result.containsKey(key)) summary.put(key, result.get(key));
+        }
+        if (result.get("duplicateBlocks") instanceof List<?> blocks) summary.put("duplicateBlocks", blocks.size());
+        if (result.get("secretsFound") instanceof List<?> secrets) summary.put("secretsFound", secrets.size());
+        if (result.get("crossRepoDuplicates") instanceof List<?> copied) summary.put("crossRepoDuplicates", copied.size());
+        if (result.containsKey("optimizerSuggestions")) summary.put("optimizerSuggestions", result.get("optimizerSuggestions"));
+        return summary;
+    }
+
+    private void entryFinished(BatchRun batch, BatchRun.Entry entry, boolean holdsPermit) {
+        if (holdsPermit) inFlight.release();
+        if (!batch.isKeepClones()) {
+            strideService.forgetDirectory(entry.getPath());
+            FileSystemUtils.deleteRecursively(new File(entry.getPath()));
+        }
+        if (batch.entryFinished() && !batch.isKeepClones()) {
+            File[] left = batch.getDir().listFiles();
+            if (left != null && left.length == 0) batch.getDir().delete();
+        }
+    }
+
+    // The requested directory, relative to the work root or absolute, must lie inside it
+    private File workDir(String requested) {
+        if (requested == null || requested.isBlank()) return workRoot;
+        File dir = new File(requested);
+        if (!dir.isAbsolute()) dir = new File(workRoot, requested);
+        try {
+            File canonical = dir.getCanonicalFile();
+            if (canonical.toPath().startsWith(workRoot.getCanonicalFile().toPath())) return canonical;
+        } catch (IOException e) {
+            // unresolvable paths are refused like those outside the root
+        }
+        throw new IllegalArgumentException("workDir must be a directory under " + workRoot);
+    }
+
+    void pruneFinished() {
+        Instant cutoff = Instant.now().minus(retention);
+        batches.values().removeIf(batch -> batch.isDone() && batch.getFinishedAt().isBefore(cutoff));
+    }
+
+    private static ThreadFactory threads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batches.values().forEach(BatchRun::cancel);
+        clonePool.shutdownNow();
+        analyzePool.shutdownNow();
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,251 @@
+package com.stride.stride.service;
+
+import com.stride.stride.analysis.AnalysisProgress;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One submitted batch: an entry per repository, each moving from clone through the wait for
+ * an analysis worker to analysis. Entry state changes are synchronized on the entry.
+ */
+class BatchRun {
+
+    enum State { QUEUED, CLONING, WAITING, ANALYZING, SUCCEEDED, FAILED, TIMED_OUT, CANCELLED }
+
+    private final String id;
+    private final File dir;
+    private final boolean optimize;
+    private final boolean keepClones;
+    private final int depth;
+    private final long repoTimeoutSeconds;
+    private final List<Entry> entries;
+    private final AtomicInteger remaining;
+    private final Instant submittedAt = Instant.now();
+    private volatile Instant finishedAt;
+
+    BatchRun(String id, File dir, List<String> urls, boolean optimize, boolean keepClones, int depth,
+             long repoTimeoutSeconds) {
+        this.id = id;
+        this.dir = dir;
+        this.optimize = optimize;
+        this.keepClones = keepClones;
+        this.depth = depth;
+        this.repoTimeoutSeconds = repoTimeoutSeconds;
+        List<Entry> list = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            list.add(new Entry(i, urls.get(i), new File(dir, i + "-" + directoryName(urls.get(i))).getPath()));
+        }
+        this.entries = Collections.unmodifiableList(list);
+        this.remaining = new AtomicInteger(list.size());
+    }
+
+    String getId() {
+        return id;
+    }
+
+    File getDir() {
+        return dir;
+    }
+
+    boolean isOptimize() {
+        return optimize;
+    }
+
+    boolean isKeepClones() {
+        return keepClones;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    long getRepoTimeoutSeconds() {
+        return repoTimeoutSeconds;
+    }
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    boolean isDone() {
+        return finishedAt != null;
+    }
+
+    Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /** Called once per entry when it is finished with; @return true for the last one. */
+    boolean entryFinished() {
+        if (remaining.decrementAndGet() > 0) return false;
+        finishedAt = Instant.now();
+        return true;
+    }
+
+    void cancel() {
+        entries.forEach(Entry::cancel);
+    }
+
+    Map<String, Object> status() {
+        Map<State, Integer> counts = new EnumMap<>(State.class);
+        List<Map<String, Object>> repos = new ArrayList<>();
+        for (Entry entry : entries) {
+            Map<String, Object> status = entry.status();
+            counts.merge((State) status.get("state"), 1, Integer::sum);
+            repos.add(status);
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("batchId", id);
+        status.put("state", isDone() ? "DONE" : "RUNNING");
+        status.put("optimize", optimize);
+        status.put("repoCount", entries.size());
+        status.put("counts", counts);
+        status.put("submittedAt", submittedAt.toString());
+        if (finishedAt != null) {
+            status.put("finishedAt", finishedAt.toString());
+            status.put("durationMs", finishedAt.toEpochMilli() - submittedAt.toEpochMilli());
+        }
+        status.put("repos", repos);
+        return status;
+    }
+
+    // Last path segment of the URL without .git, made safe for a directory name
+    private static String directoryName(String url) {
+        String name = url.replaceAll("[/\\\\]+$", "");
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        if (name.endsWith(".git")) name = name.substring(0, name.length() - 4);
+        name = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.isEmpty() || name.startsWith(".") ? "repo" : name;
+    }
+
+    /** One repository of the batch. */
+    static final class Entry {
+        private final int index;
+        private final String url;
+        private final String path;
+        private final AnalysisProgress progress = new AnalysisProgress();
+
+        private State state = State.QUEUED;
+        private int trackedFiles = -1;
+        private long cloneMs;
+        private long waitMs;
+        private long analyzeMs;
+        private long stageStart;
+        private String error;
+        private Map<String, Object> summary;
+
+        Entry(int index, String url, String path) {
+            this.index = index;
+            this.url = url;
+            this.path = path;
+        }
+
+        String getUrl() {
+            return url;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        AnalysisProgress getProgress() {
+            return progress;
+        }
+
+        synchronized int getTrackedFiles() {
+            return trackedFiles;
+        }
+
+        synchronized boolean isDone() {
+            return state.ordinal() >= State.SUCCEEDED.ordinal();
+        }
+
+        /** @return false when the entry was cancelled and must not clone */
+        synchronized boolean startClone() {
+            if (state != State.QUEUED) return false;
+            state = State.CLONING;
+            stageStart = System.nanoTime();
+            return true;
+        }
+
+        /** @return false when the entry was cancelled while cloning and must not be analyzed */
+        synchronized boolean cloned(int trackedFiles) {
+            if (state != State.CLONING) return false;
+            long now = System.nanoTime();
+            cloneMs = (now - stageStart) / 1_000_000;
+            stageStart = now;
+            this.trackedFiles = trackedFiles;
+            state = State.WAITING;
+            return true;
+        }
+
+        /** @return nanoseconds spent waiting for a worker, or -1 when the entry must not be analyzed */
+        synchronized long startAnalysis() {
+            if (state != State.WAITING) return -1;
+            long now = System.nanoTime();
+            long waited = now - stageStart;
+            waitMs = waited / 1_000_000;
+            stageStart = now;
+            state = State.ANALYZING;
+            return waited;
+        }
+
+        synchronized void succeed(Map<String, Object> summary) {
+            if (isDone()) return;
+            this.summary = summary;
+            finish(State.SUCCEEDED);
+        }
+
+        synchronized void fail(String error) {
+            if (isDone()) return;
+            this.error = error;
+            finish(State.FAILED);
+        }
+
+        /** Over its time budget: stops a running analysis, which then throws CancellationException. */
+        synchronized void timeOut() {
+            if (state != State.ANALYZING) return;
+            progress.cancel();
+            error = "Analysis exceeded its time budget";
+            finish(State.TIMED_OUT);
+        }
+
+        synchronized void cancel() {
+            if (isDone()) return;
+            progress.cancel();
+            finish(State.CANCELLED);
+        }
+
+        private void finish(State terminal) {
+            if (state == State.ANALYZING) analyzeMs = (System.nanoTime() - stageStart) / 1_000_000;
+            state = terminal;
+        }
+
+        synchronized Map<String, Object> status() {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("index", index);
+            status.put("url", url);
+            status.put("path", path);
+            status.put("state", state);
+            if (trackedFiles >= 0) status.put("trackedFiles", trackedFiles);
+            status.put("cloneMs", cloneMs);
+            status.put("waitMs", waitMs);
+            status.put("analyzeMs", analyzeMs);
+            if (state == State.ANALYZING) {
+                status.put("filesScanned", progress.getFilesScanned());
+                status.put("filesTotal", progress.getFilesDiscovered());
+            }
+            if (summary != null) status.putAll(summary);
+            if (error != null) status.put("error", error);
+            return status;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.stride.stride.service;
+
+import com.stride.stride.analysis.AnalyzerSettings;
+import com.stride.stride.analysis.FileMetrics;
+import com.stride.stride.analysis.FileMetricsStore;
+import com.stride.stride.repo.GitChangeDetector;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * One incremental analysis run over a git work tree.
+ *
+ * The previous run left a record (path, blob id, metrics) per file. Paths that changed between
+ * the previous and current HEAD, or that differ from HEAD in the working tree, are analyzed
+ * again; every other tracked file reuses its record. Untracked files have no blob id and are
+ * always analyzed. Aggregates are then recomputed from the full set of per-file results.
+ */
+class IncrementalAnalysis implements FileMetricsStore {
+
+    /** Per-repo state kept between runs. */
+    static class Snapshot {
+        final ObjectId head;
+        final String configStamp;
+        final Map<String, FileRecord> files;
+
+        Snapshot(ObjectId head, String configStamp, Map<String, FileRecord> files) {
+            this.head = head;
+            this.configStamp = configStamp;
+            this.files = files;
+        }
+    }
+
+    static class FileRecord {
+        final ObjectId blobId; // null when the file is untracked or dirty
+        final FileMetrics metrics;
+
+        FileRecord(ObjectId blobId, FileMetrics metrics) {
+            this.blobId = blobId;
+            this.metrics = metrics;
+        }
+    }
+
+    private final String rootPrefix;
+    private final ObjectId head;
+    private final String configStamp;
+    private final Map<String, FileRecord> previous;
+    private final Map<String, ObjectId> changed;
+    private final Set<String> uncommitted;
+    private final Map<String, ObjectId> tracked; // full listing: first run, or after uncommitted files
+
+    private final Map<String, FileRecord> next = new HashMap<>();
+    private int reused;
+
+    private IncrementalAnalysis(File repoDir, ObjectId head, String configStamp, Map<String, FileRecord> previous,
+                                Map<String, ObjectId> changed, Set<String> uncommitted, Map<String, ObjectId> tracked) {
+        this.rootPrefix = repoDir.getAbsolutePath() + File.separator;
+        this.head = head;
+        this.configStamp = configStamp;
+        this.previous = previous;
+        this.changed = changed;
+        this.uncommitted = uncommitted;
+        this.tracked = tracked;
+    }
+
+    /**
+     * @return a run for this repo, or null when it is not a git work tree (full analysis, nothing kept)
+     */
+    static IncrementalAnalysis start(File repoDir, Snapshot last, GitChangeDetector git) {
+        try {
+            ObjectId head = git.resolveHead(repoDir);
+            if (head == null) return null;
+            String configStamp = configStamp(repoDir);
+            Set<String> uncommitted = git.uncommittedPaths(repoDir);
+
+            if (last == null || !last.configStamp.equals(configStamp)) {
+                return fresh(repoDir, head, configStamp, uncommitted, git);
+            }
+            Map<String, ObjectId> changed;
+            try {
+                changed = last.head.equals(head)
+                        ? Collections.emptyMap()
+                        : git.changedPaths(repoDir, last.head, head);
+            } catch (MissingObjectException e) {
+                // the previous HEAD is gone (history rewritten, objects pruned): start over
+                return fresh(repoDir, head, configStamp, uncommitted, git);
+            }
+            // files left uncommitted or untracked last time have no blob id to carry over: list HEAD for them
+            boolean unknown = false;
+            for (Map.Entry<String, FileRecord> e : last.files.entrySet()) {
+                if (e.getValue().blobId == null && !uncommitted.contains(e.getKey())) {
+                    unknown = true;
+                    break;
+                }
+            }
+            return new IncrementalAnalysis(repoDir, head, configStamp, last.files, changed, uncommitted,
+                    unknown ? git.trackedBlobs(repoDir, head) : Collections.emptyMap());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Nothing to reuse; every file is analyzed and recorded with its blob id from the listing
+    private static IncrementalAnalysis fresh(File repoDir, ObjectId head, String configStamp, Set<String> uncommitted,
+                                             GitChangeDetector git) throws Exception {
+        return new IncrementalAnalysis(repoDir, head, configStamp, Collections.emptyMap(),
+                Collections.emptyMap(), uncommitted, git.trackedBlobs(repoDir, head));
+    }
+
+    @Override
+    public FileMetrics lookup(File file, int depth) {
+        String path = relativePath(file);
+        FileRecord record = previous.get(path);
+        if (record == null || record.blobId == null) return null;
+        if (changed.containsKey(path) || uncommitted.contains(path)) return null;
+        return record.metrics;
+    }
+
+    @Override
+    public void record(FileMetrics metrics) {
+        String path = relativePath(new File(metrics.getPath()));
+        ObjectId blobId;
+        if (uncommitted.contains(path)) {
+            blobId = null;
+        } else if (changed.containsKey(path)) {
+            blobId = changed.get(path);
+        } else {
+            FileRecord last = previous.get(path);
+            blobId = last != null && last.blobId != null ? last.blobId : tracked.get(path);
+            if (last != null && last.metrics == metrics) reused++;
+        }
+        next.put(path, new FileRecord(blobId, metrics));
+    }
+
+    int getReused() {
+        return reused;
+    }
+
+    int getAnalyzed() {
+        return next.size() - reused;
+    }
+
+    ObjectId getHead() {
+        return head;
+    }
+
+    /**
+     * After the walk: true when nothing tracked differs from HEAD and every walked file is
+     * committed, so the run is an analysis of the HEAD commit, as git status would report it clean.
+     */
+    boolean matchesHead() {
+        if (!uncommitted.isEmpty()) return false;
+        for (FileRecord record : next.values()) {
+            if (record.blobId == null) return false;
+        }
+        return true;
+    }
+
+    Snapshot snapshot() {
+        return new Snapshot(head, configStamp, next);
+    }
+
+    private String relativePath(File file) {
+        String abs = file.getAbsolutePath();
+        String rel = abs.startsWith(rootPrefix) ? abs.substring(rootPrefix.length()) : abs;
+        return File.separatorChar == '/' ? rel : rel.replace(File.separatorChar, '/');
+    }
+
+    // Analyzer settings come from this file; any change invalidates all records
+    private static String configStamp(File repoDir) {
+        File cfg = new File(repoDir, AnalyzerSettings.FILE_NAME);
+        return cfg.exists() ? cfg.lastModified() + ":" + cfg.length() : "";
+    }
+}
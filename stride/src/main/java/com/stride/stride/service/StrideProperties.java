@@ -0,0 +1,81 @@
+package com.stride.stride.service;
+
+import com.stride.stride.analysis.FileClassifier;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The stride.* settings of {@link StrideService}; application.properties documents each one.
+ * Defaults here apply when a property is not set at all.
+ */
+@Data
+@ConfigurationProperties("stride")
+public class StrideProperties {
+
+    private final Analyzer analyzer = new Analyzer();
+    private final Incremental incremental = new Incremental();
+    private final Cache cache = new Cache();
+    private final Clone clone = new Clone();
+    private final Store store = new Store();
+    private final Trend trend = new Trend();
+    private final Fingerprints fingerprints = new Fingerprints();
+    private final Secrets secrets = new Secrets();
+
+    @Data
+    public static class Analyzer {
+        /** Walk workers; 0 for all cores, 1 for sequential. */
+        private int parallelism;
+        /** Analyses running at once; 0 for one per core. */
+        private int maxConcurrent;
+        private List<String> exclude = new ArrayList<>(Arrays.asList(FileClassifier.DEFAULT_EXCLUDES.split(",")));
+        private boolean respectGitignore = true;
+    }
+
+    @Data
+    public static class Incremental {
+        private int maxRepos = 32;
+    }
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        private int maxEntries = 200_000;
+        private long maxMb = 256;
+        /** Empty keeps the cache in memory only. */
+        private String dir = "";
+    }
+
+    @Data
+    public static class Clone {
+        /** Empty turns mirrors off. */
+        private String mirrorDir = "";
+    }
+
+    @Data
+    public static class Store {
+        private boolean enabled = true;
+        private int queueLimit = 4;
+    }
+
+    @Data
+    public static class Trend {
+        private int maxSamples = 100;
+    }
+
+    @Data
+    public static class Fingerprints {
+        /** Empty turns the cross-repository index off. */
+        private String dir = "";
+        private long initialCapacity = 1 << 20;
+    }
+
+    @Data
+    public static class Secrets {
+        /** Empty uses the built-in rules only. */
+        private String rulesFile = "";
+    }
+}
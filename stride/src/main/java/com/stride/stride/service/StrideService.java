@@ -1,52 +1,575 @@
 package com.stride.stride.service;
 
+import com.stride.stride.repo.AnalysisStore;
+import com.stride.stride.repo.CloneOptions;
+import com.stride.stride.repo.CloneResult;
+import com.stride.stride.repo.CommitSampler;
+import com.stride.stride.repo.GitChangeDetector;
 import com.stride.stride.repo.RepoConnector;
+import com.stride.stride.analysis.AnalysisMetrics;
+import com.stride.stride.analysis.AnalysisProgress;
 import com.stride.stride.analysis.Analyzer;
+import com.stride.stride.analysis.ContentCache;
+import com.stride.stride.analysis.FileClassifier;
+import com.stride.stride.analysis.FingerprintIndex;
+import com.stride.stride.analysis.RepoMetrics;
+import com.stride.stride.analysis.SecretScanner;
+import com.stride.stride.analysis.SnapshotMemo;
+import com.stride.stride.model.CrossRepoDuplicate;
 //import com.stride.stride.model.AnalysisResult;
 import com.stride.stride.optimizer.OptimizerEngine;
+import com.stride.stride.optimizer.Suggestion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class StrideService {
 
+    private static final Logger log = LoggerFactory.getLogger(StrideService.class);
+
     private final RepoConnector repoConnector;
     private final Analyzer analyzer;
     private final OptimizerEngine optimizer;
+    private final GitChangeDetector changeDetector;
+    private final CommitSampler commitSampler = new CommitSampler();
+    private final int maxTrendSamples;
+    private final ContentCache contentCache;
+    private final Path contentCacheFile;
+    private final AnalysisStore analysisStore;
+    // Stored runs are written by one background thread so responses never wait for the inserts
+    private final ThreadPoolExecutor storeWriter;
+    // Fingerprints of every fresh analysis, for reporting code first seen in another repository
+    private final FingerprintIndex fingerprintIndex;
+    // Analyses running at once; request threads may be virtual and unbounded, the cores are not
+    private final Semaphore analysisPermits;
+
+    private final MeterRegistry meterRegistry;
+    private final Timer optimizerTimer;
+    private final Timer trendTimer;
+    private final Counter cloneBytes;
+    private final Counter storeSkipped;
+    private final Timer permitWait;
+
+    // Last run per repo directory, for incremental re-analysis (least recently analyzed evicted first)
+    private final Map<String, IncrementalAnalysis.Snapshot> snapshots;
 
-    public StrideService() {
-        this.repoConnector = new RepoConnector();
-        this.analyzer = new Analyzer();
+    public StrideService(StrideProperties properties, AnalysisStore analysisStore, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.optimizerTimer = Timer.builder("stride.optimizer")
+                .description("Generating optimizer suggestions from metrics").register(meterRegistry);
+        this.trendTimer = Timer.builder("stride.trend")
+                .description("Analyzing the sampled commits of a history trend").register(meterRegistry);
+        this.maxTrendSamples = properties.getTrend().getMaxSamples();
+        this.cloneBytes = Counter.builder("stride.clone.bytes.received").baseUnit("bytes")
+                .description("Pack bytes fetched from remotes and mirrors").register(meterRegistry);
+        this.storeSkipped = Counter.builder("stride.persistence.skipped")
+                .description("Analysis runs not stored because the write queue was full").register(meterRegistry);
+        int maxConcurrent = properties.getAnalyzer().getMaxConcurrent();
+        int permits = maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        this.analysisPermits = new Semaphore(permits, true);
+        Gauge.builder("stride.analysis.active", analysisPermits, p -> permits - p.availablePermits())
+                .description("Analyses holding one of the analysis permits").register(meterRegistry);
+        this.permitWait = Timer.builder("stride.analysis.permit.wait")
+                .description("Time an analysis waits for an analysis permit").register(meterRegistry);
+        String mirrorDir = properties.getClone().getMirrorDir();
+        this.repoConnector = new RepoConnector(mirrorDir.isBlank() ? null : new File(mirrorDir));
+        StrideProperties.Cache cache = properties.getCache();
+        this.contentCache = cache.isEnabled() ? new ContentCache(cache.getMaxEntries(), cache.getMaxMb() * 1024 * 1024) : null;
+        this.contentCacheFile = cache.isEnabled() && !cache.getDir().isBlank() ? Paths.get(cache.getDir(), "content-cache.bin") : null;
+        if (contentCacheFile != null) {
+            persistenceTimer("cache.load").record(() -> contentCache.load(contentCacheFile));
+        }
+        this.analysisStore = properties.getStore().isEnabled() ? analysisStore : null;
+        StrideProperties.Fingerprints fingerprints = properties.getFingerprints();
+        this.fingerprintIndex = fingerprints.getDir().isBlank() ? null
+                : openFingerprintIndex(fingerprints.getDir(), fingerprints.getInitialCapacity());
+        this.storeWriter = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(properties.getStore().getQueueLimit(), 1)),
+                r -> {
+                    Thread t = new Thread(r, "stride-store");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        StrideProperties.Analyzer analysis = properties.getAnalyzer();
+        this.analyzer = new Analyzer(analysis.getParallelism(), contentCache, new AnalysisMetrics(meterRegistry),
+                secretScanner(properties.getSecrets().getRulesFile()),
+                new FileClassifier(analysis.getExclude(), analysis.isRespectGitignore()));
         this.optimizer = new OptimizerEngine();
+        this.changeDetector = new GitChangeDetector();
+        int maxIncrementalRepos = properties.getIncremental().getMaxRepos();
+        this.snapshots = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IncrementalAnalysis.Snapshot> eldest) {
+                return size() > maxIncrementalRepos;
+            }
+        });
     }
 
-    public String cloneRepo(String url, String localDir) {
+    public Map<String, Object> cloneRepo(String url, String localDir, CloneOptions options) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        String outcome = "error";
         try {
-            repoConnector.cloneRepository(url, localDir);
-            return "Repository cloned successfully!";
+            CloneResult result = repoConnector.clone(url, localDir, options);
+            outcome = "success";
+            cloneBytes.increment(result.getBytesReceived());
+            response.put("message", "Repository cloned successfully!");
+            response.put("path", result.getPath());
+            response.put("headCommit", result.getHeadCommit());
+            response.put("cloneTimeMs", result.getDurationMs());
+            response.put("bytesReceived", result.getBytesReceived());
+            if (result.getMirrorPath() != null) {
+                response.put("mirrorPath", result.getMirrorPath());
+                response.put("mirrorReused", result.isMirrorReused());
+            }
         } catch (Exception e) {
-            e.printStackTrace();
-            return "Error cloning repo: " + e.getMessage();
+            log.warn("Clone of {} into {} failed", url, localDir, e);
+            response.put("message", "Error cloning repo: " + e.getMessage());
+            response.put("error", e.getMessage());
+        } finally {
+            Timer.builder("stride.clone").tag("outcome", outcome).description("Cloning a repository")
+                    .register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
+        return response;
     }
 
     public Map<String, Object> analyzeRepo(String localDir) {
-        return analyzer.analyzeRepo(localDir);
+        return analyzeRepo(localDir, null);
+    }
+
+    /**
+     * @param progress optional live counters; cancelling them makes this throw CancellationException
+     */
+    public Map<String, Object> analyzeRepo(String localDir, AnalysisProgress progress) {
+        return analyzeMetrics(localDir, progress).metrics.toMap();
+    }
+
+    /** Drops what is kept between runs for a directory that is about to be deleted. */
+    void forgetDirectory(String localDir) {
+        snapshots.remove(new File(localDir).getAbsoluteFile().toPath().normalize().toString());
+    }
+
+    // Metrics plus the suggestions for them when those are already known (stored or just stored)
+    private static final class Analysis {
+        final RepoMetrics metrics;
+        final List<Suggestion> suggestions;
+
+        Analysis(RepoMetrics metrics, List<Suggestion> suggestions) {
+            this.metrics = metrics;
+            this.suggestions = suggestions;
+        }
+    }
+
+    private Analysis analyzeMetrics(String localDir, AnalysisProgress progress) {
+        File repoDir = new File(localDir).getAbsoluteFile();
+        String key = repoDir.toPath().normalize().toString();
+
+        String root = repoDir.getPath() + File.separator;
+        String repoUrl = repoDir.toURI().toString();
+        ObjectId head = null;
+        if (analysisStore != null || fingerprintIndex != null) {
+            try {
+                head = changeDetector.resolveHead(repoDir);
+                if (head != null) {
+                    String origin = changeDetector.originUrl(repoDir);
+                    if (origin != null) repoUrl = origin;
+                }
+            } catch (Exception e) {
+                log.warn("Could not read the git state of {}", repoDir, e);
+            }
+            // A clean checkout is its HEAD commit: serve a stored run of that commit if there is one.
+            // The work tree is only checked for changes when there is a run to serve.
+            if (head != null && analysisStore != null) {
+                Analysis stored = findStored(repoUrl, head, AnalysisStore.SOURCE_WORKTREE, root);
+                if (stored != null && isClean(repoDir)) return stored;
+            }
+        }
+
+        long start = System.nanoTime();
+        IncrementalAnalysis run = IncrementalAnalysis.start(repoDir, snapshots.get(key), changeDetector);
+        if (run == null) snapshots.remove(key);
+        RepoMetrics metrics;
+        acquireAnalysisPermit(progress);
+        try {
+            metrics = analyzer.analyze(localDir, run, progress);
+        } finally {
+            analysisPermits.release();
+        }
+        if (run == null) {
+            if (metrics.getError() == null) indexFingerprints(repoUrl, root, metrics);
+            return new Analysis(metrics, null);
+        }
+        if (metrics.getError() != null) {
+            snapshots.remove(key);
+            return new Analysis(metrics, null);
+        }
+        snapshots.put(key, run.snapshot());
+        metrics.setAttribute("headCommit", run.getHead().name());
+        metrics.setAttribute("filesReanalyzed", run.getAnalyzed());
+        metrics.setAttribute("filesReused", run.getReused());
+        indexFingerprints(repoUrl, root, metrics);
+        // stored only when what was walked is exactly the HEAD commit
+        if (analysisStore == null || !run.getHead().equals(head) || !run.matchesHead()) return new Analysis(metrics, null);
+        return new Analysis(metrics, store(repoUrl, head, AnalysisStore.SOURCE_WORKTREE, root, metrics, start));
+    }
+
+    private boolean isClean(File repoDir) {
+        try {
+            return changeDetector.isClean(repoDir);
+        } catch (Exception e) {
+            log.warn("Could not read the status of {}", repoDir, e);
+            return false;
+        }
+    }
+
+    /**
+     * Waits for one of the stride.analyzer.max-concurrent analysis permits. Cloning, history
+     * and store lookups happen outside them; only the walk and its summary hold one. Waiting is
+     * cheap on a virtual thread, and a cancelled analysis stops waiting.
+     *
+     * @throws CancellationException when progress is cancelled or the thread interrupted meanwhile
+     */
+    private void acquireAnalysisPermit(AnalysisProgress progress) {
+        long start = System.nanoTime();
+        try {
+            while (!analysisPermits.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                if (progress != null && progress.isCancelled()) throw new CancellationException("Analysis cancelled");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Analysis cancelled");
+        } finally {
+            permitWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Stored-run lookup; a store failure is logged and treated as a miss
+    private Analysis findStored(String repoUrl, ObjectId commit, String source, String root) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            AnalysisStore.StoredRun stored = analysisStore.find(repoUrl, commit.name(), source, storeSettings(), root);
+            if (stored == null) return null;
+            RepoMetrics metrics = stored.getMetrics();
+            metrics.setAttribute("headCommit", commit.name());
+            metrics.setAttribute("storedRunId", stored.getId());
+            metrics.setAttribute("storedAt", stored.getCreatedAt().toString());
+            return new Analysis(metrics, stored.getSuggestions());
+        } catch (DataAccessException e) {
+            log.warn("Stored run lookup for {} at {} failed", repoUrl, commit.name(), e);
+            return null;
+        } finally {
+            sample.stop(persistenceTimer("run.load"));
+        }
+    }
+
+    /**
+     * Reports the code of a fresh analysis first seen in other repositories (crossRepoDuplicates),
+     * then adds its fingerprints to the index. Stored runs are not matched: their fingerprints
+     * were added when they were analyzed. An index failure is logged and the analysis kept.
+     * The fingerprints are released either way, so retained results do not hold them.
+     */
+    private void indexFingerprints(String repoUrl, String root, RepoMetrics metrics) {
+        if (fingerprintIndex == null) {
+            metrics.releaseFingerprints();
+            return;
+        }
+        try {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            List<CrossRepoDuplicate> duplicates = fingerprintIndex.match(repoUrl, metrics);
+            sample.stop(fingerprintTimer("match"));
+            metrics.setAttribute("crossRepoDuplicates", duplicates);
+            sample = Timer.start(meterRegistry);
+            fingerprintIndex.add(repoUrl, metrics, root);
+            sample.stop(fingerprintTimer("add"));
+        } catch (IOException e) {
+            log.warn("Fingerprint index update for {} failed", repoUrl, e);
+        } finally {
+            metrics.releaseFingerprints();
+        }
+    }
+
+    // Stored runs are only served for the secret rules and excludes they were found with
+    private String storeSettings() {
+        return "secrets:" + analyzer.getSecretScanner().getSignature() + " files:" + analyzer.getClassifier().getSignature();
+    }
+
+    // A rules file that is set but unreadable or invalid stops startup rather than scanning with other rules
+    private static SecretScanner secretScanner(String rulesFile) {
+        if (rulesFile.isBlank()) return SecretScanner.defaults();
+        try {
+            return SecretScanner.load(Paths.get(rulesFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read secret rules " + rulesFile, e);
+        }
+    }
+
+    private static FingerprintIndex openFingerprintIndex(String dir, long capacity) {
+        try {
+            return new FingerprintIndex(Paths.get(dir), capacity);
+        } catch (IOException e) {
+            log.warn("Fingerprint index in {} could not be opened; cross-repository duplicates are off", dir, e);
+            return null;
+        }
+    }
+
+    /**
+     * Queues a fresh analysis and its suggestions for storing. The write happens in the
+     * background; when the queue is full the run is simply not stored, and a failed write is
+     * logged. Either way the next request for the commit analyzes it again.
+     *
+     * @return the suggestions, computed here once so callers need not compute them again
+     */
+    private List<Suggestion> store(String repoUrl, ObjectId commit, String source, String root,
+                               RepoMetrics metrics, long startNanos) {
+        List<Suggestion> suggestions = suggestions(metrics);
+        long durationMs = (System.nanoTime() - startNanos) / 1_000_000;
+        String commitId = commit.name();
+        String settings = storeSettings();
+        try {
+            storeWriter.execute(() -> {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                try {
+                    analysisStore.save(repoUrl, commitId, source, settings, root, metrics, suggestions, durationMs);
+                } catch (DataAccessException e) {
+                    log.warn("Storing the run of {} at {} failed", repoUrl, commitId, e);
+                } finally {
+                    sample.stop(persistenceTimer("run.save"));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            storeSkipped.increment();
+        }
+        return suggestions;
+    }
+
+    /**
+     * Analyze a branch, tag or commit from the object database of a bare clone; nothing is checked out.
+     *
+     * @param url  clone or fetch from here first; null reuses the repository at localDir as is
+     * @param ref  any revision git understands; blank means HEAD
+     */
+    public Map<String, Object> analyzeRef(String url, String localDir, String ref, AnalysisProgress progress) {
+        String rev = ref == null || ref.isBlank() ? Constants.HEAD : ref;
+        try (Repository repository = repoConnector.openBare(url, localDir)) {
+            ObjectId commit = RepoConnector.resolveCommit(repository, rev, url);
+            if (commit == null) return errorMap("Unknown ref: " + rev);
+
+            String repoUrl = url != null ? url : repository.getConfig().getString("remote", "origin", "url");
+            if (repoUrl == null) repoUrl = repository.getDirectory().toURI().toString();
+            if (analysisStore != null) {
+                Analysis stored = findStored(repoUrl, commit, AnalysisStore.SOURCE_TREE, "");
+                if (stored != null) {
+                    Map<String, Object> metrics = stored.metrics.toMap();
+                    metrics.put("ref", rev);
+                    return metrics;
+                }
+            }
+
+            long start = System.nanoTime();
+            RepoMetrics metrics;
+            acquireAnalysisPermit(progress);
+            try {
+                metrics = analyzer.analyzeCommit(repository, commit, progress);
+            } finally {
+                analysisPermits.release();
+            }
+            if (metrics.getError() == null) {
+                indexFingerprints(repoUrl, "", metrics);
+                if (analysisStore != null) store(repoUrl, commit, AnalysisStore.SOURCE_TREE, "", metrics, start);
+            }
+            Map<String, Object> response = metrics.toMap();
+            response.put("ref", rev);
+            response.put("headCommit", commit.name());
+            return response;
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("Analysis of {} at {} failed", localDir, rev, e);
+            return errorMap("Error reading repository: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Metrics over history: sampled commits of the first-parent line of {@code ref} are analyzed
+     * oldest first from the object database, each snapshot reading only the blobs that changed
+     * since the previous one. The result has one series per metric, aligned with the commits.
+     *
+     * @param samples      number of commits (at most stride.trend.max-samples)
+     * @param intervalDays when above 0, one commit per this many days instead of even spacing
+     */
+    public Map<String, Object> analyzeTrend(String url, String localDir, String ref, int samples, int intervalDays) {
+        String rev = ref == null || ref.isBlank() ? Constants.HEAD : ref;
+        if (samples > maxTrendSamples || (samples <= 0 && intervalDays <= 0)) {
+            return errorMap("samples must be between 1 and " + maxTrendSamples + " (or 0 with intervalDays)");
+        }
+        long start = System.nanoTime();
+        try (Repository repository = repoConnector.openBare(url, localDir)) {
+            ObjectId head = RepoConnector.resolveCommit(repository, rev, url);
+            if (head == null) return errorMap("Unknown ref: " + rev);
+            List<RevCommit> commits = commitSampler.sample(repository, head,
+                    samples > 0 ? samples : maxTrendSamples, intervalDays);
+
+            List<Map<String, Object>> points = new ArrayList<>();
+            Map<String, List<Number>> series = new LinkedHashMap<>();
+            for (String metric : List.of("totalFiles", "totalLines", "cyclomaticComplexity", "maintainabilityIndex",
+                    "avgHalsteadVolume", "overallCommentDensity", "duplicateBlocks", "secretsFound")) {
+                series.put(metric, new ArrayList<>());
+            }
+            SnapshotMemo memo = new SnapshotMemo();
+            int analyzed = 0;
+            int reused = 0;
+            for (RevCommit commit : commits) {
+                // a permit per snapshot, so a long trend does not hold one for its whole run
+                RepoMetrics metrics;
+                acquireAnalysisPermit(null);
+                try {
+                    metrics = analyzer.analyzeSnapshot(repository, commit, memo, null);
+                } finally {
+                    analysisPermits.release();
+                }
+                Map<String, Object> point = new LinkedHashMap<>();
+                point.put("commit", commit.name());
+                point.put("time", Instant.ofEpochSecond(commit.getCommitTime()).toString());
+                point.put("filesAnalyzed", memo.getAnalyzed());
+                point.put("filesReused", memo.getReused());
+                points.add(point);
+                analyzed += memo.getAnalyzed();
+                reused += memo.getReused();
+
+                series.get("totalFiles").add(metrics.getTotalFiles());
+                series.get("totalLines").add(metrics.getTotalLines());
+                series.get("cyclomaticComplexity").add(metrics.getCyclomaticComplexity());
+                series.get("maintainabilityIndex").add(metrics.getMaintainabilityIndex());
+                series.get("avgHalsteadVolume").add(metrics.getAvgHalsteadVolume());
+                series.get("overallCommentDensity").add(metrics.getOverallCommentDensity());
+                series.get("duplicateBlocks").add(metrics.getDuplicateBlocks().size());
+                series.get("secretsFound").add(metrics.getSecretCount());
+            }
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("ref", rev);
+            response.put("headCommit", head.name());
+            response.put("commits", points);
+            response.put("series", series);
+            response.put("filesAnalyzed", analyzed);
+            response.put("filesReused", reused);
+            response.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+            return response;
+        } catch (Exception e) {
+            log.warn("Trend of {} at {} failed", localDir, rev, e);
+            return errorMap("Error reading repository: " + e.getMessage());
+        } finally {
+            trendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Map<String, Object> errorMap(String message) {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("error", message);
+        return metrics;
+    }
+
+    public Map<String, Object> cacheStats() {
+        return contentCache != null ? contentCache.stats() : Map.of("enabled", false);
+    }
+
+    public Map<String, Object> fingerprintStats() {
+        return fingerprintIndex != null ? fingerprintIndex.stats() : Map.of("enabled", false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        storeWriter.shutdown();
+        try {
+            // let queued runs finish writing
+            storeWriter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        saveContentCache();
+        analyzer.close();
+        if (fingerprintIndex != null) {
+            try {
+                fingerprintIndex.close();
+            } catch (IOException e) {
+                log.warn("Closing the fingerprint index failed", e);
+            }
+        }
+    }
+
+    private void saveContentCache() {
+        if (contentCacheFile == null) return;
+        try {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            contentCache.save(contentCacheFile);
+            sample.stop(persistenceTimer("cache.save"));
+        } catch (IOException e) {
+            log.warn("Saving the content cache to {} failed", contentCacheFile, e);
+        }
     }
 
     public List<String> optimizeRepo(String localDir) {
-        Map<String, Object> metrics = analyzeRepo(localDir);
-        return optimizer.generateSuggestions(metrics);
+        Analysis analysis = analyzeMetrics(localDir, null);
+        return Suggestion.messages(analysis.suggestions != null ? analysis.suggestions : suggestions(analysis.metrics));
     }
 
     public Map<String, Object> analyzeAndOptimize(String path) {
-        Map<String, Object> metrics = analyzer.analyzeRepo(path);
-        List<String> suggestions = optimizer.generateSuggestions(metrics);
-        metrics.put("optimizerSuggestions", suggestions);
-        return metrics;
+        return analyzeAndOptimize(path, null);
+    }
+
+    public Map<String, Object> analyzeAndOptimize(String path, AnalysisProgress progress) {
+        Analysis analysis = analyzeMetrics(path, progress);
+        Map<String, Object> response = analysis.metrics.toMap();
+        List<Suggestion> suggestions = analysis.suggestions != null ? analysis.suggestions : suggestions(analysis.metrics);
+        response.put("optimizerSuggestions", Suggestion.messages(suggestions));
+        response.put("optimizerFindings", suggestions);
+        return response;
+    }
+
+    private List<Suggestion> suggestions(RepoMetrics metrics) {
+        return optimizerTimer.record(() -> optimizer.evaluate(metrics));
+    }
+
+    private Timer fingerprintTimer(String operation) {
+        return Timer.builder("stride.fingerprints").tag("operation", operation)
+                .description("Matching against and adding to the cross-repository fingerprint index").register(meterRegistry);
+    }
+
+    private Timer persistenceTimer(String operation) {
+        return Timer.builder("stride.persistence").tag("operation", operation)
+                .description("Saving and loading stored analysis state").register(meterRegistry);
     }
     
 }
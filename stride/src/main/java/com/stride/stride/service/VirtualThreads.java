@@ -0,0 +1,71 @@
+package com.stride.stride.service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Virtual threads when the runtime has them (Java 21+), looked up reflectively so the
+ * application still builds and runs on Java 17.
+ *
+ * They are only used for work that spends its time blocked on network, process or disk I/O
+ * (cloning, waiting for an analysis permit). CPU-bound analysis stays on the analyzer's
+ * fork/join pool of platform threads, behind {@link StrideService}'s analysis permits, so
+ * any number of virtual threads cannot put more analyses on the cores than there are permits.
+ */
+final class VirtualThreads {
+
+    // Thread.ofVirtual() and Thread.Builder#name(String, long) / #factory(), or null before Java 21
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return a factory of virtual threads named prefix1, prefix2, ...
+     * @throws UnsupportedOperationException before Java 21
+     */
+    static ThreadFactory factory(String prefix) {
+        if (!isSupported()) throw new UnsupportedOperationException("Virtual threads need Java 21 or later");
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 1L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create virtual threads", e);
+        }
+    }
+
+    /**
+     * A new thread per task, nothing queued and nothing pooled: callers bound concurrency
+     * themselves. Kept as a ThreadPoolExecutor so the usual gauges still apply.
+     */
+    static ThreadPoolExecutor perTaskExecutor(String prefix) {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0L, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), factory(prefix));
+    }
+}
@@ -0,0 +1,113 @@
+-- Stored analysis runs (see AnalysisStore). One row per analyzed commit; per-file rows hang off it.
+-- Paths are stored relative to the repository root.
+
+CREATE TABLE IF NOT EXISTS analysis_run (
+    id                    BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    repo_url              VARCHAR NOT NULL,
+    commit_id             VARCHAR(64) NOT NULL,
+    source                VARCHAR(16) NOT NULL,
+    analyzer_version      INT NOT NULL,
+    settings              VARCHAR DEFAULT '' NOT NULL,
+    created_at            TIMESTAMP WITH TIME ZONE NOT NULL,
+    duration_ms           BIGINT NOT NULL,
+    total_files           INT NOT NULL,
+    total_lines           INT NOT NULL,
+    cyclomatic_complexity INT NOT NULL,
+    max_depth             INT NOT NULL,
+    large_file_threshold  INT NOT NULL,
+    maintainability_index DOUBLE PRECISION NOT NULL,
+    commits_scanned       INT NOT NULL,
+    skipped_binary        INT DEFAULT 0 NOT NULL,
+    skipped_generated     INT DEFAULT 0 NOT NULL,
+    excluded_paths        INT DEFAULT 0 NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_analysis_run_url_commit ON analysis_run (repo_url, commit_id);
+CREATE INDEX IF NOT EXISTS idx_analysis_run_commit ON analysis_run (commit_id);
+
+-- Columns added after a table was first created also go in as ALTERs, for existing databases
+ALTER TABLE analysis_run ADD COLUMN IF NOT EXISTS settings VARCHAR DEFAULT '' NOT NULL;
+ALTER TABLE analysis_run ADD COLUMN IF NOT EXISTS skipped_binary INT DEFAULT 0 NOT NULL;
+ALTER TABLE analysis_run ADD COLUMN IF NOT EXISTS skipped_generated INT DEFAULT 0 NOT NULL;
+ALTER TABLE analysis_run ADD COLUMN IF NOT EXISTS excluded_paths INT DEFAULT 0 NOT NULL;
+-- settings held two 8-digit signatures before they became SHA-256 digests
+ALTER TABLE analysis_run ALTER COLUMN settings SET DATA TYPE VARCHAR;
+
+CREATE TABLE IF NOT EXISTS analysis_file (
+    run_id               BIGINT NOT NULL,
+    file_id              INT NOT NULL,
+    path                 VARCHAR NOT NULL,
+    extension            VARCHAR NOT NULL,
+    lines                INT NOT NULL,
+    comment_lines        INT NOT NULL,
+    complexity           INT NOT NULL,
+    functions            INT NOT NULL,
+    classes              INT NOT NULL,
+    max_nesting          INT NOT NULL,
+    cognitive_complexity INT NOT NULL,
+    todo_count           INT NOT NULL,
+    import_count         INT NOT NULL,
+    operators            INT NOT NULL,
+    operands             INT NOT NULL,
+    PRIMARY KEY (run_id, file_id),
+    FOREIGN KEY (run_id) REFERENCES analysis_run (id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS analysis_secret (
+    run_id  BIGINT NOT NULL,
+    seq     INT NOT NULL,
+    file_id INT NOT NULL,
+    line_no INT NOT NULL,
+    snippet VARCHAR NOT NULL,
+    rule    VARCHAR(64) DEFAULT '' NOT NULL,
+    PRIMARY KEY (run_id, seq),
+    FOREIGN KEY (run_id) REFERENCES analysis_run (id) ON DELETE CASCADE
+);
+
+ALTER TABLE analysis_secret ADD COLUMN IF NOT EXISTS rule VARCHAR(64) DEFAULT '' NOT NULL;
+
+CREATE TABLE IF NOT EXISTS analysis_duplicate (
+    run_id       BIGINT NOT NULL,
+    seq          INT NOT NULL,
+    file_a       INT NOT NULL,
+    a_start      INT NOT NULL,
+    a_end        INT NOT NULL,
+    file_b       INT NOT NULL,
+    b_start      INT NOT NULL,
+    b_end        INT NOT NULL,
+    fingerprints INT NOT NULL,
+    PRIMARY KEY (run_id, seq),
+    FOREIGN KEY (run_id) REFERENCES analysis_run (id) ON DELETE CASCADE
+);
+
+-- Churn is keyed by git path, which need not be an analyzed file (deleted files, excluded types)
+CREATE TABLE IF NOT EXISTS analysis_churn (
+    run_id        BIGINT NOT NULL,
+    path          VARCHAR NOT NULL,
+    commits       INT,
+    lines_added   INT,
+    lines_removed INT,
+    FOREIGN KEY (run_id) REFERENCES analysis_run (id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_analysis_churn_run ON analysis_churn (run_id);
+
+-- The message, and the rule finding it is made of (file paths relative, val NaN when the rule has none)
+CREATE TABLE IF NOT EXISTS analysis_suggestion (
+    run_id     BIGINT NOT NULL,
+    seq        INT NOT NULL,
+    suggestion VARCHAR NOT NULL,
+    rule_id    VARCHAR(64) DEFAULT '' NOT NULL,
+    severity   VARCHAR(16) DEFAULT 'INFO' NOT NULL,
+    file_path  VARCHAR,
+    file_type  VARCHAR,
+    val        DOUBLE PRECISION,
+    PRIMARY KEY (run_id, seq),
+    FOREIGN KEY (run_id) REFERENCES analysis_run (id) ON DELETE CASCADE
+);
+
+ALTER TABLE analysis_suggestion ADD COLUMN IF NOT EXISTS rule_id VARCHAR(64) DEFAULT '' NOT NULL;
+ALTER TABLE analysis_suggestion ADD COLUMN IF NOT EXISTS severity VARCHAR(16) DEFAULT 'INFO' NOT NULL;
+ALTER TABLE analysis_suggestion ADD COLUMN IF NOT EXISTS file_path VARCHAR;
+ALTER TABLE analysis_suggestion ADD COLUMN IF NOT EXISTS file_type VARCHAR;
+ALTER TABLE analysis_suggestion ADD COLUMN IF NOT EXISTS val DOUBLE PRECISION;
@@ -0,0 +1,139 @@
+package com.stride.stride.analysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ContentCacheTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void entriesSurviveSaveAndLoad() throws IOException {
+		ContentCache cache = new ContentCache(100, 1 << 20, 7);
+		cache.put("a", metrics(1));
+		cache.put("b", metrics(2));
+		Path file = dir.resolve("cache.bin");
+		cache.save(file);
+
+		ContentCache loaded = new ContentCache(100, 1 << 20, 7);
+		loaded.load(file);
+		assertEquals(2, loaded.stats().get("entries"));
+		assertSame(metrics(1), loaded.get("a"));
+		assertSame(metrics(2), loaded.get("b"));
+		assertNull(loaded.get("c"));
+	}
+
+	@Test
+	void fileOfAnotherAnalyzerVersionIsIgnored() throws IOException {
+		ContentCache cache = new ContentCache(100, 1 << 20, 7);
+		cache.put("a", metrics(1));
+		Path file = dir.resolve("cache.bin");
+		cache.save(file);
+
+		ContentCache newer = new ContentCache(100, 1 << 20, 8);
+		newer.load(file);
+		assertEquals(0, newer.stats().get("entries"));
+		assertNull(newer.get("a"));
+	}
+
+	@Test
+	void truncatedOrCorruptFileLeavesTheCacheEmpty() throws IOException {
+		ContentCache cache = new ContentCache(100, 1 << 20, 7);
+		for (int i = 0; i < 20; i++) cache.put("k" + i, metrics(i));
+		Path file = dir.resolve("cache.bin");
+		cache.save(file);
+		byte[] bytes = Files.readAllBytes(file);
+
+		Path truncated = dir.resolve("truncated.bin");
+		Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 5));
+		ContentCache fromTruncated = new ContentCache(100, 1 << 20, 7);
+		fromTruncated.load(truncated);
+		assertEquals(0, fromTruncated.stats().get("entries"));
+
+		// a length field overwritten with garbage
+		byte[] corrupt = bytes.clone();
+		Arrays.fill(corrupt, 12, 16, (byte) 0xff);
+		Path garbled = dir.resolve("corrupt.bin");
+		Files.write(garbled, corrupt);
+		ContentCache fromCorrupt = new ContentCache(100, 1 << 20, 7);
+		fromCorrupt.load(garbled);
+		assertEquals(0, fromCorrupt.stats().get("entries"));
+
+		Path wrongMagic = dir.resolve("other.bin");
+		Files.writeString(wrongMagic, "not a cache file");
+		ContentCache fromOther = new ContentCache(100, 1 << 20, 7);
+		fromOther.load(wrongMagic);
+		assertEquals(0, fromOther.stats().get("entries"));
+	}
+
+	@Test
+	void hitsDoNotShareTheSecretsList() {
+		ContentCache cache = new ContentCache(100, 1 << 20, 7);
+		cache.put("a", metrics(1));
+		FileMetrics hit = cache.get("a").relocate("/repo/A.java", "java", 1);
+		hit.getSecrets().add(new FileMetrics.SecretHit(9, "token=x", "generic"));
+		assertEquals(1, cache.get("a").getSecrets().size());
+		assertEquals(1, cache.get("a").relocate("/repo/B.java", "java", 1).getSecrets().size());
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedEntries() {
+		ContentCache cache = new ContentCache(2, 1 << 20, 7);
+		cache.put("a", metrics(1));
+		cache.put("b", metrics(2));
+		assertNotNull(cache.get("a"));
+		cache.put("c", metrics(3));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("a"));
+		assertNotNull(cache.get("c"));
+		assertEquals(1L, cache.stats().get("evictions"));
+	}
+
+	private static FileMetrics metrics(int seed) {
+		FileMetrics fm = new FileMetrics("/repo/F" + seed + ".java", "java", 2);
+		fm.setLines(10 + seed);
+		fm.setCommentLines(seed);
+		fm.setComplexity(2 * seed);
+		fm.setFunctions(seed + 1);
+		fm.setClasses(1);
+		fm.setMaxNesting(seed % 4);
+		fm.setOperators(30 + seed);
+		fm.setOperands(40 + seed);
+		fm.setCognitiveComplexity(3 * seed);
+		fm.setTodoCount(seed % 2);
+		fm.setImportCount(seed % 3);
+		Fingerprints.Builder fp = new Fingerprints.Builder();
+		for (int i = 0; i < seed; i++) fp.add(seed * 1_000_003L + i, i + 1, i + 4);
+		fm.setFingerprints(fp.build());
+		fm.getSecrets().add(new FileMetrics.SecretHit(seed, "password=é" + seed, "generic-password"));
+		if (seed % 2 == 0) fm.setSkipped("generated");
+		return fm;
+	}
+
+	// cached entries carry no location, and Fingerprints compares by identity
+	private static void assertSame(FileMetrics expected, FileMetrics actual) {
+		assertNotNull(actual);
+		assertNull(actual.getPath());
+		FileMetrics located = actual.relocate(expected.getPath(), expected.getExtension(), expected.getDepth());
+		located.setFingerprints(expected.getFingerprints());
+		assertEquals(expected, located);
+		Fingerprints a = actual.getFingerprints();
+		Fingerprints e = expected.getFingerprints();
+		assertEquals(e.size(), a.size());
+		for (int i = 0; i < e.size(); i++) {
+			assertEquals(e.hash(i), a.hash(i));
+			assertEquals(e.startLine(i), a.startLine(i));
+			assertEquals(e.endLine(i), a.endLine(i));
+		}
+	}
+}
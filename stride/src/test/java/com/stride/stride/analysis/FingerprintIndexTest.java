@@ -0,0 +1,103 @@
+package com.stride.stride.analysis;
+
+import com.stride.stride.model.CrossRepoDuplicate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FingerprintIndexTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void reportsCodeFirstSeenInAnotherRepository() throws IOException {
+		try (FingerprintIndex index = new FingerprintIndex(dir, 1024)) {
+			RepoMetrics original = RepoMetrics.builder(1).add(file("/a/src/Util.java", 1, 10, 0)).build();
+			assertEquals(List.of(), index.match("https://example.com/a.git", original));
+			assertEquals(10, index.add("https://example.com/a.git", original, "/a/"));
+
+			// hashes 5..8 copied 100 lines further down, plus code of its own
+			RepoMetrics copy = RepoMetrics.builder(2)
+					.add(file("/b/lib/Copy.java", 5, 8, 100))
+					.add(file("/b/lib/Own.java", 50, 60, 0))
+					.build();
+			List<CrossRepoDuplicate> found = index.match("https://example.com/b.git", copy);
+			assertEquals(List.of(new CrossRepoDuplicate("/b/lib/Copy.java", 105, 110,
+					"https://example.com/a.git", "src/Util.java", 5, 10, 4)), found);
+			assertEquals(11, index.add("https://example.com/b.git", copy, "/b/"));
+
+			// analyzed again, a repository is not reported against itself, and the copy still points at a
+			assertEquals(List.of(), index.match("https://example.com/a.git", original));
+			assertEquals(found, index.match("https://example.com/b.git", copy));
+		}
+	}
+
+	@Test
+	void growsPastItsInitialCapacityAndSurvivesReopening() throws IOException {
+		RepoMetrics.Builder builder = RepoMetrics.builder(50);
+		for (int f = 0; f < 50; f++) builder.add(file("/a/F" + f + ".java", f * 100, f * 100 + 99, 0));
+		try (FingerprintIndex index = new FingerprintIndex(dir, 1024)) {
+			assertEquals(5000, index.add("a", builder.build(), "/a/"));
+		}
+
+		try (FingerprintIndex index = new FingerprintIndex(dir, 1024)) {
+			assertEquals(5000L, index.stats().get("fingerprints"));
+			assertTrue((Long) index.stats().get("capacity") >= 8192);
+			assertEquals(1, index.stats().get("repositories"));
+
+			RepoMetrics copy = RepoMetrics.builder(1).add(file("/b/G.java", 3720, 3721, 0)).build();
+			List<CrossRepoDuplicate> found = index.match("b", copy);
+			assertEquals(1, found.size());
+			assertEquals("F37.java", found.get(0).getSourceFile());
+			assertEquals(3720, found.get(0).getSourceStartLine());
+		}
+	}
+
+	@Test
+	void lookupsRunWhileARepositoryIsAddedAndTheTableGrows() throws Exception {
+		try (FingerprintIndex index = new FingerprintIndex(dir, 1024)) {
+			index.add("a", RepoMetrics.builder(1).add(file("/a/Seed.java", 0, 9, 0)).build(), "/a/");
+			RepoMetrics probe = RepoMetrics.builder(1).add(file("/p/Probe.java", 0, 9, 0)).build();
+			AtomicReference<Throwable> failure = new AtomicReference<>();
+			AtomicInteger lookups = new AtomicInteger();
+			Thread adder = new Thread(() -> {
+				try {
+					RepoMetrics.Builder builder = RepoMetrics.builder(200);
+					for (int f = 0; f < 200; f++) builder.add(file("/b/F" + f + ".java", 1000 + f * 100, 1000 + f * 100 + 99, 0));
+					index.add("b", builder.build(), "/b/");
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			});
+			adder.start();
+			while (adder.isAlive()) {
+				assertEquals(1, index.match("p", probe).size());
+				lookups.incrementAndGet();
+			}
+			adder.join();
+			assertNull(failure.get());
+			assertTrue(lookups.get() > 0);
+			assertEquals(20010L, index.stats().get("fingerprints"));
+			assertTrue((Long) index.stats().get("capacity") >= 32768);
+		}
+	}
+
+	// One fingerprint per hash from..to, the k-gram of hash h covering lines h+shift .. h+shift+2
+	private static FileMetrics file(String path, long from, long to, int shift) {
+		Fingerprints.Builder fp = new Fingerprints.Builder();
+		for (long h = from; h <= to; h++) fp.add(h * 0x9E3779B97F4A7C15L, (int) h + shift, (int) h + shift + 2);
+		FileMetrics fm = new FileMetrics(path, "java", 1);
+		fm.setFingerprints(fp.build());
+		return fm;
+	}
+}
@@ -0,0 +1,76 @@
+package com.stride.stride.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+
+	@Test
+	void quantilesAreWithinOnePercentOfTheSortedValues() {
+		Random random = new Random(11);
+		for (int n : new int[]{1, 2, 7, 1000, 200_000}) {
+			QuantileSketch sketch = new QuantileSketch();
+			double[] values = new double[n];
+			for (int i = 0; i < n; i++) {
+				// skewed like file sizes, with some zeros
+				values[i] = random.nextInt(10) == 0 ? 0 : Math.floor(Math.exp(random.nextDouble() * 10));
+				sketch.add(values[i]);
+			}
+			Arrays.sort(values);
+			for (double q : new double[]{0, 0.01, 0.25, 0.5, 0.9, 0.99, 1}) {
+				double exact = values[(int) (q * (n - 1))];
+				double estimate = sketch.quantile(q);
+				assertTrue(Math.abs(estimate - exact) <= exact * QuantileSketch.RELATIVE_ACCURACY,
+						n + " values, q=" + q + ": " + estimate + " for " + exact);
+			}
+			assertEquals(values[0], sketch.getMin());
+			assertEquals(values[n - 1], sketch.getMax());
+			assertEquals(n, sketch.getCount());
+		}
+	}
+
+	@Test
+	void mergedSketchesAnswerLikeOneOverAllValues() {
+		Random random = new Random(5);
+		QuantileSketch all = new QuantileSketch();
+		QuantileSketch small = new QuantileSketch();
+		QuantileSketch large = new QuantileSketch();
+		for (int i = 0; i < 5000; i++) {
+			int v = random.nextInt(50);
+			int w = 10_000 + random.nextInt(90_000);
+			small.add(v);
+			large.add(w);
+			all.add(v);
+			all.add(w);
+		}
+		QuantileSketch merged = new QuantileSketch();
+		merged.merge(large);
+		merged.merge(new QuantileSketch());
+		merged.merge(small);
+		for (double q : new double[]{0, 0.1, 0.5, 0.75, 0.99, 1}) assertEquals(all.quantile(q), merged.quantile(q));
+		assertEquals(all.getCount(), merged.getCount());
+		assertEquals(all.getMean(), merged.getMean(), 1e-9);
+	}
+
+	@Test
+	void emptySketchSummarizesAsACount() {
+		QuantileSketch sketch = new QuantileSketch();
+		assertTrue(Double.isNaN(sketch.quantile(0.5)));
+		assertEquals(Map.of("count", 0L), sketch.summary());
+		assertThrows(IllegalArgumentException.class, () -> sketch.quantile(1.5));
+
+		sketch.add(0);
+		sketch.add(0);
+		sketch.add(40);
+		assertEquals(0.0, sketch.quantile(0.5));
+		assertEquals(40.0, sketch.quantile(1));
+		assertEquals(13.33, sketch.summary().get("mean"));
+	}
+}
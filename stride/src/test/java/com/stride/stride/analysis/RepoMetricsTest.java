@@ -0,0 +1,124 @@
+package com.stride.stride.analysis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RepoMetricsTest {
+
+	@Test
+	void perFileMapsAreViewsOverTheColumns() throws Exception {
+		RepoMetrics metrics = RepoMetrics.builder(2)
+				.add(file("a/One.java", "java", 120, 30, 3))
+				.add(file("b/two.py", "py", 40, 0, 1))
+				.add(file("c/Three.java", "java", 10, 5, 0))
+				.build();
+		Map<String, Object> map = metrics.toMap();
+
+		@SuppressWarnings("unchecked")
+		Map<String, Integer> nesting = (Map<String, Integer>) map.get("nestingDepthPerFile");
+		assertEquals(Map.of("a/One.java", 3, "b/two.py", 1, "c/Three.java", 0), nesting);
+		assertEquals(List.of("a/One.java", "b/two.py", "c/Three.java"), new ArrayList<>(nesting.keySet()));
+		assertEquals(1, nesting.get("b/two.py"));
+		assertNull(nesting.get("missing.java"));
+		assertFalse(nesting.containsKey("missing.java"));
+		assertThrows(UnsupportedOperationException.class, () -> nesting.put("x", 1));
+
+		assertEquals(Map.of("java", 2, "py", 1), map.get("fileTypes"));
+		assertEquals(Map.of("java", 130, "py", 40), map.get("linesPerType"));
+		assertEquals(170, map.get("totalLines"));
+		assertEquals(0.25, ((Map<?, ?>) map.get("commentDensityPerFile")).get("a/One.java"));
+
+		// Serializes exactly like a plain map
+		ObjectMapper mapper = new ObjectMapper();
+		assertEquals(mapper.writeValueAsString(new LinkedHashMap<>(nesting)), mapper.writeValueAsString(nesting));
+	}
+
+	@Test
+	void largestFilesKeepWalkOrderOnTiesAndFlagLargeOnes() {
+		RepoMetrics.Builder builder = RepoMetrics.builder(8).largeFileThreshold(100);
+		int[] lines = {50, 200, 50, 300, 200, 10, 50};
+		for (int i = 0; i < lines.length; i++) builder.add(file("F" + i + ".java", "java", lines[i], 0, 0));
+		RepoMetrics metrics = builder.build();
+
+		assertEquals(List.of("F3.java (300 lines)", "F1.java (200 lines)", "F4.java (200 lines)",
+				"F0.java (50 lines)", "F2.java (50 lines)"), metrics.getTop5LargestFiles());
+		assertEquals(List.of("File F3.java exceeds 100 lines", "File F1.java exceeds 100 lines",
+				"File F4.java exceeds 100 lines"), metrics.getOptimizationFlags());
+	}
+
+	@Test
+	void rankingsAndDistributionsMatchSortingEveryFile() {
+		Random random = new Random(8);
+		int files = 20_000;
+		RepoMetrics.Builder builder = RepoMetrics.builder(16);
+		List<Integer> imports = new ArrayList<>();
+		List<Integer> javaLines = new ArrayList<>();
+		for (int i = 0; i < files; i++) {
+			String ext = i % 4 == 0 ? "py" : "java";
+			FileMetrics fm = file("F" + i + "." + ext, ext, random.nextInt(3000), 0, 0);
+			fm.setImportCount(random.nextInt(40));
+			fm.setComplexity(1 + random.nextInt(30));
+			imports.add(fm.getImportCount());
+			if (ext.equals("java")) javaLines.add(fm.getLines());
+			builder.add(fm);
+		}
+		RepoMetrics metrics = builder.build();
+
+		// a stable sort by imports, descending
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < files; i++) order.add(i);
+		order.sort((a, b) -> Integer.compare(imports.get(b), imports.get(a)));
+		List<String> expected = new ArrayList<>();
+		for (int id : order.subList(0, 10)) expected.add(metrics.getPath(id) + " (" + imports.get(id) + ")");
+		assertEquals(expected, metrics.getTopCoupledFiles());
+
+		javaLines.sort(null);
+		int java = 1;
+		assertEquals("java", metrics.getType(java));
+		double p90 = javaLines.get((int) (0.9 * (javaLines.size() - 1)));
+		assertEquals(p90, metrics.getTypeQuantile(java, RepoMetrics.Measure.LINES, 0.9), p90 * 0.01);
+
+		Map<String, Object> map = metrics.toMap();
+		@SuppressWarnings("unchecked")
+		Map<String, Map<String, Map<String, Object>>> perType =
+				(Map<String, Map<String, Map<String, Object>>>) map.get("distributionPerType");
+		assertEquals(List.of("count", "min", "max", "mean", "p50", "p90", "p99"),
+				new ArrayList<>(perType.get("py").get("halsteadVolume").keySet()));
+		assertEquals((long) javaLines.size(), perType.get("java").get("lines").get("count"));
+		@SuppressWarnings("unchecked")
+		Map<String, Map<String, Object>> overall = (Map<String, Map<String, Object>>) map.get("distribution");
+		assertEquals((long) files, overall.get("complexity").get("count"));
+		assertEquals(30.0, overall.get("complexity").get("max"));
+	}
+
+	@Test
+	void errorResultMapsToErrorKeyAndAttributes() {
+		RepoMetrics metrics = RepoMetrics.error("boom");
+		metrics.setAttribute("ref", "main");
+		Map<String, Object> map = metrics.toMap();
+		assertEquals(Map.of("error", "boom", "ref", "main"), map);
+		// callers add their own top-level keys
+		map.put("optimizerSuggestions", List.of());
+		assertTrue(map.containsKey("optimizerSuggestions"));
+	}
+
+	private static FileMetrics file(String path, String ext, int lines, int comments, int nesting) {
+		FileMetrics fm = new FileMetrics(path, ext, 1);
+		fm.setLines(lines);
+		fm.setCommentLines(comments);
+		fm.setMaxNesting(nesting);
+		return fm;
+	}
+}
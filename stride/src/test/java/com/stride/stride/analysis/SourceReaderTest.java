@@ -0,0 +1,113 @@
+package com.stride.stride.analysis;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SourceReaderTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void encodingIsDetectedFromByteOrderMarkOrUtf8Validity() throws IOException {
+		String text = "// Größe: 5 €\nint x = 1;\r\n";
+		assertEquals(text, decode(utf8(text)));
+		assertEquals(text, decode(concat(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}, utf8(text))));
+		byte[] utf16 = concat(new byte[]{(byte) 0xFF, (byte) 0xFE}, text.getBytes(StandardCharsets.UTF_16LE));
+		assertEquals(text, decode(utf16));
+		// UTF-16 text holds NUL bytes but is not binary
+		assertNull(FileClassifier.classifyContent(ByteBuffer.wrap(utf16)));
+
+		// not valid UTF-8: every byte is one ISO-8859-1 char, never a replacement char
+		byte[] latin1 = "café = 1\n".getBytes(StandardCharsets.ISO_8859_1);
+		assertEquals("café = 1\n", decode(latin1));
+	}
+
+	@Test
+	void utf8CutShortAtTheEndIsStillUtf8() throws IOException {
+		byte[] euro = utf8("€");
+		byte[] cut = concat(utf8("// Größe\n"), new byte[]{euro[0], euro[1]});
+		assertEquals("// Größe\n\uFFFD", decode(cut));
+		// a cut sequence that is malformed before the end still makes the content ISO-8859-1
+		byte[] malformed = concat(utf8("// Größe\n"), new byte[]{euro[0], 'x'});
+		assertEquals(new String(malformed, StandardCharsets.ISO_8859_1), decode(malformed));
+	}
+
+	@Test
+	void linesSplitOnEveryTerminatorAcrossReadsAndPastTheBuffer() throws IOException {
+		String longLine = "x".repeat(20_000);
+		String text = "a\r\nb\rc\n" + longLine + "\r\n\nlast";
+		SourceReader reader = SourceReader.acquire();
+		try {
+			List<String> lines = new ArrayList<>();
+			reader.lineSplitter().split(reader.open(ByteBuffer.wrap(utf8(text))), (buf, start, end) -> lines.add(new String(buf, start, end - start)));
+			assertEquals(List.of("a", "b", "c", longLine, "", "last"), lines);
+		} finally {
+			reader.release();
+		}
+	}
+
+	@Test
+	void blobIdMatchesGitAndLargeFilesAreMapped() throws IOException {
+		Path small = Files.write(dir.resolve("small.txt"), utf8("hello\n"));
+		Path large = Files.write(dir.resolve("large.txt"),
+				utf8(("line of text " + "y".repeat(50) + "\n").repeat(SourceReader.MAP_THRESHOLD / 40)));
+
+		SourceReader reader = SourceReader.acquire();
+		try {
+			for (Path file : new Path[]{small, large}) {
+				byte[] bytes = Files.readAllBytes(file);
+				ByteBuffer content = reader.read(file);
+				assertEquals(bytes.length, content.remaining());
+				// a mapping spans exactly the file; the pooled buffer stays its own size
+				assertEquals(file == large, content.capacity() == bytes.length);
+				assertEquals(new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, bytes).name(), reader.blobId(content));
+				assertEquals(new String(bytes, StandardCharsets.UTF_8), drain(reader.open(content)));
+			}
+		} finally {
+			reader.release();
+		}
+	}
+
+	private static String decode(byte[] bytes) throws IOException {
+		SourceReader reader = SourceReader.acquire();
+		try {
+			return drain(reader.open(ByteBuffer.wrap(bytes)));
+		} finally {
+			reader.release();
+		}
+	}
+
+	// Small reads, so decoding resumes across chunk boundaries
+	private static String drain(SourceReader reader) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] buf = new char[7];
+		int n;
+		while ((n = reader.read(buf, 0, buf.length)) >= 0) sb.append(buf, 0, n);
+		return sb.toString();
+	}
+
+	private static byte[] utf8(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] c = new byte[a.length + b.length];
+		System.arraycopy(a, 0, c, 0, a.length);
+		System.arraycopy(b, 0, c, a.length, b.length);
+		return c;
+	}
+}
@@ -0,0 +1,145 @@
+package com.stride.stride.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stride.stride.analysis.FileMetrics;
+import com.stride.stride.service.AnalysisJobService;
+import com.stride.stride.service.StrideProperties;
+import com.stride.stride.service.StrideService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NdjsonAnalysisWriterTest {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void writesOneFlushedRecordPerFileThenTheSummaryWithoutPerFileMaps() throws IOException {
+		CountingStream out = new CountingStream();
+		NdjsonAnalysisWriter writer = new NdjsonAnalysisWriter(out, mapper);
+
+		FileMetrics fm = new FileMetrics("/repo/A.java", "java", 1);
+		fm.setLines(12);
+		fm.setComplexity(3);
+		fm.getSecrets().add(new FileMetrics.SecretHit(4, "key=x", "generic"));
+		writer.file(fm);
+		FileMetrics binary = new FileMetrics("/repo/logo.png", "png", 1);
+		binary.setSkipped("binary");
+		writer.file(binary);
+		assertEquals(2, out.flushes);
+
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("totalFiles", 2);
+		summary.put("nestingDepthPerFile", Map.of("/repo/A.java", 1));
+		summary.put("fileCoupling", Map.of());
+		writer.summary(summary);
+
+		List<JsonNode> records = records(out);
+		assertEquals(3, records.size());
+		assertEquals("file", records.get(0).get("type").asText());
+		assertEquals("/repo/A.java", records.get(0).get("path").asText());
+		assertEquals(12, records.get(0).get("lines").asInt());
+		assertEquals(3, records.get(0).get("complexity").asInt());
+		assertEquals(1, records.get(0).get("secrets").asInt());
+		assertFalse(records.get(0).has("skipped"));
+		assertEquals("binary", records.get(1).get("skipped").asText());
+		assertEquals("summary", records.get(2).get("type").asText());
+		assertEquals(2, records.get(2).get("totalFiles").asInt());
+		assertFalse(records.get(2).has("nestingDepthPerFile"));
+		assertFalse(records.get(2).has("fileCoupling"));
+	}
+
+	@Test
+	void failedAnalysesEndWithAnErrorRecord() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		NdjsonAnalysisWriter writer = new NdjsonAnalysisWriter(out, mapper);
+		writer.summary(Map.of("error", "Not a directory"));
+		writer.error("java.lang.IllegalStateException: boom");
+
+		List<JsonNode> records = records(out);
+		assertEquals("error", records.get(0).get("type").asText());
+		assertEquals("Not a directory", records.get(0).get("error").asText());
+		assertEquals("error", records.get(1).get("type").asText());
+		assertEquals("java.lang.IllegalStateException: boom", records.get(1).get("error").asText());
+	}
+
+	@Test
+	void aClosedConnectionIsRethrownUnchecked() {
+		OutputStream closed = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		};
+		NdjsonAnalysisWriter writer = new NdjsonAnalysisWriter(closed, mapper);
+		assertThrows(UncheckedIOException.class, () -> writer.file(new FileMetrics("/repo/A.java", "java", 1)));
+	}
+
+	@Test
+	void streamedAnalysisRunsOnTheJobWorkers() throws Exception {
+		for (int f = 0; f < 3; f++) {
+			Files.writeString(dir.resolve("F" + f + ".java"), "class F" + f + " {\n  int f() { return " + f + "; }\n}\n");
+		}
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		StrideProperties properties = new StrideProperties();
+		properties.getAnalyzer().setParallelism(1);
+		properties.getCache().setEnabled(false);
+		StrideService stride = new StrideService(properties, null, registry);
+		AnalysisJobService jobs = new AnalysisJobService(stride, 1, 1, 60, registry);
+		try {
+			RepoController controller = new RepoController(stride, jobs, null, mapper);
+			ResponseEntity<StreamingResponseBody> response = controller.analyzeRepoStream(dir.toString());
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			response.getBody().writeTo(out);
+
+			List<JsonNode> records = records(out);
+			assertEquals(4, records.size());
+			for (int i = 0; i < 3; i++) {
+				assertEquals("file", records.get(i).get("type").asText());
+				assertTrue(records.get(i).get("path").asText().endsWith(".java"));
+			}
+			assertEquals("summary", records.get(3).get("type").asText());
+		} finally {
+			jobs.shutdown();
+			stride.shutdown();
+		}
+	}
+
+	private List<JsonNode> records(ByteArrayOutputStream out) throws IOException {
+		List<JsonNode> records = new ArrayList<>();
+		for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) records.add(mapper.readTree(line));
+		return records;
+	}
+
+	private static final class CountingStream extends ByteArrayOutputStream {
+		int flushes;
+
+		@Override
+		public void flush() {
+			flushes++;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package com.stride.stride.optimizer;
+
+import com.stride.stride.analysis.FileMetrics;
+import com.stride.stride.analysis.RepoMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OptimizerEngineTest {
+
+	private static final String[] EXTENSIONS = {"java", "py", "js", "md", "xml", "json"};
+
+	@Test
+	void builtInRulesSayWhatTheHardcodedChecksSaid() {
+		OptimizerEngine engine = new OptimizerEngine();
+		// below and above the size where files are evaluated in parallel chunks
+		for (int files : new int[]{300, OptimizerEngine.PARALLEL_MIN_FILES * 3 + 17}) {
+			RepoMetrics metrics = metrics(files, Map.of());
+			assertEquals(legacySuggestions(metrics), engine.generateSuggestions(metrics));
+		}
+	}
+
+	@Test
+	void findingsCarryRuleSeverityFileAndValue() {
+		Map<String, String> settings = new HashMap<>();
+		RepoMetrics metrics = metrics(50, settings);
+		Suggestion nesting = new OptimizerEngine().evaluate(metrics).stream()
+				.filter(s -> s.getRuleId().equals("nesting")).findFirst().orElseThrow();
+		int f = metrics.fileId(nesting.getFile());
+		assertEquals(Suggestion.Severity.MEDIUM, nesting.getSeverity());
+		assertEquals(metrics.getMaxNesting(f), (int) nesting.getValue());
+		assertTrue(metrics.getMaxNesting(f) > 5);
+	}
+
+	@Test
+	void repositorySettingsOverlayTheRules() {
+		Map<String, String> settings = new HashMap<>();
+		settings.put("optimizer.nesting.above", "7");
+		settings.put("optimizer.nesting.severity", "high");
+		settings.put("optimizer.halstead.enabled", "false");
+		settings.put("optimizer.todo-heavy.metric", "todos");
+		settings.put("optimizer.todo-heavy.above", "2");
+		settings.put("optimizer.todo-heavy.message", "[TODO] {file} has {value} TODOs");
+		settings.put("optimizer.todo-heavy.format", "%.0f");
+		RepoMetrics metrics = metrics(400, settings);
+
+		List<Suggestion> found = new OptimizerEngine().evaluate(metrics);
+		assertTrue(found.stream().noneMatch(s -> s.getRuleId().equals("halstead")));
+		for (Suggestion s : found) {
+			if (s.getRuleId().equals("nesting")) {
+				assertTrue(s.getValue() > 7);
+				assertEquals(Suggestion.Severity.HIGH, s.getSeverity());
+			}
+		}
+		List<Suggestion> todos = found.stream().filter(s -> s.getRuleId().equals("todo-heavy")).toList();
+		int expected = 0;
+		for (int f = 0; f < metrics.getFileCount(); f++) if (metrics.getTodoCount(f) > 2) expected++;
+		assertEquals(expected, todos.size());
+		Suggestion first = todos.get(0);
+		assertEquals("[TODO] " + first.getFile() + " has " + (int) first.getValue() + " TODOs", first.getMessage());
+		// new rules go last
+		assertEquals("todo-heavy", found.get(found.size() - 1).getRuleId());
+	}
+
+	@Test
+	void invalidSettingsAreReportedAndTheRulesKept() {
+		Map<String, String> settings = new HashMap<>();
+		settings.put("optimizer.mystery.metric", "no-such-metric");
+		settings.put("optimizer.mystery.above", "1");
+		settings.put("optimizer.mystery.message", "?");
+		RepoMetrics metrics = metrics(100, settings);
+
+		List<Suggestion> found = new OptimizerEngine().evaluate(metrics);
+		assertEquals("config", found.get(0).getRuleId());
+		assertEquals(legacySuggestions(metrics), Suggestion.messages(found.subList(1, found.size())));
+		assertThrows(IllegalArgumentException.class, () -> OptimizerRules.defaults().overlay(
+				Map.of("optimizer.nesting.above", "1", "optimizer.nesting.below", "9")));
+		assertThrows(IllegalArgumentException.class, () -> OptimizerRules.defaults().overlay(
+				Map.of("optimizer.x.metric", "lines", "optimizer.x.message", "no threshold")));
+	}
+
+	@Test
+	void manyRulesOnOneColumnFireByThreshold() {
+		List<OptimizerRule> rules = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			rules.add(new OptimizerRule("above-" + i, OptimizerRule.Metric.LINES, true, i * 10, Suggestion.Severity.LOW,
+					"{file}", "%.0f"));
+			rules.add(new OptimizerRule("below-" + i, OptimizerRule.Metric.LINES, false, i * 10, Suggestion.Severity.LOW,
+					"{file}", "%.0f"));
+		}
+		RepoMetrics metrics = metrics(OptimizerEngine.PARALLEL_MIN_FILES + 5, Map.of());
+		List<Suggestion> found = new OptimizerEngine(new OptimizerRules(rules)).evaluate(metrics);
+
+		int expected = 0;
+		for (OptimizerRule rule : rules) {
+			for (int f = 0; f < metrics.getFileCount(); f++) {
+				if (rule.matches(metrics.getLines(f))) {
+					Suggestion s = found.get(expected++);
+					assertEquals(rule.getId(), s.getRuleId());
+					assertEquals(metrics.getPath(f), s.getFile());
+				}
+			}
+		}
+		assertEquals(expected, found.size());
+	}
+
+	private static RepoMetrics metrics(int files, Map<String, String> settings) {
+		Random random = new Random(files);
+		RepoMetrics.Builder builder = RepoMetrics.builder(files).maxDepth(4 + random.nextInt(10)).largeFileThreshold(1500);
+		for (int f = 0; f < files; f++) {
+			String ext = EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+			FileMetrics fm = new FileMetrics("/repo/m" + (f % 40) + "/File" + f + "." + ext, ext, 3);
+			// markdown files are empty, so that type has no lines
+			fm.setLines(ext.equals("md") ? 0 : 10 + random.nextInt(2000));
+			fm.setCommentLines(fm.getLines() / (1 + random.nextInt(6)));
+			fm.setComplexity(1 + random.nextInt(6));
+			fm.setMaxNesting(random.nextInt(9));
+			fm.setOperands(random.nextInt(900));
+			fm.setOperators(random.nextInt(300));
+			fm.setFunctions(random.nextInt(30));
+			fm.setClasses(ext.equals("json") ? 0 : random.nextInt(3));
+			fm.setTodoCount(random.nextInt(5));
+			builder.add(fm);
+		}
+		return builder.settings(settings).build();
+	}
+
+	// The checks the rule set replaced, as they were
+	private static List<String> legacySuggestions(RepoMetrics metrics) {
+		List<String> suggestions = new ArrayList<>();
+		int complexity = metrics.getCyclomaticComplexity();
+		int files = metrics.getFileCount();
+		int types = metrics.getTypeCount();
+		for (int f = 0; f < files; f++) {
+			double severity = complexity * 0.4 + metrics.getHalsteadVolume(f) * 0.3 + metrics.getMaxNesting(f) * 0.3;
+			if (severity > 1000) {
+				suggestions.add("[HIGH PRIORITY] Refactor file: " + metrics.getPath(f) + " (Severity=" + String.format("%.1f", severity) + ")");
+			}
+		}
+		for (String lf : metrics.getTop5LargestFiles()) suggestions.add("[LARGE FILE] Review: " + lf);
+		for (int t = 0; t < types; t++) {
+			int lines = metrics.getTypeLines(t);
+			double commentRatio = lines > 0 ? ((double) metrics.getTypeCommentLines(t) / lines) * 100 : 0;
+			if (commentRatio < 50) {
+				suggestions.add("[DOC GAP] Low documentation in ." + metrics.getType(t) + " files (" + String.format("%.1f", commentRatio) + "% comments)");
+			}
+		}
+		for (int t = 0; t < types; t++) {
+			double avgFunctionsPerClass = (double) metrics.getTypeFunctions(t) / metrics.getTypeClasses(t);
+			if (avgFunctionsPerClass > 10) {
+				suggestions.add("[COHESION] High functions per class in ." + metrics.getType(t) + " (" + String.format("%.1f", avgFunctionsPerClass) + ")");
+			}
+		}
+		for (int f = 0; f < files; f++) {
+			if (metrics.getMaxNesting(f) > 5) {
+				suggestions.add("[NESTING] Deep nesting in file " + metrics.getPath(f) + " (" + metrics.getMaxNesting(f) + ")");
+			}
+		}
+		suggestions.addAll(metrics.getOptimizationFlags());
+		if (metrics.getMaxDepth() > 10) {
+			suggestions.add("[STRUCTURE] Repository directory depth is " + metrics.getMaxDepth() + "; consider flattening modules");
+		}
+		if (metrics.getTotalFiles() > 500) {
+			suggestions.add("[MODULARIZE] High file count (" + metrics.getTotalFiles() + "); consider splitting into submodules");
+		}
+		if (metrics.getTotalLines() > 20000) {
+			suggestions.add("[REFACTOR] Large codebase (" + metrics.getTotalLines() + " lines); review large classes/functions");
+		}
+		String dominantType = "unknown";
+		int dominantFiles = -1;
+		for (int t = 0; t < types; t++) {
+			if (metrics.getTypeFiles(t) > dominantFiles) {
+				dominantFiles = metrics.getTypeFiles(t);
+				dominantType = metrics.getType(t);
+			}
+		}
+		suggestions.add("[INFO] Dominant file type: " + dominantType);
+		for (int f = 0; f < files; f++) {
+			double volume = metrics.getHalsteadVolume(f);
+			if (volume > 5000) {
+				suggestions.add("[HALSTEAD] High complexity in file " + metrics.getPath(f) + " (Volume=" + String.format("%.0f", volume) + ")");
+			}
+		}
+		List<String> zeroLineFiles = new ArrayList<>();
+		for (int t = 0; t < types; t++) {
+			if (metrics.getTypeLines(t) == 0) zeroLineFiles.add(metrics.getType(t));
+		}
+		if (!zeroLineFiles.isEmpty()) suggestions.add("[CLEANUP] Some file types have zero lines: " + zeroLineFiles);
+		return suggestions;
+	}
+}
@@ -0,0 +1,108 @@
+package com.stride.stride.repo;
+
+import com.stride.stride.analysis.FileMetrics;
+import com.stride.stride.analysis.RepoMetrics;
+import com.stride.stride.model.DuplicateBlock;
+import com.stride.stride.optimizer.Suggestion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AnalysisStoreTest {
+
+	private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+	// as StrideService builds it, from two SHA-256 signatures
+	private static final String SETTINGS = "secrets:" + "5e".repeat(32) + " files:" + "f1".repeat(32);
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void storedRunReadsBackAsTheSameMetricsUnderAnotherRoot() {
+		JdbcTemplate jdbc = database();
+		AnalysisStore store = new AnalysisStore(jdbc);
+		// more files than one JDBC batch
+		RepoMetrics.Builder builder = RepoMetrics.builder(2500).maxDepth(3).largeFileThreshold(100);
+		for (int i = 0; i < 2500; i++) {
+			FileMetrics fm = new FileMetrics("/clone-1/src/F" + i + (i % 3 == 0 ? ".py" : ".java"), i % 3 == 0 ? "py" : "java", 2);
+			fm.setLines(i % 400);
+			fm.setCommentLines(i % 7);
+			fm.setComplexity(1 + i % 5);
+			fm.setFunctions(i % 4);
+			fm.setClasses(1);
+			fm.setMaxNesting(i % 6);
+			fm.setOperators(i);
+			fm.setOperands(i / 2);
+			fm.setImportCount(i % 13);
+			if (i == 43) fm.getSecrets().add(new FileMetrics.SecretHit(7, "password = \"hunter2\"", "password-assignment"));
+			builder.add(fm);
+		}
+		RepoMetrics metrics = builder
+				.duplicateBlocks(List.of(new DuplicateBlock("/clone-1/src/F1.java", 3, 20, "/clone-1/src/F2.java", 5, 22, 9)))
+				.churn(GitChurnCalculator.Churn.of(12, Map.of("src/F1.java", 4, "gone.txt", 1),
+						Map.of("src/F1.java", 30), Map.of("gone.txt", 2)))
+				.build();
+
+		List<Suggestion> suggestions = List.of(
+				new Suggestion("dominant-type", Suggestion.Severity.INFO, null, "java", 1667, "[INFO] Dominant file type: java"),
+				new Suggestion("nesting", Suggestion.Severity.MEDIUM, "/clone-1/src/F5.java", null, 6,
+						"[NESTING] Deep nesting in file /clone-1/src/F5.java (6)"),
+				new Suggestion("config", Suggestion.Severity.LOW, null, null, Double.NaN, "[CONFIG] ignored"));
+		long id = store.save("https://example.com/r.git", COMMIT, AnalysisStore.SOURCE_WORKTREE, SETTINGS, "/clone-1/",
+				metrics, suggestions, 5);
+		assertEquals(2500, jdbc.queryForObject("SELECT COUNT(*) FROM analysis_file WHERE run_id = ?", Integer.class, id));
+		assertEquals("src/F43.java", jdbc.queryForObject(
+				"SELECT path FROM analysis_file WHERE run_id = ? AND file_id = 43", String.class, id));
+
+		AnalysisStore.StoredRun stored = store.find("https://example.com/r.git", COMMIT, AnalysisStore.SOURCE_WORKTREE, SETTINGS, "/clone-1/");
+		assertEquals(id, stored.getId());
+		assertEquals(suggestions, stored.getSuggestions());
+		assertEquals(metrics.toMap(), stored.getMetrics().toMap());
+		assertEquals(12, stored.getMetrics().getChurn().getCommitsScanned());
+		assertEquals(Map.of("src/F1.java", 30), stored.getMetrics().getChurn().getLinesAdded());
+
+		RepoMetrics moved = store.find("https://example.com/r.git", COMMIT, AnalysisStore.SOURCE_WORKTREE, SETTINGS, "/clone-2/").getMetrics();
+		assertEquals("/clone-2/src/F43.java", moved.getPath(43));
+		assertEquals("/clone-2/src/F5.java", store.find("https://example.com/r.git", COMMIT, AnalysisStore.SOURCE_WORKTREE,
+				SETTINGS, "/clone-2/").getSuggestions().get(1).getFile());
+		assertEquals(List.of("Potential secret in /clone-2/src/F43.java:7 -> password = \"hunter2\""), moved.getSecretsFound());
+		assertEquals(Map.of("password-assignment", 1), moved.getSecretRuleCounts());
+		assertEquals("/clone-2/src/F2.java", moved.getDuplicateBlocks().get(0).getFileB());
+	}
+
+	@Test
+	void findMatchesUrlCommitSourceAndSettingsAndPrefersTheLatestRun() {
+		AnalysisStore store = new AnalysisStore(database());
+		RepoMetrics first = RepoMetrics.builder(1).add(new FileMetrics("a.java", "java", 1)).build();
+		FileMetrics longer = new FileMetrics("a.java", "java", 1);
+		longer.setLines(10);
+		RepoMetrics second = RepoMetrics.builder(1).add(longer).build();
+
+		store.save("u", COMMIT, AnalysisStore.SOURCE_TREE, SETTINGS, "", first, List.of(), 1);
+		long latest = store.save("u", COMMIT, AnalysisStore.SOURCE_TREE, SETTINGS, "", second, List.of(), 1);
+
+		assertEquals(latest, store.find("u", COMMIT, AnalysisStore.SOURCE_TREE, SETTINGS, "").getId());
+		assertEquals(10, store.find("u", COMMIT, AnalysisStore.SOURCE_TREE, SETTINGS, "").getMetrics().getTotalLines());
+		assertNull(store.find("u", COMMIT, AnalysisStore.SOURCE_WORKTREE, SETTINGS, ""));
+		assertNull(store.find("u", COMMIT, AnalysisStore.SOURCE_TREE, "s2", ""));
+		assertNull(store.find("other", COMMIT, AnalysisStore.SOURCE_TREE, SETTINGS, ""));
+		assertNull(store.find("u", COMMIT.replace('0', '1'), AnalysisStore.SOURCE_TREE, SETTINGS, ""));
+	}
+
+	private JdbcTemplate database() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:file:" + dir.resolve("stride").toAbsolutePath(), "sa", "");
+		new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+		return new JdbcTemplate(dataSource);
+	}
+}
@@ -0,0 +1,48 @@
+package com.stride.stride.repo;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CommitSamplerTest {
+
+	@TempDir
+	Path repo;
+
+	@Test
+	void samplesEvenlyOrByIntervalOldestFirstEndingAtStart() throws Exception {
+		try (Git git = Git.init().setDirectory(repo.toFile()).call()) {
+			// one commit a day for ten days
+			List<RevCommit> history = new ArrayList<>();
+			Instant day = Instant.parse("2024-01-01T00:00:00Z");
+			for (int i = 0; i < 10; i++) {
+				Files.writeString(repo.resolve("a.txt"), "v" + i + "\n");
+				git.add().addFilepattern("a.txt").call();
+				PersonIdent who = new PersonIdent("t", "t@example.com", day.plusSeconds(i * 86_400L), ZoneOffset.UTC);
+				history.add(git.commit().setMessage("c" + i).setAuthor(who).setCommitter(who).call());
+			}
+			RevCommit head = history.get(9);
+			CommitSampler sampler = new CommitSampler();
+
+			assertEquals(List.of(history.get(0), history.get(4), history.get(9)),
+					sampler.sample(git.getRepository(), head, 3, 0));
+			assertEquals(history, sampler.sample(git.getRepository(), head, 50, 0));
+			assertEquals(List.of(head), sampler.sample(git.getRepository(), head, 1, 0));
+			assertEquals(List.of(history.get(1), history.get(5), history.get(9)),
+					sampler.sample(git.getRepository(), head, 0, 4));
+			assertEquals(List.of(history.get(6), history.get(9)),
+					sampler.sample(git.getRepository(), head, 2, 3));
+		}
+	}
+}
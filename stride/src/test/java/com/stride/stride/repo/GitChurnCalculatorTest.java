@@ -0,0 +1,109 @@
+package com.stride.stride.repo;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class GitChurnCalculatorTest {
+
+	@TempDir
+	Path repo;
+
+	@Test
+	void countsCommitsAndLinesPerFileWithinTheCommitLimit() throws Exception {
+		try (Git git = Git.init().setDirectory(repo.toFile()).call()) {
+			commit(git, "a.txt", "1\n2\n3\n");
+			commit(git, "b.txt", "x\n");
+			commit(git, "a.txt", "1\nchanged\n3\n4\n");
+			Files.delete(repo.resolve("b.txt"));
+			git.rm().addFilepattern("b.txt").call();
+			ObjectId head = git.commit().setMessage("drop b").setAuthor("t", "t@example.com")
+					.setCommitter("t", "t@example.com").call();
+
+			GitChurnCalculator calculator = new GitChurnCalculator(4);
+			GitChurnCalculator.Churn all = calculator.compute(git.getRepository(), head, 0, 0);
+			assertEquals(4, all.getCommitsScanned());
+			assertEquals(2, all.getCommits().get("a.txt"));
+			assertEquals(2, all.getCommits().get("b.txt"));
+			assertEquals(5, all.getLinesAdded().get("a.txt"));
+			assertEquals(1, all.getLinesRemoved().get("a.txt"));
+			assertEquals(1, all.getLinesRemoved().get("b.txt"));
+			assertSame(all, calculator.compute(git.getRepository(), head, 0, 0));
+
+			GitChurnCalculator.Churn recent = calculator.compute(git.getRepository(), head, 0, 2);
+			assertEquals(2, recent.getCommitsScanned());
+			assertEquals(1, recent.getCommits().get("a.txt"));
+			assertEquals(1, recent.getCommits().get("b.txt"));
+		}
+	}
+
+	@Test
+	void aTimeWindowIsNotServedFromCacheOnceTheDayHasChanged() throws Exception {
+		try (Git git = Git.init().setDirectory(repo.toFile()).call()) {
+			commitAt(git, "a.txt", "1\n", "2026-03-01T09:00:00Z");
+			ObjectId head = commitAt(git, "a.txt", "1\n2\n", "2026-03-09T10:00:00Z");
+			MutableClock clock = new MutableClock(Instant.parse("2026-03-10T12:00:00Z"));
+			GitChurnCalculator calculator = new GitChurnCalculator(4, clock);
+
+			// the window starts at midnight two days back: only the second commit
+			GitChurnCalculator.Churn window = calculator.compute(git.getRepository(), head, 2, 0);
+			assertEquals(1, window.getCommitsScanned());
+			clock.now = Instant.parse("2026-03-10T23:00:00Z");
+			assertSame(window, calculator.compute(git.getRepository(), head, 2, 0));
+
+			// same HEAD two days later: the commit has left the window
+			clock.now = Instant.parse("2026-03-12T12:00:00Z");
+			assertEquals(0, calculator.compute(git.getRepository(), head, 2, 0).getCommitsScanned());
+			assertEquals(2, calculator.compute(git.getRepository(), head, 0, 0).getCommitsScanned());
+		}
+	}
+
+	private ObjectId commitAt(Git git, String file, String content, String time) throws Exception {
+		Files.writeString(repo.resolve(file), content);
+		git.add().addFilepattern(file).call();
+		PersonIdent ident = new PersonIdent("t", "t@example.com", Instant.parse(time), ZoneOffset.UTC);
+		return git.commit().setMessage("edit " + file).setAuthor(ident).setCommitter(ident).call();
+	}
+
+	private static final class MutableClock extends Clock {
+		Instant now;
+
+		MutableClock(Instant now) {
+			this.now = now;
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+
+	private ObjectId commit(Git git, String file, String content) throws Exception {
+		Files.writeString(repo.resolve(file), content);
+		git.add().addFilepattern(file).call();
+		return git.commit().setMessage("edit " + file).setAuthor("t", "t@example.com")
+				.setCommitter("t", "t@example.com").call();
+	}
+}
@@ -0,0 +1,156 @@
+package com.stride.stride.repo;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RepoConnectorTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void shallowCloneFetchesOnlyTheRequestedHistory() throws Exception {
+		String url = sourceRepo(5);
+		CloneOptions options = new CloneOptions();
+		options.setDepth(1);
+
+		CloneResult result = new RepoConnector().clone(url, dir.resolve("shallow").toString(), options);
+
+		try (Git git = Git.open(dir.resolve("shallow").toFile())) {
+			int commits = 0;
+			for (RevCommit ignored : git.log().call()) commits++;
+			assertEquals(1, commits);
+		}
+		assertTrue(result.getBytesReceived() > 0);
+		assertTrue(Files.exists(dir.resolve("shallow").resolve("file4.txt")));
+	}
+
+	@Test
+	void blobFilteredCloneIsBareAndSkipsLargeBlobs() throws Exception {
+		String url = sourceRepo(3);
+		CloneOptions options = new CloneOptions();
+		options.setBlobLimit(100);
+
+		assertThrows(IllegalArgumentException.class,
+				() -> new RepoConnector().clone(url, dir.resolve("checkout").toString(), options));
+
+		options.setBare(true);
+		new RepoConnector().clone(url, dir.resolve("partial.git").toString(), options);
+		try (Repository repository = Git.open(dir.resolve("partial.git").toFile()).getRepository()) {
+			ObjectId small = repository.resolve("HEAD:small.txt");
+			ObjectId large = repository.resolve("HEAD:file2.txt");
+			assertTrue(repository.getObjectDatabase().has(small));
+			assertFalse(repository.getObjectDatabase().has(large));
+		}
+	}
+
+	@Test
+	void mirrorIsReusedAndOnlyNewObjectsAreFetched() throws Exception {
+		String url = sourceRepo(3);
+		RepoConnector connector = new RepoConnector(dir.resolve("mirrors").toFile());
+
+		CloneResult first = connector.clone(url, dir.resolve("first").toString(), new CloneOptions());
+		CloneResult second = connector.clone(url, dir.resolve("second").toString(), new CloneOptions());
+		commit(dir.resolve("source"), "late.txt", "one more line\n");
+		CloneResult third = connector.clone(url, dir.resolve("third").toString(), new CloneOptions());
+
+		assertFalse(first.isMirrorReused());
+		assertTrue(second.isMirrorReused());
+		assertEquals(0, second.getBytesReceived());
+		assertTrue(third.getBytesReceived() > 0 && third.getBytesReceived() < first.getBytesReceived());
+		assertTrue(Files.exists(dir.resolve("third").resolve("late.txt")));
+		try (Git git = Git.open(dir.resolve("third").toFile())) {
+			assertEquals(url, git.getRepository().getConfig().getString("remote", "origin", "url"));
+		}
+	}
+
+	@Test
+	void urlsThatSanitizeAlikeGetSeparateMirrors() {
+		String slash = RepoConnector.mirrorName("https://example.com/team/repo");
+		String underscore = RepoConnector.mirrorName("https://example.com/team_repo");
+		assertTrue(slash.startsWith("example.com_team_repo_"));
+		assertTrue(underscore.startsWith("example.com_team_repo_"));
+		assertNotEquals(slash, underscore);
+		assertEquals(slash, RepoConnector.mirrorName("https://example.com/team/repo"));
+		assertTrue(RepoConnector.mirrorName("https://example.com/" + "x".repeat(300)).length() < 120);
+	}
+
+	@Test
+	void openBareFetchesAndReadsHeadAsTheRemoteDefaultBranch() throws Exception {
+		String url = sourceRepo(2);
+		RepoConnector connector = new RepoConnector();
+		String checkout = dir.resolve("checkout").toString();
+		String bare = dir.resolve("bare.git").toString();
+		connector.clone(url, checkout, new CloneOptions());
+		connector.openBare(url, bare).close();
+		ObjectId cloned = sourceHead();
+
+		commit(dir.resolve("source"), "late.txt", "one more line\n");
+		ObjectId latest = sourceHead();
+		try (Repository repository = connector.openBare(url, checkout)) {
+			// the checked-out branch is where the clone left it
+			assertEquals(cloned, repository.resolve("HEAD"));
+			assertEquals(latest, RepoConnector.resolveCommit(repository, "HEAD", url));
+			assertEquals(cloned, RepoConnector.resolveCommit(repository, "HEAD", null));
+		}
+		try (Repository repository = connector.openBare(url, bare)) {
+			assertEquals(latest, RepoConnector.resolveCommit(repository, "HEAD", url));
+		}
+	}
+
+	@Test
+	void openBareRefusesACloneOfAnotherRemote() throws Exception {
+		String url = sourceRepo(1);
+		RepoConnector connector = new RepoConnector();
+		String checkout = dir.resolve("checkout").toString();
+		connector.clone(url, checkout, new CloneOptions());
+
+		String other = dir.resolve("other").toUri().toString();
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> connector.openBare(other, checkout));
+		assertTrue(e.getMessage().contains(other));
+		// the same remote written with a .git suffix is accepted
+		connector.openBare(url.replaceAll("/$", "") + ".git", checkout).close();
+	}
+
+	private ObjectId sourceHead() throws Exception {
+		try (Git git = Git.open(dir.resolve("source").toFile())) {
+			return git.getRepository().resolve("HEAD");
+		}
+	}
+
+	// Source repository with one growing file per commit plus a small one
+	private String sourceRepo(int commits) throws Exception {
+		Path source = dir.resolve("source");
+		try (Git git = Git.init().setDirectory(source.toFile()).call()) {
+			git.getRepository().getConfig().setBoolean("uploadpack", null, "allowfilter", true);
+			git.getRepository().getConfig().save();
+		}
+		for (int c = 0; c < commits; c++) {
+			commit(source, "file" + c + ".txt", ("line of commit " + c + "\n").repeat(200 * (c + 1)));
+		}
+		commit(source, "small.txt", "tiny\n");
+		return source.toUri().toString();
+	}
+
+	private static void commit(Path repo, String file, String content) throws Exception {
+		Files.writeString(repo.resolve(file), content);
+		try (Git git = Git.open(repo.toFile())) {
+			git.add().addFilepattern(file).call();
+			git.commit().setMessage("add " + file).setAuthor("t", "t@example.com")
+					.setCommitter("t", "t@example.com").call();
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.stride.stride.service;
+
+import com.stride.stride.analysis.AnalysisProgress;
+import com.stride.stride.api.RepoController;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AnalysisJobServiceTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final GatedStrideService stride = new GatedStrideService(registry);
+	private AnalysisJobService jobs;
+
+	@AfterEach
+	void tearDown() {
+		stride.release.countDown();
+		if (jobs != null) jobs.shutdown();
+		stride.shutdown();
+	}
+
+	@Test
+	void fullQueueIsRejectedWithTooManyRequests() throws Exception {
+		jobs = new AnalysisJobService(stride, 1, 1, 60, registry);
+		jobs.submit("/repos/a", false);
+		stride.awaitRunning(1);
+		jobs.submit("/repos/b", false);
+
+		assertThrows(RejectedExecutionException.class, () -> jobs.submit("/repos/c", false));
+		assertEquals(1.0, registry.get("stride.jobs.rejected").counter().count());
+
+		RepoController controller = new RepoController(stride, jobs, null, null);
+		ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> controller.submitJob("/repos/d", false));
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatusCode());
+		// a streamed analysis is admitted through the same queue
+		e = assertThrows(ResponseStatusException.class, () -> controller.analyzeRepoStream("/repos/e"));
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatusCode());
+		assertEquals(3.0, registry.get("stride.jobs.rejected").counter().count());
+	}
+
+	@Test
+	void samePathAndKindIsDeduplicatedWhileUnfinished() throws Exception {
+		jobs = new AnalysisJobService(stride, 1, 4, 60, registry);
+		String first = id(jobs.submit("/repos/a", false));
+		assertEquals(first, id(jobs.submit("/repos/./a", false)));
+		assertNotEquals(first, id(jobs.submit("/repos/a", true)));
+		assertNotEquals(first, id(jobs.submit("/repos/b", false)));
+
+		stride.release.countDown();
+		awaitState(first, "SUCCEEDED");
+		// a finished job is not reused
+		assertNotEquals(first, id(jobs.submit("/repos/a", false)));
+	}
+
+	@Test
+	void cancelStopsRunningAndQueuedJobs() throws Exception {
+		jobs = new AnalysisJobService(stride, 1, 4, 60, registry);
+		String running = id(jobs.submit("/repos/a", false));
+		stride.awaitRunning(1);
+		String queued = id(jobs.submit("/repos/b", false));
+
+		assertEquals("CANCELLED", jobs.cancel(queued).get("state"));
+		stride.stopOnCancel = false;
+		assertEquals("CANCELLING", jobs.cancel(running).get("state"));
+		assertEquals(0, jobs.executorStats().get("queued"));
+		assertNull(jobs.cancel("unknown"));
+		// until its analysis stops, a cancelled job still holds its path
+		assertEquals(running, id(jobs.submit("/repos/a", false)));
+
+		// the queued job never reaches the analyzer, and a finishing analysis does not undo the cancel
+		stride.release.countDown();
+		awaitState(running, "CANCELLED");
+		Thread.sleep(100);
+		assertEquals(1, stride.started.get());
+		assertNull(jobs.result(running));
+	}
+
+	@Test
+	void finishedJobsAreDroppedAfterTheRetentionPeriod() throws Exception {
+		stride.release.countDown();
+		jobs = new AnalysisJobService(stride, 1, 4, 0, registry);
+		String done = id(jobs.submit("/repos/a", false));
+		awaitState(done, "SUCCEEDED");
+		assertEquals(Map.of("path", "/repos/a"), jobs.result(done));
+
+		Thread.sleep(5);
+		jobs.pruneFinished();
+		assertNull(jobs.status(done));
+		assertEquals(0, jobs.executorStats().get("jobsRetained"));
+	}
+
+	private void awaitState(String id, String state) throws InterruptedException {
+		for (int i = 0; i < 200; i++) {
+			if (state.equals(jobs.status(id).get("state"))) return;
+			Thread.sleep(20);
+		}
+		throw new AssertionError("job did not reach " + state + ": " + jobs.status(id));
+	}
+
+	private static String id(Map<String, Object> status) {
+		return (String) status.get("jobId");
+	}
+
+	/** Analyses that block until released and, unless told to ignore it, stop when cancelled. */
+	private static final class GatedStrideService extends StrideService {
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger started = new AtomicInteger();
+		volatile boolean stopOnCancel = true;
+
+		GatedStrideService(SimpleMeterRegistry registry) {
+			super(new StrideProperties(), null, registry);
+		}
+
+		@Override
+		public Map<String, Object> analyzeRepo(String path, AnalysisProgress progress) {
+			started.incrementAndGet();
+			try {
+				while (!release.await(10, TimeUnit.MILLISECONDS)) {
+					if (stopOnCancel && progress.isCancelled()) throw new CancellationException("Analysis cancelled");
+				}
+			} catch (InterruptedException e) {
+				throw new CancellationException("Analysis interrupted");
+			}
+			return Map.of("path", path);
+		}
+
+		@Override
+		public Map<String, Object> analyzeAndOptimize(String path, AnalysisProgress progress) {
+			return analyzeRepo(path, progress);
+		}
+
+		void awaitRunning(int n) throws InterruptedException {
+			for (int i = 0; i < 200 && started.get() < n; i++) Thread.sleep(10);
+			assertEquals(n, started.get());
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.stride.stride.service;
+
+import com.stride.stride.analysis.AnalysisProgress;
+import com.stride.stride.model.BatchRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchAnalysisServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private final List<BatchAnalysisService> services = new ArrayList<>();
+
+	@AfterEach
+	void shutdown() {
+		for (BatchAnalysisService service : services) service.shutdown();
+	}
+
+	@Test
+	void clonesAndAnalyzesEveryRepoAndReportsFailuresPerRepo() throws Exception {
+		String small = source("small", 2);
+		String large = source("large", 40);
+		String other = source("other", 5);
+		BatchAnalysisService batches = service(2, 1, 2);
+
+		BatchRequest request = new BatchRequest();
+		request.setUrls(List.of(large, small, dir.resolve("missing").toUri().toString(), other));
+		request.setOptimize(true);
+		Map<String, Object> report = await(batches, batches.submit(request));
+
+		@SuppressWarnings("unchecked")
+		List<Map<String, Object>> repos = (List<Map<String, Object>>) report.get("repos");
+		assertEquals(BatchRun.State.SUCCEEDED, repos.get(0).get("state"));
+		assertEquals(40, repos.get(0).get("trackedFiles"));
+		assertEquals(40, ((String) repos.get(0).get("headCommit")).length());
+		assertEquals(2, repos.get(1).get("trackedFiles"));
+		assertEquals(BatchRun.State.FAILED, repos.get(2).get("state"));
+		assertTrue(((String) repos.get(2).get("error")).startsWith("Clone failed"));
+		assertEquals(5, repos.get(3).get("trackedFiles"));
+		assertTrue(repos.get(3).get("optimizerSuggestions") instanceof List);
+		assertEquals(Map.of(BatchRun.State.SUCCEEDED, 3, BatchRun.State.FAILED, 1), report.get("counts"));
+		// clones are removed once analyzed
+		assertFalse(Files.exists(dir.resolve("work").resolve((String) report.get("batchId"))));
+	}
+
+	@Test
+	void cancelStopsReposThatHaveNotFinished() throws Exception {
+		BatchAnalysisService batches = service(1, 1, 1);
+		BatchRequest request = new BatchRequest();
+		for (int i = 0; i < 4; i++) request.getUrls().add(source("r" + i, 3));
+		request.setWorkDir("cancelled");
+		String id = (String) batches.submit(request).get("batchId");
+		batches.cancel(id);
+
+		Map<String, Object> report = await(batches, batches.status(id));
+		@SuppressWarnings("unchecked")
+		Map<BatchRun.State, Integer> counts = (Map<BatchRun.State, Integer>) report.get("counts");
+		// with one repo in flight at a time, at most the first can have got through
+		assertTrue(counts.getOrDefault(BatchRun.State.CANCELLED, 0) >= 3);
+	}
+
+	@Test
+	void smallRepositoriesOvertakeALargeOneQueuedShortlyBefore() throws Exception {
+		String blocker = source("blocker", 1);
+		String large = source("large", 1500);
+		String small = source("small", 2);
+		RecordingStrideService stride = new RecordingStrideService();
+		BatchAnalysisService batches = service(stride, 1, 1, 3);
+
+		// one clone at a time: blocker, then large, then small, while blocker holds the only analysis worker
+		BatchRequest request = new BatchRequest();
+		request.setUrls(List.of(blocker, large, small));
+		String id = (String) batches.submit(request).get("batchId");
+		for (int i = 0; i < 600 && stride.registry.get("stride.batch.analysis.queued").gauge().value() < 2; i++) {
+			Thread.sleep(50);
+		}
+		stride.release.countDown();
+		await(batches, batches.status(id));
+
+		// the large one's virtual deadline is 1500 ms after it was queued, the small one's 2 ms
+		assertEquals(List.of("blocker", "small", "large"), stride.analyzed);
+	}
+
+	@Test
+	void workDirMustBeInsideTheConfiguredRoot() throws Exception {
+		BatchAnalysisService batches = service(1, 1, 1);
+		BatchRequest request = new BatchRequest();
+		request.getUrls().add(source("r", 1));
+
+		for (String outside : List.of(dir.resolve("elsewhere").toString(), "../escape", "nested/../../escape")) {
+			request.setWorkDir(outside);
+			assertThrows(IllegalArgumentException.class, () -> batches.submit(request), outside);
+		}
+		request.setWorkDir(dir.resolve("work").resolve("team").toString());
+		request.setKeepClones(true);
+		Map<String, Object> report = await(batches, batches.submit(request));
+		assertTrue(Files.isDirectory(dir.resolve("work").resolve("team").resolve((String) report.get("batchId"))));
+	}
+
+	@Test
+	void virtualThreadsFallBackToTheClonePoolBeforeJava21() throws Exception {
+		StrideProperties properties = new StrideProperties();
+		properties.getCache().setEnabled(false);
+		BatchAnalysisService batches = service(new StrideService(properties, null, new SimpleMeterRegistry()), true, 1, 1, 2);
+		BatchRequest request = new BatchRequest();
+		request.setUrls(List.of(source("a", 2), source("b", 3)));
+		Map<String, Object> report = await(batches, batches.submit(request));
+		assertEquals(Map.of(BatchRun.State.SUCCEEDED, 2), report.get("counts"));
+	}
+
+	private BatchAnalysisService service(int cloneWorkers, int analyzeWorkers, int maxInFlight) {
+		StrideProperties properties = new StrideProperties();
+		properties.getAnalyzer().setParallelism(2);
+		properties.getCache().setEnabled(false);
+		return service(new StrideService(properties, null, new SimpleMeterRegistry()), cloneWorkers, analyzeWorkers, maxInFlight);
+	}
+
+	private BatchAnalysisService service(StrideService stride, int cloneWorkers, int analyzeWorkers, int maxInFlight) {
+		return service(stride, false, cloneWorkers, analyzeWorkers, maxInFlight);
+	}
+
+	private BatchAnalysisService service(StrideService stride, boolean virtualThreads, int cloneWorkers, int analyzeWorkers,
+										 int maxInFlight) {
+		SimpleMeterRegistry registry = stride instanceof RecordingStrideService recording ? recording.registry : new SimpleMeterRegistry();
+		BatchAnalysisService service = new BatchAnalysisService(stride, cloneWorkers, virtualThreads, analyzeWorkers, maxInFlight,
+				dir.resolve("work").toString(), 60, registry);
+		services.add(service);
+		return service;
+	}
+
+	/** Records the order repositories are analyzed in; the first analysis waits until released. */
+	private static final class RecordingStrideService extends StrideService {
+		final SimpleMeterRegistry registry;
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> analyzed = Collections.synchronizedList(new ArrayList<>());
+
+		RecordingStrideService() {
+			this(new SimpleMeterRegistry());
+		}
+
+		private RecordingStrideService(SimpleMeterRegistry registry) {
+			super(new StrideProperties(), null, registry);
+			this.registry = registry;
+		}
+
+		@Override
+		public Map<String, Object> analyzeRepo(String path, AnalysisProgress progress) {
+			analyzed.add(new File(path).getName().replaceFirst("^\\d+-", ""));
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new CancellationException("Analysis interrupted");
+			}
+			return Map.of("totalFiles", 0);
+		}
+	}
+
+	private String source(String name, int files) throws Exception {
+		Path repo = Files.createDirectories(dir.resolve("sources").resolve(name));
+		for (int f = 0; f < files; f++) {
+			Files.writeString(repo.resolve("File" + f + ".java"), "class File" + f + " {\n  int f() { return " + f + "; }\n}\n");
+		}
+		try (Git git = Git.init().setDirectory(repo.toFile()).call()) {
+			git.add().addFilepattern(".").call();
+			git.commit().setMessage("init").setAuthor("t", "t@example.com").setCommitter("t", "t@example.com").call();
+		}
+		return repo.toUri().toString();
+	}
+
+	private static Map<String, Object> await(BatchAnalysisService batches, Map<String, Object> submitted) throws InterruptedException {
+		String id = (String) submitted.get("batchId");
+		for (int i = 0; i < 600; i++) {
+			Map<String, Object> status = batches.status(id);
+			if ("DONE".equals(status.get("state"))) return status;
+			Thread.sleep(100);
+		}
+		throw new AssertionError("batch did not finish: " + batches.status(id));
+	}
+}
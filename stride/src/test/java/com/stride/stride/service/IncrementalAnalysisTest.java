@@ -0,0 +1,146 @@
+package com.stride.stride.service;
+
+import com.stride.stride.analysis.Analyzer;
+import com.stride.stride.analysis.RepoMetrics;
+import com.stride.stride.repo.GitChangeDetector;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalAnalysisTest {
+
+	@TempDir
+	Path repo;
+
+	private final GitChangeDetector detector = new GitChangeDetector();
+	private Analyzer analyzer;
+	private Git git;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		analyzer = new Analyzer(2);
+		for (int f = 0; f < 6; f++) write("src/File" + f + ".java", javaSource(f));
+		write("README.md", "# Demo\nTODO: docs\n");
+		git = Git.init().setDirectory(repo.toFile()).call();
+		commit("first");
+	}
+
+	@AfterEach
+	void tearDown() {
+		git.close();
+		analyzer.close();
+	}
+
+	@Test
+	void modifiedAddedDeletedAndRenamedFilesMatchAFullAnalysis() throws Exception {
+		IncrementalAnalysis.Snapshot first = run(null).snapshot;
+
+		write("src/File0.java", javaSource(40));                       // modified
+		write("src/Added.java", javaSource(41));                       // added
+		Files.delete(repo.resolve("src/File1.java"));                  // deleted
+		Files.move(repo.resolve("src/File2.java"), repo.resolve("src/Moved.java")); // renamed
+		commit("second");
+
+		Result second = run(first);
+		assertEquals(full().toMap(), second.metrics.toMap());
+		// File3..5 and README.md are unchanged
+		assertEquals(4, second.run.getReused());
+		assertEquals(3, second.run.getAnalyzed());
+		assertEquals(git.getRepository().resolve("HEAD"), second.run.getHead());
+		assertTrue(second.run.matchesHead());
+
+		// nothing changed since: everything is reused
+		Result third = run(second.snapshot);
+		assertEquals(second.metrics.toMap(), third.metrics.toMap());
+		assertEquals(7, third.run.getReused());
+	}
+
+	@Test
+	void uncommittedEditsAreAnalyzedAgain() throws Exception {
+		IncrementalAnalysis.Snapshot first = run(null).snapshot;
+
+		write("src/File3.java", javaSource(50));
+		write("notes.md", "TODO: untracked\n");
+
+		Result second = run(first);
+		assertEquals(full().toMap(), second.metrics.toMap());
+		assertEquals(6, second.run.getReused());
+		assertEquals(2, second.run.getAnalyzed());
+		assertFalse(second.run.matchesHead());
+
+		// an untracked file alone is enough for the run not to be HEAD
+		git.checkout().addPath("src/File3.java").call();
+		assertFalse(run(second.snapshot).run.matchesHead());
+		Files.delete(repo.resolve("notes.md"));
+		assertTrue(run(second.snapshot).run.matchesHead());
+	}
+
+	@Test
+	void missingBaseCommitFallsBackToAFullRun() throws Exception {
+		IncrementalAnalysis.Snapshot first = run(null).snapshot;
+		write("src/File4.java", javaSource(60));
+		commit("second");
+
+		// a snapshot whose HEAD is not in the repository, as after a force push and gc
+		IncrementalAnalysis.Snapshot gone = new IncrementalAnalysis.Snapshot(
+				ObjectId.fromString("de".repeat(20)), first.configStamp, first.files);
+		Result second = run(gone);
+		assertEquals(full().toMap(), second.metrics.toMap());
+		assertEquals(0, second.run.getReused());
+		assertEquals(7, second.run.getAnalyzed());
+
+		// and the run it fell back to is a base for the next one
+		Result third = run(second.snapshot);
+		assertEquals(7, third.run.getReused());
+	}
+
+	private record Result(IncrementalAnalysis run, RepoMetrics metrics, IncrementalAnalysis.Snapshot snapshot) {
+	}
+
+	private Result run(IncrementalAnalysis.Snapshot last) {
+		IncrementalAnalysis run = IncrementalAnalysis.start(repo.toFile(), last, detector);
+		assertNotNull(run);
+		RepoMetrics metrics = analyzer.analyze(repo.toString(), run, null);
+		return new Result(run, metrics, run.snapshot());
+	}
+
+	private RepoMetrics full() {
+		return analyzer.analyze(repo.toString(), null, null);
+	}
+
+	private void commit(String message) throws Exception {
+		git.add().addFilepattern(".").call();
+		git.add().setUpdate(true).addFilepattern(".").call();
+		git.commit().setMessage(message).setAuthor("t", "t@example.com").setCommitter("t", "t@example.com").call();
+	}
+
+	private void write(String path, String content) throws Exception {
+		Path file = repo.resolve(path.replace('/', File.separatorChar));
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content);
+	}
+
+	private static String javaSource(int seed) {
+		StringBuilder sb = new StringBuilder("package demo;\n\n");
+		sb.append("public class Sample").append(seed).append(" {\n");
+		for (int m = 0; m < 2 + seed % 5; m++) {
+			sb.append("    int method").append(m).append("(int a) {\n");
+			sb.append("        if (a > ").append(seed).append(") return a; // TODO\n");
+			sb.append("        return a * ").append(m + 1).append(";\n");
+			sb.append("    }\n");
+		}
+		return sb.append("}\n").toString();
+	}
+}
@@ -0,0 +1,105 @@
+package com.stride.stride.service;
+
+import com.stride.stride.analysis.AnalysisProgress;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StrideServiceTest {
+
+	@TempDir
+	Path repo;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private StrideService stride;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		for (int f = 0; f < 4; f++) {
+			Files.writeString(repo.resolve("F" + f + ".java"), "class F" + f + " {\n  int f() { return " + f + "; }\n}\n");
+		}
+		StrideProperties properties = new StrideProperties();
+		properties.getAnalyzer().setParallelism(1);
+		properties.getAnalyzer().setMaxConcurrent(1);
+		properties.getCache().setEnabled(false);
+		stride = new StrideService(properties, null, registry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		stride.shutdown();
+	}
+
+	@Test
+	void permitIsReleasedWhenAnAnalysisFails() throws Exception {
+		AnalysisProgress failing = new AnalysisProgress(fm -> {
+			throw new IllegalStateException("boom");
+		});
+		assertThrows(RuntimeException.class, () -> stride.analyzeRepo(repo.toString(), failing));
+		assertEquals(0.0, active());
+		assertAnalyzes();
+	}
+
+	@Test
+	void permitIsReleasedWhenAnAnalysisIsCancelledWhileWalking() throws Exception {
+		AnalysisProgress cancelled = new AnalysisProgress();
+		cancelled.cancel();
+		assertThrows(CancellationException.class, () -> stride.analyzeRepo(repo.toString(), cancelled));
+		assertEquals(0.0, active());
+		assertAnalyzes();
+	}
+
+	@Test
+	void cancelledWhileWaitingForAPermitNeverTakesOne() throws Exception {
+		// the only permit is held by an analysis blocked in its first file
+		CountDownLatch holding = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Map<String, Object>> holder = CompletableFuture.supplyAsync(() ->
+				stride.analyzeRepo(repo.toString(), new AnalysisProgress(fm -> {
+					holding.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						throw new CancellationException("interrupted");
+					}
+				})));
+		assertTrue(holding.await(10, TimeUnit.SECONDS));
+		assertEquals(1.0, active());
+
+		AnalysisProgress waiting = new AnalysisProgress();
+		CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS).execute(waiting::cancel);
+		assertThrows(CancellationException.class, () -> stride.analyzeRepo(repo.toString(), waiting));
+		assertEquals(1.0, active());
+		assertTrue(registry.get("stride.analysis.permit.wait").timer().totalTime(TimeUnit.MILLISECONDS) >= 150);
+
+		release.countDown();
+		assertEquals(4, holder.get(10, TimeUnit.SECONDS).get("totalFiles"));
+		assertEquals(0.0, active());
+		assertAnalyzes();
+	}
+
+	private double active() {
+		return registry.get("stride.analysis.active").gauge().value();
+	}
+
+	// the permit is free again: an analysis gets it without waiting
+	private void assertAnalyzes() throws Exception {
+		Map<String, Object> result = CompletableFuture.supplyAsync(() -> stride.analyzeRepo(repo.toString()))
+				.get(10, TimeUnit.SECONDS);
+		assertEquals(4, result.get("totalFiles"));
+	}
+}
@@ -0,0 +1,27 @@
+package com.stride.stride.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualThreadsTest {
+
+	@Test
+	void supportedFromJava21AndRefusedBefore() throws Exception {
+		boolean java21 = Runtime.version().feature() >= 21;
+		assertEquals(java21, VirtualThreads.isSupported());
+		if (!java21) {
+			assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.factory("t-"));
+			assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.perTaskExecutor("t-"));
+			return;
+		}
+		ThreadFactory factory = VirtualThreads.factory("t-");
+		Thread thread = factory.newThread(() -> { });
+		assertEquals("t-1", thread.getName());
+		assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+	}
+}